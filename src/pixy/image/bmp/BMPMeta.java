@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Send parsing diagnostics to Diagnostics instead of System.out
+ * WY    16Oct2026  Added readMetadata() for requested metadata types only
  * WY    14Mar2015  Initial creation
  */
 
@@ -20,6 +22,7 @@ package pixy.image.bmp;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +32,7 @@ import org.w3c.dom.Node;
 import pixy.meta.Metadata;
 import pixy.meta.MetadataType;
 import pixy.meta.image.ImageMetadata;
+import pixy.util.Diagnostics;
 import cafe.io.IOUtils;
 import cafe.image.bmp.BmpCompression;
 import static cafe.string.XMLUtils.*;
@@ -56,18 +60,34 @@ public class BMPMeta {
 	}
 	
 	public static Map<MetadataType, Metadata> readMetadata(InputStream is) throws IOException {
+		return readMetadata(is, EnumSet.allOf(MetadataType.class));
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the BMP image.
+	 * 
+	 * @param is InputStream for the BMP image
+	 * @param metadataTypes types of metadata to read, BMP only has IMAGE
+	 * @return a map of the requested Metadata found in the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, EnumSet<MetadataType> metadataTypes) throws IOException {
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
+		if(!metadataTypes.contains(MetadataType.IMAGE)) // Nothing else to read
+			return metadataMap;
 		Document doc = createDocumentNode(); // Create a document for ImageMetadata
 		// Create a new data transfer object to hold data
 		DataTransferObject DTO = new DataTransferObject();
 		readHeader(is, DTO);
 		
-		System.out.println("... BMP snoop starts...");
-		System.out.println("Image signature: " + new String(DTO.fileHeader, 0, 2));
-		System.out.println("File size: " + IOUtils.readInt(DTO.fileHeader, 2) + " bytes");
-		System.out.println("Reserved1 (2 bytes): " + IOUtils.readShort(DTO.fileHeader, 6));
-		System.out.println("Reserved2 (2 bytes): " + IOUtils.readShort(DTO.fileHeader, 8));
-		System.out.println("Data offset: " + IOUtils.readInt(DTO.fileHeader, 10));
+		if(Diagnostics.isEnabled()) {
+			Diagnostics.print("... BMP snoop starts...");
+			Diagnostics.print("Image signature: " + new String(DTO.fileHeader, 0, 2));
+			Diagnostics.print("File size: " + IOUtils.readInt(DTO.fileHeader, 2) + " bytes");
+			Diagnostics.print("Reserved1 (2 bytes): " + IOUtils.readShort(DTO.fileHeader, 6));
+			Diagnostics.print("Reserved2 (2 bytes): " + IOUtils.readShort(DTO.fileHeader, 8));
+			Diagnostics.print("Data offset: " + IOUtils.readInt(DTO.fileHeader, 10));
+		}
 		Node root = createElement(doc, "bitmap");
 		Node header = createElement(doc, "header");
 		Node fileHeader = createElement(doc, "file-header");
@@ -89,9 +109,11 @@ public class BMPMeta {
 		addChild(fileHeader, dataOffset);
 		
 		// TODO add more ImageMetadata elements to doc
-		System.out.println("Info header length: " + IOUtils.readInt(DTO.infoHeader, 0));
-		System.out.println("Image width: " + IOUtils.readInt(DTO.infoHeader, 4));
-		System.out.println("Image heigth: " + IOUtils.readInt(DTO.infoHeader, 8));	
+		if(Diagnostics.isEnabled()) {
+			Diagnostics.print("Info header length: " + IOUtils.readInt(DTO.infoHeader, 0));
+			Diagnostics.print("Image width: " + IOUtils.readInt(DTO.infoHeader, 4));
+			Diagnostics.print("Image heigth: " + IOUtils.readInt(DTO.infoHeader, 8));
+		}
 		
 		String alignment = "";
 		if(IOUtils.readInt(DTO.infoHeader, 8) > 0)
@@ -99,15 +121,17 @@ public class BMPMeta {
 		else
 			alignment = "TOP_DOWN";
 		
-		System.out.println("Image alignment: " + alignment);
-		System.out.println("Number of planes: " + IOUtils.readShort(DTO.infoHeader, 12));
-		System.out.println("BitCount (bits per pixel): " + IOUtils.readShort(DTO.infoHeader, 14));
-		System.out.println("Compression: " + BmpCompression.fromInt(IOUtils.readInt(DTO.infoHeader, 16)));
-		System.out.println("Image size (compressed size of image): " + IOUtils.readInt(DTO.infoHeader, 20) + " bytes");
-		System.out.println("Horizontal resolution (Pixels/meter): " + IOUtils.readInt(DTO.infoHeader, 24));
-		System.out.println("Vertical resolution (Pixels/meter): " + IOUtils.readInt(DTO.infoHeader, 28));
-		System.out.println("Colors used (number of actually used colors): " + IOUtils.readInt(DTO.infoHeader, 32));
-		System.out.println("Important colors (number of important colors): " + IOUtils.readInt(DTO.infoHeader, 36));
+		if(Diagnostics.isEnabled()) {
+			Diagnostics.print("Image alignment: " + alignment);
+			Diagnostics.print("Number of planes: " + IOUtils.readShort(DTO.infoHeader, 12));
+			Diagnostics.print("BitCount (bits per pixel): " + IOUtils.readShort(DTO.infoHeader, 14));
+			Diagnostics.print("Compression: " + BmpCompression.fromInt(IOUtils.readInt(DTO.infoHeader, 16)));
+			Diagnostics.print("Image size (compressed size of image): " + IOUtils.readInt(DTO.infoHeader, 20) + " bytes");
+			Diagnostics.print("Horizontal resolution (Pixels/meter): " + IOUtils.readInt(DTO.infoHeader, 24));
+			Diagnostics.print("Vertical resolution (Pixels/meter): " + IOUtils.readInt(DTO.infoHeader, 28));
+			Diagnostics.print("Colors used (number of actually used colors): " + IOUtils.readInt(DTO.infoHeader, 32));
+			Diagnostics.print("Important colors (number of important colors): " + IOUtils.readInt(DTO.infoHeader, 36));
+		}
 		
 		Node infoHeader = createElement(doc, "info-header");
 		Node infoHeaderLen = createElement(doc, "info-header-length");
@@ -152,7 +176,7 @@ public class BMPMeta {
 		
 		if(bitsPerPixel <= 8) {
 			readPalette(is, DTO);
-			System.out.println("Color map follows");
+			Diagnostics.print("Color map follows");
 		}
 		
 		metadataMap.put(MetadataType.IMAGE, new ImageMetadata(doc));
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  ==================================================
+ * WY    16Oct2026  Added streaming removeMetadata()
+ * WY    16Oct2026  Added readMetadata() for requested metadata types only
  * WY    13Mar2015  Initial creation
  */
 
@@ -23,8 +25,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.w3c.dom.Document;
 
@@ -60,6 +64,7 @@ public class GIFMeta {
 		private byte[] globalPalette;
 		private byte[] imageDescriptor;
 		private Map<MetadataType, Metadata> metadataMap;
+		private Set<MetadataType> metadataTypes;
 	}
 	
 	public static void insertXMPApplicationBlock(InputStream is, OutputStream os, byte[] xmp) throws IOException {
@@ -129,6 +134,18 @@ public class GIFMeta {
 		insertXMPApplicationBlock(is, os, xmpBytes);
 	}
 	
+	// Copies data sub-blocks up to and including the block terminator
+	private static void copySubBlocks(InputStream is, OutputStream os, byte[] buf) throws IOException {
+		int len = IOUtils.read(is);
+		while(len > 0) {
+			os.write(len);
+			IOUtils.readFully(is, buf, 0, len);
+			os.write(buf, 0, len);
+			len = IOUtils.read(is);
+		}
+		os.write(0);
+	}
+	
 	private static boolean readFrame(InputStream is, DataTransferObject DTO) throws IOException {
 		// Need to reset some of the fields
 		int disposalMethod = -1;
@@ -183,7 +200,7 @@ public class GIFMeta {
 					byte[] temp = new byte[0x0B];
 					IOUtils.readFully(is, temp);
 					// If we have XMP data
-					if(Arrays.equals(xmp_id, temp)) {
+					if(Arrays.equals(xmp_id, temp) && DTO.metadataTypes.contains(MetadataType.XMP)) {
 						ByteArrayOutputStream bout = new ByteArrayOutputStream();
 						len = is.read();
 						while(len != 0) {
@@ -201,7 +218,7 @@ public class GIFMeta {
 						len = 0; // We're already at block terminator
 					} else 
 						len = is.read(); // Block terminator					
-				} else if(func == 0xfe) { // Comment block
+				} else if(func == 0xfe && DTO.metadataTypes.contains(MetadataType.COMMENT)) { // Comment block
 					// Comment block
 					byte[] comment = new byte[len];
 					IOUtils.readFully(is, comment);
@@ -222,26 +239,20 @@ public class GIFMeta {
 		// <<Start of new frame>>		
 		readImageDescriptor(is, DTO);
 		
-		int colorsUsed = 1 << ((DTO.logicalScreenDescriptor[4]&0x07)+1);
-		
-		byte[] localPalette = null;
-		
 		if((DTO.imageDescriptor[8]&0x80) == 0x80) {
 			// A local color map is present
 			int bitsPerPixel = (DTO.imageDescriptor[8]&0x07)+1;
 			// Colors used in local palette
-			colorsUsed = (1<<bitsPerPixel);
-			localPalette = new byte[3*colorsUsed];
-		    is.read(localPalette);
+			int colorsUsed = (1<<bitsPerPixel);
+			// We don't need the palette for metadata
+			IOUtils.skipFully(is, 3*colorsUsed);
 		}		
 	
-		if(localPalette == null) localPalette = DTO.globalPalette;	
 		is.read(); // LZW Minimum Code Size		
 		int len = 0;
-		
+		// Skip the image data sub-blocks
 		while((len = is.read()) > 0) {
-			byte[] block = new byte[len];
-			is.read(block);
+			IOUtils.skipFully(is, len);
 		}
 		
 		return true;
@@ -268,10 +279,27 @@ public class GIFMeta {
 	}
 	
 	public static Map<MetadataType, Metadata> readMetadata(InputStream is) throws IOException {
+		return readMetadata(is, EnumSet.allOf(MetadataType.class));
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the GIF image. Blocks not
+	 * holding the requested metadata and the image data are skipped.
+	 * 
+	 * @param is InputStream for the GIF image
+	 * @param metadataTypes types of metadata to read, GIF only has XMP and COMMENT
+	 * @return a map of the requested Metadata found in the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, EnumSet<MetadataType> metadataTypes) throws IOException {
 		// Create a new data transfer object to hold data
 		DataTransferObject DTO = new DataTransferObject();
 		// Created a Map for the Meta data
 		DTO.metadataMap = new HashMap<MetadataType, Metadata>(); 
+		DTO.metadataTypes = metadataTypes;
+		// Nothing we could find, don't bother reading
+		if(!metadataTypes.contains(MetadataType.XMP) && !metadataTypes.contains(MetadataType.COMMENT))
+			return DTO.metadataMap;
 				
 		readHeader(is, DTO);
 		readLSD(is, DTO);
@@ -292,5 +320,96 @@ public class GIFMeta {
 		return DTO.metadataMap;		
 	}
 	
+	/**
+	 * Removes the requested types of metadata while copying the image block
+	 * by block. COMMENT is the comment extensions and XMP the XMP application
+	 * extension, other types are kept. Everything else is copied byte for
+	 * byte and only one data sub-block is held in memory at a time.
+	 * 
+	 * @param is InputStream for the GIF image
+	 * @param os OutputStream for the output image
+	 * @param metadataTypes types of metadata to remove
+	 * @throws IOException
+	 */
+	public static void removeMetadata(InputStream is, OutputStream os, MetadataType ... metadataTypes) throws IOException {
+		Set<MetadataType> types = EnumSet.noneOf(MetadataType.class);
+		types.addAll(Arrays.asList(metadataTypes));
+		byte[] xmp_id = {'X', 'M', 'P', '\0', 'D', 'a', 't', 'a', 'X', 'M', 'P' };
+		byte[] buf = new byte[255]; // Maximum data sub-block size
+		
+		DataTransferObject DTO = new DataTransferObject();
+		readHeader(is, DTO);
+		readLSD(is, DTO);
+		os.write(DTO.header);
+		os.write(DTO.logicalScreenDescriptor);
+		
+		if((DTO.logicalScreenDescriptor[4]&0x80) == 0x80) {
+			int bitsPerPixel = (DTO.logicalScreenDescriptor[4]&0x07)+1;
+			int colorsUsed = (1 << bitsPerPixel);
+			
+			readGlobalPalette(is, colorsUsed, DTO);
+			os.write(DTO.globalPalette);
+		}
+		
+		int blockType = is.read();
+		
+		while(blockType != -1) {
+			if(blockType == EXTENSION_INTRODUCER) {
+				int label = IOUtils.read(is);
+				if(label == (COMMENT_EXTENSION_LABEL&0xff) && types.contains(MetadataType.COMMENT)) {
+					skipSubBlocks(is);
+				} else if(label == (APPLICATION_EXTENSION_LABEL&0xff)) {
+					int len = IOUtils.read(is); // Block size, 0x0b
+					IOUtils.readFully(is, buf, 0, len);
+					if(len == xmp_id.length && Arrays.equals(xmp_id, Arrays.copyOf(buf, len)) && types.contains(MetadataType.XMP)) {
+						// The magic trailer makes XMP data read as sub-blocks
+						skipSubBlocks(is);
+					} else {
+						os.write(EXTENSION_INTRODUCER);
+						os.write(label);
+						os.write(len);
+						os.write(buf, 0, len);
+						copySubBlocks(is, os, buf);
+					}
+				} else {
+					os.write(EXTENSION_INTRODUCER);
+					os.write(label);
+					copySubBlocks(is, os, buf);
+				}
+			} else if(blockType == IMAGE_SEPARATOR) {
+				readImageDescriptor(is, DTO);
+				os.write(IMAGE_SEPARATOR);
+				os.write(DTO.imageDescriptor);
+				if((DTO.imageDescriptor[8]&0x80) == 0x80) {
+					// A local color map is present
+					int bitsPerPixel = (DTO.imageDescriptor[8]&0x07)+1;
+					byte[] localPalette = new byte[3*(1<<bitsPerPixel)];
+					IOUtils.readFully(is, localPalette);
+					os.write(localPalette);
+				}
+				os.write(IOUtils.read(is)); // LZW Minimum Code Size
+				copySubBlocks(is, os, buf);
+			} else { // Image trailer or anything we don't know of, copy the rest as is
+				os.write(blockType);
+				int bytesRead = is.read(buf);
+				while(bytesRead != -1) {
+					os.write(buf, 0, bytesRead);
+					bytesRead = is.read(buf);
+				}
+				break;
+			}
+			blockType = is.read();
+		}
+	}
+	
+	// Skips data sub-blocks up to and including the block terminator
+	private static void skipSubBlocks(InputStream is) throws IOException {
+		int len = IOUtils.read(is);
+		while(len > 0) {
+			IOUtils.skipFully(is, len);
+			len = IOUtils.read(is);
+		}
+	}
+	
 	private GIFMeta() {}
 }
\ No newline at end of file
@@ -0,0 +1,573 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * JPEGEditor.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Added removeAPPn()
+ * WY    16Oct2026  Keep the real marker after fill bytes
+ * WY    16Oct2026  Plan channel output from JpegSegmentIndex
+ * WY    16Oct2026  Write through SplicePlan for FileChannel input
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.jpeg;
+
+import java.awt.color.ICC_Profile;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import pixy.image.jpeg.JpegSegmentIndex.AppID;
+import pixy.image.jpeg.JpegSegmentIndex.SegmentInfo;
+import pixy.meta.MetadataType;
+import pixy.meta.adobe.IRB;
+import pixy.meta.adobe.ImageResourceID;
+import pixy.meta.adobe._8BIM;
+import pixy.meta.exif.Exif;
+import pixy.meta.exif.JpegExif;
+import pixy.meta.iptc.IPTC;
+import pixy.meta.iptc.IPTCDataSet;
+import cafe.image.jpeg.Marker;
+import cafe.image.util.IMGUtils;
+import cafe.io.FileCacheRandomAccessInputStream;
+import cafe.io.IOUtils;
+import cafe.io.RandomAccessInputStream;
+import cafe.string.StringUtils;
+import cafe.string.XMLUtils;
+
+import static pixy.image.jpeg.JPEGMeta.*;
+
+/**
+ * Applies several metadata changes to a JPEG image in a single pass.
+ * <p>
+ * Instead of calling JPEGMeta.insertXXX and removeMetadata one after
+ * another, each of which copies the whole image, the changes are
+ * collected and then written with one pass over the markers. The image
+ * data is copied only once.
+ * <p>
+ * Usage example:
+ * <pre>
+ * JPEGMeta.edit(is).setExif(exif, true).setXMP(xmp, null)
+ *     .setIPTC(iptcs, true).remove(MetadataType.ICC_PROFILE).writeTo(os);
+ * </pre>
+ * The new metadata are inserted right before the SOS segment as
+ * the single operation methods in JPEGMeta do. An editor can only be
+ * written once since it consumes the input stream.
+ * <p>
+ * If created for a FileChannel and written to a WritableByteChannel, the
+ * editor builds a SplicePlan of source ranges and new segments from the
+ * JpegSegmentIndex of the image instead. Only the segments to be merged
+ * are read and the rest of the image is transferred by FileChannel.transferTo.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class JPEGEditor {
+	private InputStream is;
+	private FileChannel channel;
+	private JpegSegmentIndex index;
+	private Set<MetadataType> removals = EnumSet.noneOf(MetadataType.class);
+	// APPn markers whose segments are all removed
+	private Set<Marker> removedAPPn = EnumSet.noneOf(Marker.class);
+	// New metadata
+	private Exif exif;
+	private boolean exifUpdate;
+	private String xmp;
+	private String extendedXmp;
+	private byte[] iccProfile;
+	private List<IPTCDataSet> iptcs;
+	private boolean iptcUpdate;
+	private List<_8BIM> bims;
+	private boolean irbUpdate;
+	private boolean written;
+	// Serialized XMP and ExtendedXMP
+	private byte[] xmpBytes;
+	private byte[] extendedXmpBytes;
+	private String guid;
+	// Original data to be merged with the new ones
+	private Exif oldExif;
+	private Map<Short, _8BIM> oldBims;
+
+	public JPEGEditor(InputStream is) {
+		if(is == null) throw new IllegalArgumentException("Input stream is null");
+		this.is = is;
+	}
+
+	/**
+	 * Creates an editor reading the original image by position from the
+	 * channel, which allows writeTo(WritableByteChannel) to transfer the
+	 * unchanged parts of the image without copying them to user space.
+	 */
+	public JPEGEditor(FileChannel channel) {
+		this(channel, null);
+	}
+
+	/**
+	 * @param channel FileChannel for the original image
+	 * @param index JpegSegmentIndex already built for the channel or null
+	 */
+	public JPEGEditor(FileChannel channel, JpegSegmentIndex index) {
+		if(channel == null) throw new IllegalArgumentException("Input channel is null");
+		this.channel = channel;
+		this.index = index;
+	}
+
+	/**
+	 * Removes the metadata of the specified types from the image. Only EXIF,
+	 * XMP, ICC_PROFILE, PHOTOSHOP, IPTC and COMMENT are taken care of.
+	 */
+	public JPEGEditor remove(MetadataType ... metadataTypes) {
+		removals.addAll(Arrays.asList(metadataTypes));
+		return this;
+	}
+
+	/**
+	 * Removes all the segments of the APPn marker whatever they hold.
+	 * 
+	 * @param APPn one of the APP0 to APP15 markers
+	 */
+	public JPEGEditor removeAPPn(Marker APPn) {
+		if(APPn.getValue() < (short)0xffe0 || APPn.getValue() > (short)0xffef)
+			throw new IllegalArgumentException("Input marker is not an APPn marker");
+		removedAPPn.add(APPn);
+		return this;
+	}
+
+	/**
+	 * @param exif Exif instance to be inserted
+	 * @param update true to keep the original EXIF fields not replaced by the new ones
+	 */
+	public JPEGEditor setExif(Exif exif, boolean update) {
+		this.exif = exif;
+		this.exifUpdate = update;
+		return this;
+	}
+
+	public JPEGEditor setICCProfile(byte[] data) {
+		this.iccProfile = data;
+		return this;
+	}
+
+	public JPEGEditor setICCProfile(ICC_Profile icc_profile) {
+		return setICCProfile(icc_profile.getData());
+	}
+
+	/**
+	 * @param iptcs a list of IPTCDataSet to be inserted
+	 * @param update true to keep the original IPTC data sets and other IRB data
+	 */
+	public JPEGEditor setIPTC(List<IPTCDataSet> iptcs, boolean update) {
+		this.iptcs = iptcs;
+		this.iptcUpdate = update;
+		return this;
+	}
+
+	/**
+	 * @param bims a list of _8BIM to be inserted
+	 * @param update true to keep the original IRB data not replaced by the new ones
+	 */
+	public JPEGEditor setIRB(List<_8BIM> bims, boolean update) {
+		this.bims = bims;
+		this.irbUpdate = update;
+		return this;
+	}
+
+	/**
+	 * @param xmp XML string for the XMP - Assuming in UTF-8 format.
+	 * @param extendedXmp XML string for the ExtendedXMP or null if none
+	 */
+	public JPEGEditor setXMP(String xmp, String extendedXmp) {
+		this.xmp = xmp;
+		this.extendedXmp = extendedXmp;
+		return this;
+	}
+
+	/**
+	 * Writes the image with all the changes applied to the output stream
+	 *
+	 * @param os OutputStream for the edited image
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream os) throws IOException {
+		prepare();
+		if(is == null) // Created for a FileChannel
+			is = new BufferedInputStream(Channels.newInputStream(channel.position(0)));
+		write(new Splicer(os));
+	}
+
+	/**
+	 * Writes the image with all the changes applied to the output channel.
+	 * <p>
+	 * If the editor is created for a FileChannel, only the new segments
+	 * go through user space, the rest of the image is transferred from the
+	 * input channel directly. Otherwise falls back to writeTo(OutputStream).
+	 *
+	 * @param dst WritableByteChannel for the edited image
+	 * @throws IOException
+	 */
+	public void writeTo(WritableByteChannel dst) throws IOException {
+		if(channel == null) {
+			writeTo(Channels.newOutputStream(dst));
+			return;
+		}
+		prepare();
+		if(index == null)
+			index = JpegSegmentIndex.build(channel);
+		createPlan().execute(channel, dst);
+	}
+
+	/*
+	 * Creates the 8BIMs for the new APP13 segment out of the original ones
+	 * and the new IRB and IPTC data.
+	 */
+	private List<_8BIM> createIRB() throws IOException {
+		Map<Short, _8BIM> bimMap = new LinkedHashMap<Short, _8BIM>();
+		// Any operation not updating replaces the complete APP13 data
+		boolean keep = !removals.contains(MetadataType.PHOTOSHOP) && (bims == null || irbUpdate)
+				&& (iptcs == null || iptcUpdate);
+		if(oldBims != null && keep) {
+			bimMap.putAll(oldBims);
+			if(removals.contains(MetadataType.IPTC))
+				bimMap.remove(ImageResourceID.IPTC_NAA.getValue());
+		}
+		if(bims != null) {
+			for(_8BIM bim : bims) // Replace the original data
+				bimMap.put(bim.getID(), bim);
+		}
+		if(iptcs != null) {
+			List<IPTCDataSet> dataSets = new ArrayList<IPTCDataSet>(iptcs);
+			_8BIM iptcBIM = bimMap.remove(ImageResourceID.IPTC_NAA.getValue());
+			if(iptcBIM != null && iptcUpdate) { // Keep the original values
+				IPTC iptc = new IPTC(iptcBIM.getData());
+				// Shallow copy the map
+				Map<String, List<IPTCDataSet>> dataSetMap = new HashMap<String, List<IPTCDataSet>>(iptc.getDataSet());
+				for(IPTCDataSet set : iptcs)
+					if(!set.allowMultiple())
+						dataSetMap.remove(set.getName());
+				for(List<IPTCDataSet> iptcList : dataSetMap.values())
+					dataSets.addAll(iptcList);
+			}
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			for(IPTCDataSet iptc : dataSets)
+				iptc.write(bout);
+			// Create 8BIM for IPTC
+			_8BIM newBIM = new _8BIM(ImageResourceID.IPTC_NAA.getValue(), "iptc", bout.toByteArray());
+			bimMap.put(newBIM.getID(), newBIM);
+		}
+
+		return new ArrayList<_8BIM>(bimMap.values());
+	}
+
+	// Builds the SplicePlan from the segment index
+	private SplicePlan createPlan() throws IOException {
+		SplicePlan plan = new SplicePlan();
+		plan.add(0, 2); // SOI
+		long end = 2;
+		for(SegmentInfo segment : index.getSegments()) {
+			end = segment.getOffset() + segment.getTotalLength();
+			if(segment.getMarker() == Marker.COM && removals.contains(MetadataType.COMMENT))
+				continue;
+			AppID appID = segment.getAppID();
+			if(isReplaced(appID)) {
+				if(isMerged(appID))
+					merge(appID, JpegSegmentIndex.readData(channel, segment));
+				continue;
+			}
+			if(removedAPPn.contains(segment.getMarker()))
+				continue;
+			plan.add(segment.getOffset(), segment.getTotalLength());
+		}
+		long size = channel.size();
+		if(index.getSOSOffset() >= 0) {
+			// We add all the new metadata right before the SOS segment.
+			plan.add(createSegments());
+			plan.add(index.getSOSOffset(), size - index.getSOSOffset());
+		} else {
+			plan.add(end, size - end);
+		}
+
+		return plan;
+	}
+
+	// Serializes all the new metadata segments
+	private byte[] createSegments() throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		if(exif != null) {
+			mergeExif(exif, oldExif, exifUpdate);
+			exif.write(bout);
+		}
+		if(iccProfile != null)
+			writeICCProfile(bout, iccProfile);
+		if(xmpBytes != null)
+			writeXMP(bout, xmpBytes, extendedXmpBytes, guid);
+		if(isReplaced(AppID.PHOTOSHOP_IRB))
+			writeIRB(bout, createIRB());
+
+		return bout.toByteArray();
+	}
+
+	// Whether we need the data of a replaced segment
+	private boolean isMerged(AppID appID) {
+		switch(appID) {
+			case EXIF:
+				return exif != null && exifUpdate;
+			case PHOTOSHOP_IRB:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	// Whether segments with the identifier are removed or replaced
+	private boolean isReplaced(AppID appID) {
+		switch(appID) {
+			case EXIF:
+				return exif != null || removals.contains(MetadataType.EXIF);
+			case XMP:
+			case EXTENDED_XMP:
+				return xmp != null || removals.contains(MetadataType.XMP);
+			case ICC_PROFILE:
+				return iccProfile != null || removals.contains(MetadataType.ICC_PROFILE);
+			case PHOTOSHOP_IRB:
+				return iptcs != null || bims != null || removals.contains(MetadataType.PHOTOSHOP)
+						|| removals.contains(MetadataType.IPTC);
+			default:
+				return false;
+		}
+	}
+
+	// Keeps the original data to be merged later
+	private void merge(AppID appID, byte[] data) {
+		switch(appID) {
+			case EXIF: // We assume EXIF data exist only in one APP1
+				oldExif = new JpegExif(Arrays.copyOfRange(data, EXIF_ID.length, data.length));
+				break;
+			case PHOTOSHOP_IRB:
+				// Keep the original 8BIMs, we will write them back later if needed
+				IRB irb = new IRB(Arrays.copyOfRange(data, PHOTOSHOP_IRB_ID.length, data.length));
+				if(oldBims == null)
+					oldBims = new LinkedHashMap<Short, _8BIM>();
+				oldBims.putAll(irb.get8BIM());
+				break;
+			default:
+		}
+	}
+
+	// Serializes XMP and creates thumbnail before writing anything out
+	private void prepare() throws IOException {
+		if(written) throw new IllegalStateException("JPEGEditor can only be written once");
+		written = true;
+		if(xmp != null) {
+			// Add packet wrapper to the XMP document
+			Document xmpDoc = XMLUtils.createXML(xmp);
+			XMLUtils.insertLeadingPI(xmpDoc, "xpacket", "begin='' id='W5M0MpCehiHzreSzNTczkc9d'");
+			XMLUtils.insertTrailingPI(xmpDoc, "xpacket", "end='w'");
+			if(extendedXmp != null) { // We have ExtendedXMP
+				extendedXmpBytes = XMLUtils.serializeToByteArray(XMLUtils.createXML(extendedXmp));
+				guid = StringUtils.generateMD5(extendedXmpBytes);
+				NodeList descriptions = xmpDoc.getElementsByTagName("rdf:Description");
+				int length = descriptions.getLength();
+				if(length > 0) {
+					Element node = (Element)descriptions.item(length - 1);
+					node.setAttribute("xmlns:xmpNote", "http://ns.adobe.com/xmp/extension/");
+					node.setAttribute("xmpNote:HasExtendedXMP", guid);
+				}
+			}
+			xmpBytes = XMLUtils.serializeToByteArray(xmpDoc);
+			if(xmpBytes.length > MAX_XMP_CHUNK_SIZE)
+				throw new RuntimeException("XMP data size exceededs JPEG segment size");
+		}
+		// We need thumbnail image but don't have one, create one from the current image input stream
+		if(exif != null && exif.isThumbnailRequired() && !exif.containsImage()) {
+			if(channel != null) {
+				exif.setThumbnailImage(IMGUtils.createThumbnail(Channels.newInputStream(channel.position(0))));
+			} else {
+				is = new FileCacheRandomAccessInputStream(is);
+				exif.setThumbnailImage(IMGUtils.createThumbnail(is));
+			}
+		}
+	}
+
+	private void write(Splicer splicer) throws IOException {
+		boolean finished = false;
+		int length = 0;
+		short marker;
+		Marker emarker;
+
+		// The very first marker should be the start_of_image marker!
+		if(Marker.fromShort(splicer.readMarker()) != Marker.SOI)
+			throw new IOException("Invalid JPEG image, expected SOI marker not found!");
+
+		splicer.keep(2);
+
+		marker = splicer.readMarker();
+
+		while (!finished) {
+			if (Marker.fromShort(marker) == Marker.EOI) {
+				splicer.keep(2);
+				finished = true;
+			} else { // Read markers
+				emarker = Marker.fromShort(marker);
+
+				switch (emarker) {
+					case JPG: // JPG and JPGn shouldn't appear in the image.
+					case JPG0:
+					case JPG13:
+					case TEM: // The only stand alone marker besides SOI, EOI, and RSTn.
+						splicer.keep(2);
+						marker = splicer.readMarker();
+						break;
+					case PADDING: // Fill bytes are dropped
+						marker = splicer.skipFill();
+						break;
+					case SOS:
+						// We add all the new metadata right before the SOS segment.
+						splicer.insert(createSegments());
+						splicer.keep(2);
+						splicer.copyToEnd(); // Copy the rest of the data
+						finished = true; // No more marker to read, we are done.
+						break;
+					case COM:
+						length = splicer.readShort()&0xffff;
+						if(removals.contains(MetadataType.COMMENT)) {
+							IOUtils.skipFully(is, length - 2);
+						} else {
+							splicer.keep(4);
+							splicer.copy(length - 2);
+						}
+						marker = splicer.readMarker();
+						break;
+					case APP0:
+					case APP1:
+					case APP2:
+					case APP3:
+					case APP4:
+					case APP5:
+					case APP6:
+					case APP7:
+					case APP8:
+					case APP9:
+					case APP10:
+					case APP11:
+					case APP12:
+					case APP13:
+					case APP14:
+					case APP15:
+						length = splicer.readShort()&0xffff;
+						byte[] data = new byte[length - 2];
+						splicer.readFully(data);
+						AppID appID = AppID.fromData(emarker, data, 0, data.length);
+						if(isReplaced(appID)) {
+							if(isMerged(appID))
+								merge(appID, data);
+						} else if(!removedAPPn.contains(emarker)) {
+							splicer.keep(length + 2);
+						}
+						marker = splicer.readMarker();
+						break;
+					default:
+						length = splicer.readShort()&0xffff;
+						splicer.keep(4);
+						splicer.copy(length - 2);
+						marker = splicer.readMarker();
+				}
+			}
+		}
+		// Close the input stream in case it's an instance of RandomAccessInputStream
+		if(is instanceof RandomAccessInputStream)
+			is.close();
+	}
+
+	/*
+	 * Copies from the input stream to the output stream. Bytes read from
+	 * the input are either kept in the output or dropped.
+	 */
+	private class Splicer {
+		private OutputStream os;
+		// The bytes read for the current segment, which may be kept
+		private byte[] buf = new byte[65540];
+		private int bufLen;
+
+		Splicer(OutputStream os) {
+			this.os = os;
+		}
+
+		/** Copies the next n bytes unchanged */
+		void copy(int n) throws IOException {
+			byte[] temp = new byte[n];
+			IOUtils.readFully(is, temp);
+			os.write(temp);
+		}
+
+		void copyToEnd() throws IOException {
+			JPEGMeta.copyToEnd(is, os);
+		}
+
+		void insert(byte[] b) throws IOException {
+			os.write(b);
+		}
+
+		/** Keeps the last n bytes read unchanged in the output */
+		void keep(int n) throws IOException {
+			os.write(buf, bufLen - n, n);
+		}
+
+		void readFully(byte[] b) throws IOException {
+			IOUtils.readFully(is, b);
+			System.arraycopy(b, 0, buf, bufLen, b.length);
+			bufLen += b.length;
+		}
+
+		// Starts a new segment
+		short readMarker() throws IOException {
+			bufLen = 0;
+			return readShort();
+		}
+
+		/*
+		 * Skips the fill bytes after a padding marker. Only the real marker
+		 * following them is left in the buffer to be kept.
+		 */
+		short skipFill() throws IOException {
+			int nextByte = 0;
+			while((nextByte = IOUtils.read(is)) == 0xff) {;}
+			buf[0] = (byte)0xff;
+			buf[1] = (byte)nextByte;
+			bufLen = 2;
+			return (short)((0xff<<8)|nextByte);
+		}
+
+		short readShort() throws IOException {
+			IOUtils.readFully(is, buf, bufLen, 2);
+			bufLen += 2;
+			return IOUtils.readShortMM(buf, bufLen - 2);
+		}
+	}
+}
@@ -13,6 +13,18 @@
  *
  * Who   Date       Description
  * ====  =======    ==================================================
+ * WY    16Oct2026  Send the ICC profile dump to Diagnostics
+ * WY    16Oct2026  Made mergeExif() public for other image formats
+ * WY    16Oct2026  Show ICC profile only if diagnostics are enabled
+ * WY    16Oct2026  Back metadata by segment data instead of copies
+ * WY    16Oct2026  Added readMetadata() for requested metadata types only
+ * WY    16Oct2026  Added JpegSegmentIndex variants of readMetadata(), extractThumbnails() and removeAPPn()
+ * WY    16Oct2026  Use JpegSegmentIndex for in place updates and ICC extraction
+ * WY    16Oct2026  Added FileChannel insert/remove through SplicePlan
+ * WY    16Oct2026  Added in place EXIF and XMP update for files
+ * WY    16Oct2026  Added edit() for single pass multiple changes
+ * WY    16Oct2026  Scan image data with SOSScanner
+ * WY    16Oct2026  Stop reading at the first SOS unless full scan is requested
  * WY    13Mar2015  initial creation
  */
 
@@ -31,10 +43,15 @@ import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import cafe.image.ImageIO;
 import cafe.image.ImageType;
@@ -73,6 +90,8 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+import pixy.image.jpeg.JpegSegmentIndex.AppID;
+import pixy.image.jpeg.JpegSegmentIndex.SegmentInfo;
 import pixy.meta.Metadata;
 import pixy.meta.MetadataType;
 import pixy.meta.Thumbnail;
@@ -91,6 +110,7 @@ import pixy.meta.image.Comment;
 import pixy.meta.image.ImageMetadata;
 import pixy.meta.iptc.IPTC;
 import pixy.meta.iptc.IPTCDataSet;
+import pixy.util.Diagnostics;
 import pixy.util.MetadataUtils;
 
 /**
@@ -136,50 +156,10 @@ public class JPEGMeta {
 	@SuppressWarnings("unused")
 	private static short copySOS(InputStream is, OutputStream os) throws IOException {
 		// Need special treatment.
-		int nextByte = 0;
-		short marker = 0;	
-		
-		while((nextByte = IOUtils.read(is)) != -1) {
-			if(nextByte == 0xff) {
-				nextByte = IOUtils.read(is);
-				
-				if (nextByte == -1) {
-					throw new IOException("Premature end of SOS segment!");					
-				}								
-				
-				if (nextByte != 0x00) { // This is a marker
-					marker = (short)((0xff<<8)|nextByte);
-					
-					switch (Marker.fromShort(marker)) {										
-						case RST0:  
-						case RST1:
-						case RST2:
-						case RST3:
-						case RST4:
-						case RST5:
-						case RST6:
-						case RST7:
-							IOUtils.writeShortMM(os, marker);
-							continue;
-						default:											
-					}
-					break;
-				}
-				IOUtils.write(os, 0xff);
-				IOUtils.write(os, nextByte);
-			} else {
-				IOUtils.write(os,  nextByte);				
-			}			
-		}
-		
-		if (nextByte == -1) {
-			throw new IOException("Premature end of SOS segment!");
-		}
-
-		return marker;
+		return new SOSScanner().copy(is, os);
 	}
 	
-	private static void copyToEnd(InputStream is, OutputStream os) throws IOException {
+	static void copyToEnd(InputStream is, OutputStream os) throws IOException {
 		byte[] buffer = new byte[10240]; // 10k buffer
 		int bytesRead = -1;
 		
@@ -188,6 +168,41 @@ public class JPEGMeta {
 		}
 	}
 	
+	/**
+	 * Creates a JPEGEditor to apply several metadata changes to the image
+	 * in one pass, copying the image data only once.
+	 * 
+	 * @param is InputStream for the original image
+	 * @return a JPEGEditor for the image
+	 */
+	public static JPEGEditor edit(InputStream is) {
+		return new JPEGEditor(is);
+	}
+	
+	/**
+	 * Creates a JPEGEditor reading the original image from a FileChannel.
+	 * When written to a WritableByteChannel, the image data is transferred
+	 * between the channels without copying to user space.
+	 * 
+	 * @param channel FileChannel for the original image
+	 * @return a JPEGEditor for the image
+	 */
+	public static JPEGEditor edit(FileChannel channel) {
+		return new JPEGEditor(channel);
+	}
+	
+	/**
+	 * Creates a JPEGEditor for a FileChannel with the JpegSegmentIndex already
+	 * built for it, so the markers don't have to be walked through again.
+	 * 
+	 * @param channel FileChannel for the original image
+	 * @param index JpegSegmentIndex of the image
+	 * @return a JPEGEditor for the image
+	 */
+	public static JPEGEditor edit(FileChannel channel, JpegSegmentIndex index) {
+		return new JPEGEditor(channel, index);
+	}
+	
 	public static byte[] extractICCProfile(InputStream is) throws IOException {
 		ByteArrayOutputStream bo = new ByteArrayOutputStream();
 		// Flag when we are done
@@ -240,6 +255,26 @@ public class JPEGMeta {
 		return bo.toByteArray();
 	}
 	
+	/**
+	 * Extracts ICC profile by reading only the ICC_PROFILE APP2 segments
+	 * found in the segment index.
+	 * 
+	 * @param channel FileChannel for the JPEG image
+	 * @param index JpegSegmentIndex of the image
+	 * @return ICC profile data, empty if none
+	 * @throws IOException
+	 */
+	public static byte[] extractICCProfile(FileChannel channel, JpegSegmentIndex index) throws IOException {
+		ByteArrayOutputStream bo = new ByteArrayOutputStream();
+		for(SegmentInfo segment : index.getSegments(AppID.ICC_PROFILE)) {
+			byte[] data = JpegSegmentIndex.readData(channel, segment);
+			// Skip the identifier and the chunk sequence number and count
+			bo.write(data, ICC_PROFILE_ID.length + 2, data.length - ICC_PROFILE_ID.length - 2);
+		}
+		
+		return bo.toByteArray();
+	}
+	
 	public static void extractICCProfile(InputStream is, String pathToICCProfile) throws IOException {
 		byte[] icc_profile = extractICCProfile(is);
 		
@@ -333,39 +368,7 @@ public class JPEGMeta {
 				    	length = IOUtils.readUnsignedShortMM(is);
 						byte[] jfif_buf = new byte[length - 2];
 					    IOUtils.readFully(is, jfif_buf);
-					    // EXIF segment
-					    if(Arrays.equals(ArrayUtils.subArray(jfif_buf, 0, JFIF_ID.length), JFIF_ID) || Arrays.equals(ArrayUtils.subArray(jfif_buf, 0, JFXX_ID.length), JFXX_ID)) {
-					      	int thumbnailWidth = jfif_buf[12]&0xff;
-					    	int thumbnailHeight = jfif_buf[13]&0xff;
-					    	String outpath = "";
-							if(pathToThumbnail.endsWith("\\") || pathToThumbnail.endsWith("/"))
-								outpath = pathToThumbnail + "jfif_thumbnail";
-							else
-								outpath = pathToThumbnail.replaceFirst("[.][^.]+$", "") + "_jfif_t";
-					    	
-					    	if(thumbnailWidth != 0 && thumbnailHeight != 0) { // There is a thumbnail
-					    		// Extract the thumbnail
-					    		//Create a BufferedImage
-					    		int size = 3*thumbnailWidth*thumbnailHeight;
-								DataBuffer db = new DataBufferByte(ArrayUtils.subArray(jfif_buf, 14, size), size);
-								int[] off = {0, 1, 2};//RGB band offset, we have 3 bands
-								int numOfBands = 3;
-								int trans = Transparency.OPAQUE;
-									
-								WritableRaster raster = Raster.createInterleavedRaster(db, thumbnailWidth, thumbnailHeight, 3*thumbnailWidth, numOfBands, off, null);
-								ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false, trans, DataBuffer.TYPE_BYTE);
-						   		BufferedImage bi = new BufferedImage(cm, raster, false, null);
-								// Create a new writer to write the image
-								ImageWriter writer = ImageIO.getWriter(ImageType.JPG);
-								FileOutputStream fout = new FileOutputStream(outpath + ".jpg");
-								try {
-									writer.write(bi, fout);
-								} catch (Exception e) {
-									e.printStackTrace();
-								}
-								fout.close();		
-					    	}
-					    }
+					    writeJFIFThumbnail(jfif_buf, pathToThumbnail);
 				    	marker = IOUtils.readShortMM(is);
 						break;
 				    case APP1:
@@ -377,24 +380,7 @@ public class JPEGMeta {
 						if (Arrays.equals(exif_buf, EXIF_ID)) {
 							exif_buf = new byte[length - 8];
 						    IOUtils.readFully(is, exif_buf);
-						    ExifReader reader = new ExifReader(exif_buf);
-						    reader.read();
-						    if(reader.containsThumbnail()) {
-						    	String outpath = "";
-								if(pathToThumbnail.endsWith("\\") || pathToThumbnail.endsWith("/"))
-									outpath = pathToThumbnail + "exif_thumbnail";
-								else
-									outpath = pathToThumbnail.replaceFirst("[.][^.]+$", "") + "_exif_t";
-						    	ExifThumbnail thumbnail = reader.getThumbnail();
-						    	OutputStream fout = null;
-						    	if(thumbnail.getDataType() == ExifThumbnail.DATA_TYPE_KJpegRGB) {// JPEG format, save as JPEG
-						    		 fout = new FileOutputStream(outpath + ".jpg");						    	
-						    	} else { // Uncompressed, save as TIFF
-						    		fout = new FileOutputStream(outpath + ".tif");
-						    	}
-						    	fout.write(thumbnail.getCompressedImage());
-					    		fout.close();
-						    }						  			
+						    writeExifThumbnail(exif_buf, pathToThumbnail);
 						} else {
 							IOUtils.skipFully(is, length - 8);
 						}
@@ -408,31 +394,8 @@ public class JPEGMeta {
 						
 						while(data[i] != 0) i++;
 						
-						if(new String(data, 0, i++).equals("Photoshop 3.0")) {
-							IRBReader reader = new IRBReader(ArrayUtils.subArray(data, i, data.length - i));
-							reader.read();
-							if(reader.containsThumbnail()) {
-								IRBThumbnail thumbnail = reader.getThumbnail();
-								// Create output path
-								String outpath = "";
-								if(pathToThumbnail.endsWith("\\") || pathToThumbnail.endsWith("/"))
-									outpath = pathToThumbnail + "photoshop_thumbnail.jpg";
-								else
-									outpath = pathToThumbnail.replaceFirst("[.][^.]+$", "") + "_photoshop_t.jpg";
-								FileOutputStream fout = new FileOutputStream(outpath);
-								if(thumbnail.getDataType() == IRBThumbnail.DATA_TYPE_KJpegRGB) {
-									fout.write(thumbnail.getCompressedImage());
-								} else {
-									ImageWriter writer = ImageIO.getWriter(ImageType.JPG);
-									try {
-										writer.write(thumbnail.getRawImage(), fout);
-									} catch (Exception e) {
-										throw new IOException("Writing thumbnail failed!");
-									}
-								}
-								fout.close();								
-							}							
-						}				
+						if(new String(data, 0, i++).equals("Photoshop 3.0"))
+							writeIRBThumbnail(ArrayUtils.subArray(data, i, data.length - i), pathToThumbnail);
 				    	marker = IOUtils.readShortMM(is);
 				    	break;
 				    default:
@@ -445,6 +408,120 @@ public class JPEGMeta {
 	    }
 	}
 	
+	/**
+	 * Extracts thumbnail images from JFIF/APP0, Exif APP1 and/or Adobe APP13 segment if any,
+	 * reading only those segments found in the segment index.
+	 * 
+	 * @param channel FileChannel for the JPEG image
+	 * @param index JpegSegmentIndex of the image
+	 * @param pathToThumbnail a path or a path and name prefix combination for the extracted thumbnails.
+	 * @throws IOException
+	 */
+	public static void extractThumbnails(FileChannel channel, JpegSegmentIndex index, String pathToThumbnail) throws IOException {
+		for(SegmentInfo segment : index.getSegments()) {
+			switch(segment.getAppID()) {
+				case JFIF:
+				case JFXX:
+					writeJFIFThumbnail(JpegSegmentIndex.readData(channel, segment), pathToThumbnail);
+					break;
+				case EXIF:
+					byte[] data = JpegSegmentIndex.readData(channel, segment);
+					writeExifThumbnail(ArrayUtils.subArray(data, EXIF_ID.length, data.length - EXIF_ID.length), pathToThumbnail);
+					break;
+				case PHOTOSHOP_IRB:
+					data = JpegSegmentIndex.readData(channel, segment);
+					writeIRBThumbnail(ArrayUtils.subArray(data, PHOTOSHOP_IRB_ID.length, data.length - PHOTOSHOP_IRB_ID.length), pathToThumbnail);
+					break;
+				default:
+			}
+		}
+	}
+	
+	// Writes the thumbnail of the JFIF or JFXX APP0 segment if there is one
+	private static void writeJFIFThumbnail(byte[] jfif_buf, String pathToThumbnail) throws IOException {
+		if(Arrays.equals(ArrayUtils.subArray(jfif_buf, 0, JFIF_ID.length), JFIF_ID) || Arrays.equals(ArrayUtils.subArray(jfif_buf, 0, JFXX_ID.length), JFXX_ID)) {
+			int thumbnailWidth = jfif_buf[12]&0xff;
+			int thumbnailHeight = jfif_buf[13]&0xff;
+			String outpath = "";
+			if(pathToThumbnail.endsWith("\\") || pathToThumbnail.endsWith("/"))
+				outpath = pathToThumbnail + "jfif_thumbnail";
+			else
+				outpath = pathToThumbnail.replaceFirst("[.][^.]+$", "") + "_jfif_t";
+			
+			if(thumbnailWidth != 0 && thumbnailHeight != 0) { // There is a thumbnail
+				// Extract the thumbnail
+				//Create a BufferedImage
+				int size = 3*thumbnailWidth*thumbnailHeight;
+				DataBuffer db = new DataBufferByte(ArrayUtils.subArray(jfif_buf, 14, size), size);
+				int[] off = {0, 1, 2};//RGB band offset, we have 3 bands
+				int numOfBands = 3;
+				int trans = Transparency.OPAQUE;
+				
+				WritableRaster raster = Raster.createInterleavedRaster(db, thumbnailWidth, thumbnailHeight, 3*thumbnailWidth, numOfBands, off, null);
+				ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false, trans, DataBuffer.TYPE_BYTE);
+				BufferedImage bi = new BufferedImage(cm, raster, false, null);
+				// Create a new writer to write the image
+				ImageWriter writer = ImageIO.getWriter(ImageType.JPG);
+				FileOutputStream fout = new FileOutputStream(outpath + ".jpg");
+				try {
+					writer.write(bi, fout);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+				fout.close();
+			}
+		}
+	}
+	
+	// Writes the thumbnail of the EXIF data following the EXIF identifier if there is one
+	private static void writeExifThumbnail(byte[] exif_buf, String pathToThumbnail) throws IOException {
+		ExifReader reader = new ExifReader(exif_buf);
+		reader.read();
+		if(reader.containsThumbnail()) {
+			String outpath = "";
+			if(pathToThumbnail.endsWith("\\") || pathToThumbnail.endsWith("/"))
+				outpath = pathToThumbnail + "exif_thumbnail";
+			else
+				outpath = pathToThumbnail.replaceFirst("[.][^.]+$", "") + "_exif_t";
+			ExifThumbnail thumbnail = reader.getThumbnail();
+			OutputStream fout = null;
+			if(thumbnail.getDataType() == ExifThumbnail.DATA_TYPE_KJpegRGB) {// JPEG format, save as JPEG
+				fout = new FileOutputStream(outpath + ".jpg");
+			} else { // Uncompressed, save as TIFF
+				fout = new FileOutputStream(outpath + ".tif");
+			}
+			fout.write(thumbnail.getCompressedImage());
+			fout.close();
+		}
+	}
+	
+	// Writes the thumbnail of the Photoshop IRB data following the identifier if there is one
+	private static void writeIRBThumbnail(byte[] data, String pathToThumbnail) throws IOException {
+		IRBReader reader = new IRBReader(data);
+		reader.read();
+		if(reader.containsThumbnail()) {
+			IRBThumbnail thumbnail = reader.getThumbnail();
+			// Create output path
+			String outpath = "";
+			if(pathToThumbnail.endsWith("\\") || pathToThumbnail.endsWith("/"))
+				outpath = pathToThumbnail + "photoshop_thumbnail.jpg";
+			else
+				outpath = pathToThumbnail.replaceFirst("[.][^.]+$", "") + "_photoshop_t.jpg";
+			FileOutputStream fout = new FileOutputStream(outpath);
+			if(thumbnail.getDataType() == IRBThumbnail.DATA_TYPE_KJpegRGB) {
+				fout.write(thumbnail.getCompressedImage());
+			} else {
+				ImageWriter writer = ImageIO.getWriter(ImageType.JPG);
+				try {
+					writer.write(thumbnail.getRawImage(), fout);
+				} catch (Exception e) {
+					throw new IOException("Writing thumbnail failed!");
+				}
+			}
+			fout.close();
+		}
+	}
+	
 	public static ICCProfile getICCProfile(InputStream is) throws IOException {
 		ICCProfile profile = null;
 		byte[] buf = extractICCProfile(is);
@@ -512,51 +589,7 @@ public class JPEGMeta {
 				    	// We add EXIF data right before the SOS segment.
 				    	// Another position to add EXIF data would be right
 				    	// after SOI marker
-				    	IFD newExifSubIFD = exif.getExifIFD();
-				    	IFD newGpsSubIFD = exif.getGPSIFD();
-				    	IFD newImageIFD = exif.getImageIFD();
-				    	ExifThumbnail newThumbnail = exif.getThumbnail();
-				    	// Got to do something to keep the old data
-				    	if(update && oldExif != null) {
-				    		ExifReader reader = oldExif.getReader();
-				    		if(reader != null) reader.read();
-				    		IFD imageIFD = reader.getImageIFD();
-					    	IFD exifSubIFD = reader.getExifIFD();
-					    	IFD gpsSubIFD = reader.getGPSIFD();
-					    	ExifThumbnail thumbnail = reader.getThumbnail();
-					    	
-					    	if(imageIFD != null) {
-					    		if(newImageIFD != null)
-					    			imageIFD.addFields(newImageIFD.getFields());
-					    		newImageIFD = imageIFD;
-			    			}
-					    	if(thumbnail != null) {
-					    		if(newThumbnail == null)
-					    			newThumbnail = thumbnail;
-							}
-					    	if(exifSubIFD != null) {
-					    		if(newExifSubIFD != null)
-					    			exifSubIFD.addFields(newExifSubIFD.getFields());
-					    		newExifSubIFD = exifSubIFD;
-			    			}
-					    	if(gpsSubIFD != null) {
-					    		if(newGpsSubIFD != null)
-					    			gpsSubIFD.addFields(newGpsSubIFD.getFields());
-					    		newGpsSubIFD = gpsSubIFD;
-			    			}
-				    	} 
-				    	// If we have ImageIFD, set Image IFD attached with EXIF and GPS
-				     	if(newImageIFD != null) {
-				    		if(newExifSubIFD != null)
-					    		newImageIFD.addChild(TiffTag.EXIF_SUB_IFD, newExifSubIFD);
-				    		if(newGpsSubIFD != null)
-					    		newImageIFD.addChild(TiffTag.GPS_SUB_IFD, newGpsSubIFD);
-				    		exif.setImageIFD(newImageIFD);
-				    	} else { // Otherwise, set EXIF and GPS IFD separately
-				    		exif.setExifIFD(newExifSubIFD);
-				    		exif.setGPSSubIFD(newGpsSubIFD);
-				    	}
-				   		exif.setThumbnail(newThumbnail);
+				    	mergeExif(exif, oldExif, update);
 				     	exif.write(os); // Now insert the new EXIF to the JPEG
 				    	IOUtils.writeShortMM(os, marker);
 						copyToEnd(is, os);
@@ -598,6 +631,145 @@ public class JPEGMeta {
 			is.close();
 	}
 	
+	private static int indexOf(byte[] data, byte[] pattern) {
+		outer:
+		for(int i = data.length - pattern.length; i >= 0; i--) {
+			for(int j = 0; j < pattern.length; j++)
+				if(data[i + j] != pattern[j]) continue outer;
+			return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Inserts EXIF, transferring the rest of the image from the input channel
+	 * to the output channel directly.
+	 * 
+	 * @param in FileChannel for the original image
+	 * @param out WritableByteChannel for the image with EXIF inserted
+	 * @param exif Exif instance
+	 * @param update True to keep the original data, otherwise false
+	 * @throws IOException
+	 */
+	public static void insertExif(FileChannel in, WritableByteChannel out, Exif exif, boolean update) throws IOException {
+		edit(in).setExif(exif, update).writeTo(out);
+	}
+	
+	/**
+	 * Inserts EXIF into a JPEG file. If the file already has an EXIF APP1
+	 * segment and the new EXIF fits into it, the segment is overwritten in
+	 * place and padded with zeros. Otherwise the whole file is rewritten.
+	 * 
+	 * @param file the JPEG file to be updated
+	 * @param exif Exif instance
+	 * @param update True to keep the original data, otherwise false
+	 * @return true if the EXIF is written in place, otherwise false
+	 * @throws IOException
+	 */
+	public static boolean insertExif(File file, Exif exif, boolean update) throws IOException {
+		// We need thumbnail image but don't have one, create one from the image file
+		if(exif.isThumbnailRequired() && !exif.containsImage()) {
+			FileInputStream fin = new FileInputStream(file);
+			try {
+				exif.setThumbnailImage(IMGUtils.createThumbnail(fin));
+			} finally {
+				fin.close();
+			}
+		}
+		boolean merged = false;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			List<SegmentInfo> segments = JpegSegmentIndex.build(channel).getSegments(AppID.EXIF);
+			if(segments.size() > 0) {
+				SegmentInfo segment = segments.get(0); // We assume EXIF data exist only in one APP1
+				byte[] data = JpegSegmentIndex.readData(channel, segment);
+				mergeExif(exif, new JpegExif(Arrays.copyOfRange(data, EXIF_ID.length, data.length)), update);
+				merged = true;
+				ByteArrayOutputStream bout = new ByteArrayOutputStream();
+				exif.write(bout);
+				if(writeSegment(channel, segment, bout.toByteArray(), 0)) 
+					return true;
+			}
+		} finally {
+			raf.close();
+		}
+		// Doesn't fit, rewrite the whole file. The EXIF is already merged if we have read the old one
+		File tmp = File.createTempFile("pixy", null, file.getAbsoluteFile().getParentFile());
+		FileInputStream fin = new FileInputStream(file);
+		FileOutputStream fout = new FileOutputStream(tmp);
+		try {
+			insertExif(fin.getChannel(), fout.getChannel(), exif, update && !merged);
+		} catch(IOException e) {
+			fout.close();
+			tmp.delete();
+			throw e;
+		} finally {
+			fin.close();
+			fout.close();
+		}
+		replaceFile(tmp, file);
+		
+		return false;
+	}
+	
+	/**
+	 * Sets the IFDs and thumbnail of the new EXIF. If update is true,
+	 * the fields of the old EXIF are kept unless replaced by the new ones.
+	 * 
+	 * @param exif the new EXIF
+	 * @param oldExif the EXIF already in the image, may be null
+	 * @param update true to keep the fields of the old EXIF
+	 * @throws IOException
+	 */
+	public static void mergeExif(Exif exif, Exif oldExif, boolean update) throws IOException {
+		IFD newExifSubIFD = exif.getExifIFD();
+		IFD newGpsSubIFD = exif.getGPSIFD();
+		IFD newImageIFD = exif.getImageIFD();
+		ExifThumbnail newThumbnail = exif.getThumbnail();
+		// Got to do something to keep the old data
+		if(update && oldExif != null) {
+			ExifReader reader = oldExif.getReader();
+			if(reader != null) reader.read();
+			IFD imageIFD = reader.getImageIFD();
+			IFD exifSubIFD = reader.getExifIFD();
+			IFD gpsSubIFD = reader.getGPSIFD();
+			ExifThumbnail thumbnail = reader.getThumbnail();
+			
+			if(imageIFD != null) {
+				if(newImageIFD != null)
+					imageIFD.addFields(newImageIFD.getFields());
+				newImageIFD = imageIFD;
+			}
+			if(thumbnail != null) {
+				if(newThumbnail == null)
+					newThumbnail = thumbnail;
+			}
+			if(exifSubIFD != null) {
+				if(newExifSubIFD != null)
+					exifSubIFD.addFields(newExifSubIFD.getFields());
+				newExifSubIFD = exifSubIFD;
+			}
+			if(gpsSubIFD != null) {
+				if(newGpsSubIFD != null)
+					gpsSubIFD.addFields(newGpsSubIFD.getFields());
+				newGpsSubIFD = gpsSubIFD;
+			}
+		} 
+		// If we have ImageIFD, set Image IFD attached with EXIF and GPS
+		if(newImageIFD != null) {
+			if(newExifSubIFD != null)
+				newImageIFD.addChild(TiffTag.EXIF_SUB_IFD, newExifSubIFD);
+			if(newGpsSubIFD != null)
+				newImageIFD.addChild(TiffTag.GPS_SUB_IFD, newGpsSubIFD);
+			exif.setImageIFD(newImageIFD);
+		} else { // Otherwise, set EXIF and GPS IFD separately
+			exif.setExifIFD(newExifSubIFD);
+			exif.setGPSSubIFD(newGpsSubIFD);
+		}
+		exif.setThumbnail(newThumbnail);
+	}
+	
 	/**
 	 * Insert ICC_Profile as one or more APP2 segments
 	 * 
@@ -689,6 +861,19 @@ public class JPEGMeta {
 	    }
 	}
 	
+	/**
+	 * Insert ICC_Profile, transferring the rest of the image from the input
+	 * channel to the output channel directly.
+	 * 
+	 * @param in FileChannel for the original image
+	 * @param out WritableByteChannel for the image with ICC_Profile inserted
+	 * @param data ICC_Profile data array to be inserted
+	 * @throws IOException
+	 */
+	public static void insertICCProfile(FileChannel in, WritableByteChannel out, byte[] data) throws IOException {
+		edit(in).setICCProfile(data).writeTo(out);
+	}
+	
 	public static void insertICCProfile(InputStream is, OutputStream os, ICC_Profile icc_profile) throws IOException {
 		insertICCProfile(is, os, icc_profile.getData());
 	}
@@ -697,6 +882,21 @@ public class JPEGMeta {
 		insertICCProfile(is, os, icc_profile.getData());
 	}
 	
+	/**
+	 * Inserts a list of IPTCDataSet into a JPEG APP13 Photoshop IRB segment,
+	 * transferring the rest of the image from the input channel to the output
+	 * channel directly.
+	 * 
+	 * @param in FileChannel for the original image
+	 * @param out WritableByteChannel for the image with IPTC APP13 inserted
+	 * @param iptcs a list of IPTCDataSet to be inserted
+	 * @param update if true, keep the original data, otherwise, replace the complete APP13 data 
+	 * @throws IOException
+	 */
+	public static void insertIPTC(FileChannel in, WritableByteChannel out, List<IPTCDataSet> iptcs, boolean update) throws IOException {
+		edit(in).setIPTC(iptcs, update).writeTo(out);
+	}
+	
 	/**
 	 * Inserts a list of IPTCDataSet into a JPEG APP13 Photoshop IRB segment
 	 * 
@@ -806,6 +1006,10 @@ public class JPEGMeta {
 	    }
 	}
 	
+	public static void insertIRB(FileChannel in, WritableByteChannel out, List<_8BIM> bims, boolean update) throws IOException {
+		edit(in).setIRB(bims, update).writeTo(out);
+	}
+	
 	public static void insertIRB(InputStream is, OutputStream os, List<_8BIM> bims, boolean update) throws IOException {
 		// Copy the original image and insert Photoshop IRB data
 		boolean finished = false;
@@ -1015,6 +1219,91 @@ public class JPEGMeta {
 		insertXMP(is, os, xmpBytes, extendedXmpBytes, guid);
 	}
 	
+	/**
+	 * Insert XMP and ExtendedXMP, if any, transferring the rest of the image
+	 * from the input channel to the output channel directly.
+	 * 
+	 * @param in FileChannel for the original image
+	 * @param out WritableByteChannel for the image with XMP inserted
+	 * @param xmp XML string for the XMP - Assuming in UTF-8 format.
+	 * @param extendedXmp XML string for the ExtendedXMP, null if none
+	 * @throws IOException
+	 */
+	public static void insertXMP(FileChannel in, WritableByteChannel out, String xmp, String extendedXmp) throws IOException {
+		edit(in).setXMP(xmp, extendedXmp).writeTo(out);
+	}
+	
+	/**
+	 * Inserts XMP into a JPEG file. If the file already has a single XMP APP1
+	 * segment without ExtendedXMP and the new XMP fits into it, the segment
+	 * is overwritten in place and padded with white spaces inside the XMP
+	 * packet. Otherwise the whole file is rewritten.
+	 * 
+	 * @param file the JPEG file to be updated
+	 * @param xmp XML string for the XMP - Assuming in UTF-8 format.
+	 * @param extendedXmp XML string for the ExtendedXMP, null if none
+	 * @return true if the XMP is written in place, otherwise false
+	 * @throws IOException
+	 */
+	public static boolean insertXMP(File file, String xmp, String extendedXmp) throws IOException {
+		if(extendedXmp == null) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				FileChannel channel = raf.getChannel();
+				JpegSegmentIndex index = JpegSegmentIndex.build(channel);
+				List<SegmentInfo> segments = index.getSegments(AppID.XMP);
+				if(segments.size() == 1 && index.getSegments(AppID.EXTENDED_XMP).size() == 0) {
+					// Add packet wrapper to the XMP document
+					Document xmpDoc = XMLUtils.createXML(xmp);
+					XMLUtils.insertLeadingPI(xmpDoc, "xpacket", "begin='' id='W5M0MpCehiHzreSzNTczkc9d'");
+					XMLUtils.insertTrailingPI(xmpDoc, "xpacket", "end='w'");
+					byte[] xmpBytes = XMLUtils.serializeToByteArray(xmpDoc);
+					ByteArrayOutputStream bout = new ByteArrayOutputStream();
+					writeXMP(bout, xmpBytes, null, null);
+					// Padding goes before the trailing xpacket PI
+					int padOffset = indexOf(xmpBytes, "<?xpacket end".getBytes());
+					if(padOffset < 0) padOffset = xmpBytes.length;
+					if(writeSegment(channel, segments.get(0), bout.toByteArray(), 4 + XMP_ID.length + padOffset))
+						return true;
+				}
+			} finally {
+				raf.close();
+			}
+		}
+		// Doesn't fit, rewrite the whole file
+		File tmp = File.createTempFile("pixy", null, file.getAbsoluteFile().getParentFile());
+		FileInputStream fin = new FileInputStream(file);
+		FileOutputStream fout = new FileOutputStream(tmp);
+		try {
+			insertXMP(fin.getChannel(), fout.getChannel(), xmp, extendedXmp);
+		} catch(IOException e) {
+			fout.close();
+			tmp.delete();
+			throw e;
+		} finally {
+			fin.close();
+			fout.close();
+		}
+		replaceFile(tmp, file);
+		
+		return false;
+	}
+	
+	// Concatenates the segment data, skipping the first skip bytes of each segment
+	private static byte[] join(List<byte[]> segments, int skip) {
+		int length = 0;
+		for(byte[] segment : segments)
+			length += segment.length - skip;
+		byte[] joined = new byte[length];
+		int offset = 0;
+		for(byte[] segment : segments) {
+			System.arraycopy(segment, skip, joined, offset, segment.length - skip);
+			offset += segment.length - skip;
+		}
+		
+		return joined;
+	}
+	
 	public static void printHTables(List<HTable> tables) {
 		final String[] HT_class_table = {"DC Component", "AC Component"};
 		System.out.println("Huffman table information =>:");
@@ -1214,8 +1503,8 @@ public class JPEGMeta {
 		byte[] temp = new byte[length - 2];
 		IOUtils.readFully(is, temp, 0, length - 2);
 		
-		if (Arrays.equals(ArrayUtils.subArray(temp, 0, PHOTOSHOP_IRB_ID.length), PHOTOSHOP_IRB_ID)) {
-			return new IRB(ArrayUtils.subArray(temp, PHOTOSHOP_IRB_ID.length, temp.length - PHOTOSHOP_IRB_ID.length));	
+		if (regionMatches(temp, 0, PHOTOSHOP_IRB_ID, PHOTOSHOP_IRB_ID.length)) {
+			return new IRB(temp, PHOTOSHOP_IRB_ID.length, temp.length - PHOTOSHOP_IRB_ID.length);	
 		}
 		
 		return null;
@@ -1280,11 +1569,66 @@ public class JPEGMeta {
 		m_qTables.addAll(qTables);		
 	}
 	
+	/**
+	 * Reads metadata from the JPEG image, stopping at the first SOS segment.
+	 * <p>
+	 * All the APPn and COM segments normally come before the first SOS, so
+	 * there is no need to walk through the entropy-coded image data.
+	 * 
+	 * @param is InputStream for the JPEG image
+	 * @return a map of Metadata read from the image
+	 * @throws IOException
+	 */
 	public static Map<MetadataType, Metadata> readMetadata(InputStream is) throws IOException {
+		return readMetadata(is, false);
+	}
+	
+	/**
+	 * Reads metadata from the JPEG image.
+	 * 
+	 * @param is InputStream for the JPEG image
+	 * @param fullScan if true, scan through all the SOS segments to the EOI
+	 *        marker to pick up segments trailing the first scan, which may
+	 *        happen with progressive or hierarchical JPEG; otherwise stop
+	 *        at the first SOS segment
+	 * @return a map of Metadata read from the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, boolean fullScan) throws IOException {
+		return readMetadata(is, EnumSet.allOf(MetadataType.class), fullScan);
+	}
+	
+	/**
+	 * Reads only the requested types of metadata from the JPEG image, stopping
+	 * at the first SOS segment. APPn segments not needed are skipped without
+	 * reading their data.
+	 * 
+	 * @param is InputStream for the JPEG image
+	 * @param metadataTypes types of metadata to read. Thumbnails are only
+	 *        looked for if IMAGE is requested
+	 * @return a map of the requested Metadata found in the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, EnumSet<MetadataType> metadataTypes) throws IOException {
+		return readMetadata(is, metadataTypes, false);
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the JPEG image.
+	 * 
+	 * @param is InputStream for the JPEG image
+	 * @param metadataTypes types of metadata to read
+	 * @param fullScan if true, scan through all the SOS segments to the EOI marker
+	 * @return a map of the requested Metadata found in the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, EnumSet<MetadataType> metadataTypes, boolean fullScan) throws IOException {
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
-		Map<String, Thumbnail> thumbnails = new HashMap<String, Thumbnail>();
+		// APPn segments we need to read for the requested metadata
+		Set<AppID> appIDs = getAppIDs(metadataTypes);
+		byte[] appID = new byte[XMP_EXT_ID.length];
 		// Need to wrap the input stream with a BufferedInputStream to
-		// speed up reading SOS
+		// speed up reading SOS (SOSScanner relies on mark/reset)
 		is = new BufferedInputStream(is);
 		// Definitions
 		List<QTable> m_qTables = new ArrayList<QTable>(4);
@@ -1294,14 +1638,10 @@ public class JPEGMeta {
 		// Usually there is only one SOF segment, but for hierarchical
 		// JPEG, there could be more than one SOF
 		List<SOFReader> readers = new ArrayList<SOFReader>();
-		// Used to read multiple segment ICCProfile
-		ByteArrayOutputStream iccProfileStream = null;
-		ByteArrayOutputStream eightBIMStream = null;
-		// Used to read multiple segment XMP
-		byte[] extendedXMP = null;
-		String xmpGUID = ""; // 32 byte ASCII hex string
 		
 		List<Segment> appnSegments = new ArrayList<Segment>();
+		// Shared by all the SOS segments when doing full scan
+		SOSScanner scanner = null;
 	
 		boolean finished = false;
 		int length = 0;	
@@ -1337,12 +1677,27 @@ public class JPEGMeta {
 					case APP13:
 					case APP14:
 					case APP15:
-						byte[] appBytes = readSegmentData(is);
-						appnSegments.add(new Segment(emarker, appBytes.length + 2, appBytes));
+						length = IOUtils.readUnsignedShortMM(is);
+						// Read just enough bytes to tell the identifier
+						int idLength = Math.min(length - 2, appID.length);
+						IOUtils.readFully(is, appID, 0, idLength);
+						if(appIDs.contains(AppID.fromData(emarker, appID, 0, idLength))) {
+							byte[] appBytes = new byte[length - 2];
+							System.arraycopy(appID, 0, appBytes, 0, idLength);
+							IOUtils.readFully(is, appBytes, idLength, appBytes.length - idLength);
+							appnSegments.add(new Segment(emarker, length, appBytes));
+						} else {
+							IOUtils.skipFully(is, length - 2 - idLength);
+						}
 						marker = IOUtils.readShortMM(is);
 						break;
 					case COM:
-						metadataMap.put(MetadataType.COMMENT, new Comment(readSegmentData(is)));
+						if(metadataTypes.contains(MetadataType.COMMENT)) {
+							metadataMap.put(MetadataType.COMMENT, new Comment(readSegmentData(is)));
+						} else {
+							length = IOUtils.readUnsignedShortMM(is);
+							IOUtils.skipFully(is, length - 2);
+						}
 				    	marker = IOUtils.readShortMM(is);
 				    	break;				   				
 					case DHT:
@@ -1369,8 +1724,14 @@ public class JPEGMeta {
 						readers.add(readSOF(is, emarker));
 						marker = IOUtils.readShortMM(is);
 						break;
-					case SOS:	
-						marker = readSOS(is, readers.get(readers.size() - 1));
+					case SOS:
+						if(!fullScan) { // Header only, we are done.
+							finished = true;
+							break;
+						}
+						if(scanner == null)
+							scanner = new SOSScanner();
+						marker = readSOS(is, readers.get(readers.size() - 1), scanner);
 						break;
 					case JPG: // JPG and JPGn shouldn't appear in the image.
 					case JPG0:
@@ -1393,27 +1754,64 @@ public class JPEGMeta {
 		
 		is.close();
 		
+		return readMetadata(metadataMap, appnSegments, metadataTypes);
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the JPEG image, reading only
+	 * the APPn and COM segments needed found in the segment index. Like
+	 * readMetadata(is, metadataTypes), segments after the first SOS are not
+	 * looked at.
+	 * 
+	 * @param channel FileChannel for the JPEG image
+	 * @param index JpegSegmentIndex of the image
+	 * @param metadataTypes types of metadata to read
+	 * @return a map of the requested Metadata found in the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(FileChannel channel, JpegSegmentIndex index, EnumSet<MetadataType> metadataTypes) throws IOException {
+		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
+		// APPn segments we need to read for the requested metadata
+		Set<AppID> appIDs = getAppIDs(metadataTypes);
+		List<Segment> appnSegments = new ArrayList<Segment>();
+		
+		for(SegmentInfo segment : index.getSegments()) {
+			if(appIDs.contains(segment.getAppID()))
+				appnSegments.add(new Segment(segment.getMarker(), segment.getLength(), JpegSegmentIndex.readData(channel, segment)));
+			else if(segment.getMarker() == Marker.COM && metadataTypes.contains(MetadataType.COMMENT))
+				metadataMap.put(MetadataType.COMMENT, new Comment(JpegSegmentIndex.readData(channel, segment)));
+		}
+		
+		return readMetadata(metadataMap, appnSegments, metadataTypes);
+	}
+	
+	// Creates the metadata from the APPn segments read, adding them to the metadata map
+	private static Map<MetadataType, Metadata> readMetadata(Map<MetadataType, Metadata> metadataMap, List<Segment> appnSegments, EnumSet<MetadataType> metadataTypes) throws IOException {
+		// Used to read multiple segment XMP
+		byte[] extendedXMP = null;
+		String xmpGUID = ""; // 32 byte ASCII hex string
+		List<byte[]> iccProfileSegments = new ArrayList<byte[]>();
+		List<byte[]> eightBIMSegments = new ArrayList<byte[]>();
+		
 		for(Segment segment : appnSegments) {
 			byte[] data = segment.getData();
-			length = segment.getLength();
-			if(segment.getMarker() == Marker.APP1) {
-				// Check for EXIF
-				if(Arrays.equals(ArrayUtils.subArray(data, 0, EXIF_ID.length), EXIF_ID)) {
-					// We found EXIF
-					JpegExif exif = new JpegExif(ArrayUtils.subArray(data, EXIF_ID.length, length - EXIF_ID.length - 2));
-					metadataMap.put(MetadataType.EXIF, exif);
-				} else if(Arrays.equals(ArrayUtils.subArray(data, 0, XMP_ID.length), XMP_ID)) {
+			// Identifiers are checked in place and the metadata are backed by the segment data
+			switch(AppID.fromData(segment.getMarker(), data, 0, data.length)) {
+				case EXIF: // We found EXIF
+					metadataMap.put(MetadataType.EXIF, new JpegExif(data, EXIF_ID.length, data.length - EXIF_ID.length));
+					break;
+				case XMP:
 					// We found XMP, add it to metadata list (We may later revise it if we have ExtendedXMP)
-					XMP xmp = new XMP(ArrayUtils.subArray(data, XMP_ID.length, length - XMP_ID.length - 2));
+					XMP xmp = new XMP(data, XMP_ID.length, data.length - XMP_ID.length);
 					metadataMap.put(MetadataType.XMP, xmp);
 					// Retrieve and remove XMP GUID if available
 					xmpGUID = XMLUtils.findAttribute(xmp.getXmpDocument(), "rdf:Description", "xmpNote:HasExtendedXMP");
-				} else if(Arrays.equals(ArrayUtils.subArray(data, 0, XMP_EXT_ID.length), XMP_EXT_ID)) {
+					break;
+				case EXTENDED_XMP:
 					// We found ExtendedXMP, add the data to ExtendedXMP memory buffer				
 					int i = XMP_EXT_ID.length;
 					// 128-bit MD5 digest of the full ExtendedXMP serialization
-					byte[] guid = ArrayUtils.subArray(data, i, 32);
-					if(Arrays.equals(guid, xmpGUID.getBytes())) { // We have matched the GUID, copy it
+					if(regionMatches(data, i, xmpGUID.getBytes(), 32)) { // We have matched the GUID, copy it
 						i += 32;
 						long extendedXMPLength = IOUtils.readUnsignedIntMM(data, i);
 						i += 4;
@@ -1422,36 +1820,42 @@ public class JPEGMeta {
 						// Offset for the current segment
 						long offset = IOUtils.readUnsignedIntMM(data, i);
 						i += 4;
-						byte[] xmpBytes = ArrayUtils.subArray(data, i, length - XMP_EXT_ID.length - 42);
-						System.arraycopy(xmpBytes, 0, extendedXMP, (int)offset, xmpBytes.length);
+						System.arraycopy(data, i, extendedXMP, (int)offset, data.length - i);
 					}
-				}
-			} else if(segment.getMarker() == Marker.APP2) {
-				// We're only interested in ICC_Profile
-				if (Arrays.equals(ArrayUtils.subArray(data, 0, ICC_PROFILE_ID.length), ICC_PROFILE_ID)) {
-					if(iccProfileStream == null)
-						iccProfileStream = new ByteArrayOutputStream();
-					iccProfileStream.write(ArrayUtils.subArray(data, ICC_PROFILE_ID.length + 2, length - ICC_PROFILE_ID.length - 4));
-				}
-			} else if(segment.getMarker() == Marker.APP13) {
-				if (Arrays.equals(ArrayUtils.subArray(data, 0, PHOTOSHOP_IRB_ID.length), PHOTOSHOP_IRB_ID)) {
-					if(eightBIMStream == null)
-						eightBIMStream = new ByteArrayOutputStream();
-					eightBIMStream.write(ArrayUtils.subArray(data, PHOTOSHOP_IRB_ID.length, length - PHOTOSHOP_IRB_ID.length - 2));
-				}
+					break;
+				case ICC_PROFILE: // We're only interested in ICC_Profile
+					iccProfileSegments.add(data);
+					break;
+				case PHOTOSHOP_IRB:
+					eightBIMSegments.add(data);
+					break;
+				default:
 			}
 		}
 		
 		// Now it's time to join multiple segments ICC_PROFILE and/or XMP		
-		if(iccProfileStream != null) { // We have ICCProfile data
-			ICCProfile icc_profile = new ICCProfile(iccProfileStream.toByteArray());
-			icc_profile.showMetadata();
+		if(iccProfileSegments.size() > 0) { // We have ICCProfile data
+			// Skip the chunk sequence number and the total number of chunks
+			ICCProfile icc_profile = new ICCProfile(join(iccProfileSegments, ICC_PROFILE_ID.length + 2));
+			if(Diagnostics.isEnabled())
+				icc_profile.getReader().showMetadata(Diagnostics.getPrintStream());
 			metadataMap.put(MetadataType.ICC_PROFILE, icc_profile);
 		}
 		
-		if(eightBIMStream != null) {
-			IRB irb = new IRB(eightBIMStream.toByteArray());	
+		if(eightBIMSegments.size() > 0) {
+			IRB irb = null;
+			if(eightBIMSegments.size() == 1) { // No need to join
+				byte[] data = eightBIMSegments.get(0);
+				irb = new IRB(data, PHOTOSHOP_IRB_ID.length, data.length - PHOTOSHOP_IRB_ID.length);
+			} else
+				irb = new IRB(join(eightBIMSegments, PHOTOSHOP_IRB_ID.length));
+	
 			metadataMap.put(MetadataType.PHOTOSHOP, irb);
+			if(metadataTypes.contains(MetadataType.IPTC)) {
+				_8BIM iptcBIM = irb.get8BIM(ImageResourceID.IPTC_NAA.getValue());
+				if(iptcBIM != null) // If we have IPTC data inside Photoshop, keep it
+					metadataMap.put(MetadataType.IPTC, new IPTC(iptcBIM.getData()));
+			}
 		}
 		
 		if(extendedXMP != null) {
@@ -1460,7 +1864,48 @@ public class JPEGMeta {
 				xmp.setExtendedXMPData(extendedXMP);
 		}
 		
-		// Extract thumbnails to ImageMetadata
+		if(metadataTypes.contains(MetadataType.IMAGE))
+			metadataMap.put(MetadataType.IMAGE, new ImageMetadata(null, getThumbnails(metadataMap)));
+		
+		// EXIF and IRB may be read only to look for thumbnails
+		metadataMap.keySet().retainAll(metadataTypes);
+		
+		return metadataMap;
+	}
+	
+	// Maps the metadata types to the APPn segments holding them
+	private static Set<AppID> getAppIDs(Set<MetadataType> metadataTypes) {
+		Set<AppID> appIDs = EnumSet.noneOf(AppID.class);
+		for(MetadataType metadataType : metadataTypes) {
+			switch(metadataType) {
+				case EXIF:
+					appIDs.add(AppID.EXIF);
+					break;
+				case XMP:
+					appIDs.add(AppID.XMP);
+					appIDs.add(AppID.EXTENDED_XMP);
+					break;
+				case ICC_PROFILE:
+					appIDs.add(AppID.ICC_PROFILE);
+					break;
+				case IPTC:
+				case PHOTOSHOP:
+					appIDs.add(AppID.PHOTOSHOP_IRB);
+					break;
+				case IMAGE: // Thumbnails come from EXIF and IRB
+					appIDs.add(AppID.EXIF);
+					appIDs.add(AppID.PHOTOSHOP_IRB);
+					break;
+				default:
+			}
+		}
+		
+		return appIDs;
+	}
+	
+	// Extracts thumbnails from EXIF and IRB
+	private static Map<String, Thumbnail> getThumbnails(Map<MetadataType, Metadata> metadataMap) throws IOException {
+		Map<String, Thumbnail> thumbnails = new HashMap<String, Thumbnail>();
 		Metadata meta = metadataMap.get(MetadataType.EXIF);
 		if(meta != null) {
 			Exif exif = (Exif)meta;
@@ -1483,9 +1928,7 @@ public class JPEGMeta {
 			}
 		}
 		
-		metadataMap.put(MetadataType.IMAGE, new ImageMetadata(null, thumbnails));
-		
-		return metadataMap;
+		return thumbnails;
 	}
 	
 	private static byte[] readSegmentData(InputStream is) throws IOException {
@@ -1507,9 +1950,9 @@ public class JPEGMeta {
 		return reader;
 	}	
 	
-	// This method is very slow if not wrapped in some kind of cache stream but it works for multiple
-	// SOSs in case of progressive JPEG
-	private static short readSOS(InputStream is, SOFReader sofReader) throws IOException {
+	// The input stream should be wrapped in some kind of stream supporting mark/reset
+	// for SOSScanner to read by blocks. This works for multiple SOSs in case of progressive JPEG
+	private static short readSOS(InputStream is, SOFReader sofReader, SOSScanner scanner) throws IOException {
 		int len = IOUtils.readUnsignedShortMM(is);
 		byte buf[] = new byte[len - 2];
 		IOUtils.readFully(is, buf);
@@ -1518,45 +1961,30 @@ public class JPEGMeta {
 		new SOSReader(segment, sofReader);
 		
 		// Actual image data follow.
-		int nextByte = 0;
-		short marker = 0;	
-		
-		while((nextByte = IOUtils.read(is)) != -1)
-		{
-			if(nextByte == 0xff)
-			{
-				nextByte = IOUtils.read(is);
-				
-				if (nextByte == -1) {
-					throw new IOException("Premature end of SOS segment!");					
-				}								
-				
-				if (nextByte != 0x00)
-				{
-					marker = (short)((0xff<<8)|nextByte);
-					
-					switch (Marker.fromShort(marker)) {										
-						case RST0:  
-						case RST1:
-						case RST2:
-						case RST3:
-						case RST4:
-						case RST5:
-						case RST6:
-						case RST7:
-							continue;
-						default:											
-					}
-					break;
-				}
-			}
-		}
-		
-		if (nextByte == -1) {
-			throw new IOException("Premature end of SOS segment!");
+		return scanner.skip(is);
+	}
+	
+	// Compares len bytes of data from offset with the start of other without copying
+	private static boolean regionMatches(byte[] data, int offset, byte[] other, int len) {
+		if(other.length < len || data.length - offset < len) return false;
+		for(int i = 0; i < len; i++) {
+			if(data[offset + i] != other[i]) return false;
 		}
-
-		return marker;
+		return true;
+	}
+	
+	/**
+	 * Removes APPn segments, transferring the rest of the image from the input
+	 * channel to the output channel directly. To reuse a JpegSegmentIndex
+	 * already built, use edit(channel, index).removeAPPn(APPn).writeTo(out).
+	 * 
+	 * @param APPn one of the APP0 to APP15 markers
+	 * @param in FileChannel for the original image
+	 * @param out WritableByteChannel for the output image
+	 * @throws IOException
+	 */
+	public static void removeAPPn(Marker APPn, FileChannel in, WritableByteChannel out) throws IOException {
+		edit(in).removeAPPn(APPn).writeTo(out);
 	}
 	
 	// Remove APPn segment
@@ -1624,6 +2052,14 @@ public class JPEGMeta {
 	    }
 	}
 	
+	/**
+	 * Removes metadata, transferring the rest of the image from the input
+	 * channel to the output channel directly.
+	 */
+	public static void removeMetadata(FileChannel in, WritableByteChannel out, MetadataType ... metadataTypes) throws IOException {
+		edit(in).remove(metadataTypes).writeTo(out);
+	}
+	
 	public static void removeMetadata(InputStream is, OutputStream os, MetadataType ... metadataTypes) throws IOException {
 		removeMetadata(new HashSet<MetadataType>(Arrays.asList(metadataTypes)), is, os);
 	}
@@ -1776,6 +2212,14 @@ public class JPEGMeta {
 		}
 	}
 	
+	// Replace the original file with the rewritten one
+	private static void replaceFile(File tmp, File file) throws IOException {
+		if(!tmp.renameTo(file)) { // Some platforms won't rename over an existing file
+			if(!file.delete() || !tmp.renameTo(file))
+				throw new IOException("Failed to replace " + file + " with " + tmp);
+		}
+	}
+	
 	public static void showICCProfile(InputStream is) throws IOException {
 		byte[] icc_profile = extractICCProfile(is);
 		ICCProfile.showProfile(icc_profile);
@@ -1783,45 +2227,7 @@ public class JPEGMeta {
 	
 	@SuppressWarnings("unused")
 	private static short skipSOS(InputStream is) throws IOException {
-		int nextByte = 0;
-		short marker = 0;	
-		
-		while((nextByte = IOUtils.read(is)) != -1)
-		{
-			if(nextByte == 0xff)
-			{
-				nextByte = IOUtils.read(is);
-						
-				if (nextByte == -1) {
-					throw new IOException("Premature end of SOS segment!");					
-				}								
-				
-				if (nextByte != 0x00) // This is a marker
-				{
-					marker = (short)((0xff<<8)|nextByte);
-					
-					switch (Marker.fromShort(marker)) {										
-						case RST0:  
-						case RST1:
-						case RST2:
-						case RST3:
-						case RST4:
-						case RST5:
-						case RST6:
-						case RST7:
-							continue;
-						default:											
-					}
-					break;
-				}
-			}
-		}
-		
-		if (nextByte == -1) {
-			throw new IOException("Premature end of SOS segment!");
-		}
-
-		return marker;
+		return new SOSScanner().skip(is);
 	}	
 	
 	/**
@@ -1859,7 +2265,7 @@ public class JPEGMeta {
 		}
 	}
 	
-	private static void writeXMP(OutputStream os, byte[] xmp, byte[] extendedXmp, String guid) throws IOException {
+	static void writeXMP(OutputStream os, byte[] xmp, byte[] extendedXmp, String guid) throws IOException {
 		// Write XMP
 		IOUtils.writeShortMM(os, Marker.APP1.getValue());
 		// Write segment length
@@ -1902,6 +2308,34 @@ public class JPEGMeta {
 		}
 	}
 	
+	/*
+	 * Overwrites the old segment with the new one, including marker and length, if it fits.
+	 * The new segment is padded up to the old length by inserting white spaces at padOffset
+	 * if it is greater than 0 or zeros at the end of the segment otherwise.
+	 */
+	private static boolean writeSegment(FileChannel channel, SegmentInfo oldSegment, byte[] newSegment, int padOffset) throws IOException {
+		int oldLength = oldSegment.getTotalLength();
+		int padding = oldLength - newSegment.length;
+		if(padding < 0) return false;
+		byte[] buf = new byte[oldLength];
+		if(padOffset > 0) {
+			System.arraycopy(newSegment, 0, buf, 0, padOffset);
+			for(int i = 0; i < padding; i++) // New line every 100 bytes as suggested by XMP spec
+				buf[padOffset + i] = (byte)((i % 100 == 99) ? '\n' : ' ');
+			System.arraycopy(newSegment, padOffset, buf, padOffset + padding, newSegment.length - padOffset);
+		} else {
+			System.arraycopy(newSegment, 0, buf, 0, newSegment.length);
+		}
+		// Keep the original segment length
+		buf[2] = (byte)(oldSegment.getLength() >> 8);
+		buf[3] = (byte)oldSegment.getLength();
+		ByteBuffer bb = ByteBuffer.wrap(buf);
+		while(bb.hasRemaining())
+			channel.write(bb, oldSegment.getOffset() + bb.position());
+		
+		return true;
+	}
+	
 	public static void writeIRB(OutputStream os, _8BIM ... bims) throws IOException {
 		if(bims != null && bims.length > 0)
 			writeIRB(os, Arrays.asList(bims));
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * JpegSegmentIndex.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.jpeg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cafe.image.jpeg.Marker;
+import cafe.io.IOUtils;
+
+import static pixy.image.jpeg.JPEGMeta.*;
+
+/**
+ * Table of the segments of a JPEG file up to the first SOS segment.
+ * <p>
+ * The index is built with one walk through the markers, reading only
+ * the marker, the length and the identifier of each segment by position.
+ * It can then be shared by different operations on the same file which
+ * jump straight to the segments they need.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class JpegSegmentIndex {
+	// Longest identifier we need to read
+	private static final int MAX_ID_LEN = XMP_EXT_ID.length;
+
+	/**
+	 * Known APPn segment identifiers
+	 */
+	public enum AppID {
+		JFIF,
+		JFXX,
+		EXIF,
+		XMP,
+		EXTENDED_XMP,
+		ICC_PROFILE,
+		DUCKY,
+		PICTURE_INFO,
+		PHOTOSHOP_IRB,
+		ADOBE,
+		UNKNOWN;
+
+		/**
+		 * Finds the identifier of the segment from the first bytes of its data
+		 *
+		 * @param marker segment marker
+		 * @param data segment data following the length field
+		 * @param off start of the segment data
+		 * @param len number of bytes available from off
+		 * @return the identifier or UNKNOWN
+		 */
+		public static AppID fromData(Marker marker, byte[] data, int off, int len) {
+			switch(marker) {
+				case APP0:
+					if(startsWith(data, off, len, JFIF_ID)) return JFIF;
+					if(startsWith(data, off, len, JFXX_ID)) return JFXX;
+					break;
+				case APP1:
+					if(startsWith(data, off, len, EXIF_ID)) return EXIF;
+					if(startsWith(data, off, len, XMP_ID)) return XMP;
+					if(startsWith(data, off, len, XMP_EXT_ID)) return EXTENDED_XMP;
+					break;
+				case APP2:
+					if(startsWith(data, off, len, ICC_PROFILE_ID)) return ICC_PROFILE;
+					break;
+				case APP12:
+					if(startsWith(data, off, len, DUCKY_ID)) return DUCKY;
+					if(startsWith(data, off, len, PICTURE_INFO_ID)) return PICTURE_INFO;
+					break;
+				case APP13:
+					if(startsWith(data, off, len, PHOTOSHOP_IRB_ID)) return PHOTOSHOP_IRB;
+					break;
+				case APP14:
+					if(startsWith(data, off, len, ADOBE_ID)) return ADOBE;
+					break;
+				default:
+			}
+			return UNKNOWN;
+		}
+
+		private static boolean startsWith(byte[] data, int off, int len, byte[] id) {
+			if(len < id.length) return false;
+			for(int i = 0; i < id.length; i++) {
+				if(data[off + i] != id[i]) return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Position of a single segment in the file
+	 */
+	public static class SegmentInfo {
+		private Marker marker;
+		private long offset;
+		private int length;
+		private AppID appID;
+
+		SegmentInfo(Marker marker, long offset, int length, AppID appID) {
+			this.marker = marker;
+			this.offset = offset;
+			this.length = length;
+			this.appID = appID;
+		}
+
+		public AppID getAppID() {
+			return appID;
+		}
+
+		/** Offset of the segment data, right after the length field */
+		public long getDataOffset() {
+			return offset + 4;
+		}
+
+		/** Length of the segment data, excluding the length field */
+		public int getDataLength() {
+			return length - 2;
+		}
+
+		/** Segment length field, 0 for stand alone markers */
+		public int getLength() {
+			return length;
+		}
+
+		public Marker getMarker() {
+			return marker;
+		}
+
+		/** Offset of the marker */
+		public long getOffset() {
+			return offset;
+		}
+
+		/** Total number of bytes including the marker */
+		public int getTotalLength() {
+			return (length == 0) ? 2 : length + 2;
+		}
+	}
+
+	private List<SegmentInfo> segments = new ArrayList<SegmentInfo>();
+	private long sosOffset = -1;
+	private long size;
+
+	private JpegSegmentIndex() {}
+
+	/**
+	 * Builds the index by walking through the markers of the JPEG file
+	 * up to the first SOS segment.
+	 *
+	 * @param channel FileChannel for the JPEG image
+	 * @return the segment index
+	 * @throws IOException
+	 */
+	public static JpegSegmentIndex build(FileChannel channel) throws IOException {
+		JpegSegmentIndex index = new JpegSegmentIndex();
+		long size = channel.size();
+		index.size = size;
+		byte[] header = new byte[4 + MAX_ID_LEN];
+		ByteBuffer bb = ByteBuffer.wrap(header);
+		// The very first marker should be the start_of_image marker!
+		if(read(channel, bb, 0, 2) < 2 || Marker.fromShort(IOUtils.readShortMM(header, 0)) != Marker.SOI)
+			throw new IOException("Invalid JPEG image, expected SOI marker not found!");
+		long offset = 2;
+
+		while(offset + 2 <= size) {
+			int bytesRead = read(channel, bb, offset, header.length);
+			short marker = IOUtils.readShortMM(header, 0);
+			Marker emarker = Marker.fromShort(marker);
+
+			switch (emarker) {
+				case SOS:
+					index.sosOffset = offset;
+					return index;
+				case EOI:
+				case JPG: // JPG and JPGn shouldn't appear in the image.
+				case JPG0:
+				case JPG13:
+				case TEM: // The only stand alone marker besides SOI, EOI, and RSTn.
+					index.segments.add(new SegmentInfo(emarker, offset, 0, AppID.UNKNOWN));
+					if(emarker == Marker.EOI)
+						return index;
+					offset += 2;
+					break;
+				case PADDING: // Skip the fill byte
+					offset++;
+					break;
+				default:
+					if(bytesRead < 4)
+						throw new IOException("Premature end of file!");
+					int length = IOUtils.readUnsignedShortMM(header, 2);
+					AppID appID = AppID.fromData(emarker, header, 4, Math.min(bytesRead, length + 2) - 4);
+					index.segments.add(new SegmentInfo(emarker, offset, length, appID));
+					offset += length + 2;
+			}
+		}
+
+		return index;
+	}
+
+	// Reads up to len bytes at the position, returns number of bytes read
+	private static int read(FileChannel channel, ByteBuffer bb, long position, int len) throws IOException {
+		bb.clear();
+		bb.limit(len);
+		while(bb.hasRemaining()) {
+			if(channel.read(bb, position + bb.position()) < 0)
+				break;
+		}
+		return bb.position();
+	}
+
+	/**
+	 * Reads the data of the segment following the length field
+	 *
+	 * @param channel FileChannel for the JPEG image
+	 * @param segment segment to read
+	 * @return segment data
+	 * @throws IOException
+	 */
+	public static byte[] readData(FileChannel channel, SegmentInfo segment) throws IOException {
+		byte[] data = new byte[segment.getDataLength()];
+		ByteBuffer bb = ByteBuffer.wrap(data);
+		if(read(channel, bb, segment.getDataOffset(), data.length) < data.length)
+			throw new IOException("Premature end of file!");
+		return data;
+	}
+
+	/**
+	 * @return the segments in the order they appear in the file
+	 */
+	public List<SegmentInfo> getSegments() {
+		return Collections.unmodifiableList(segments);
+	}
+
+	/**
+	 * @param appID identifier of the segments
+	 * @return the segments with the identifier in the order they appear in the file
+	 */
+	public List<SegmentInfo> getSegments(AppID appID) {
+		List<SegmentInfo> list = new ArrayList<SegmentInfo>();
+		for(SegmentInfo segment : segments) {
+			if(segment.appID == appID)
+				list.add(segment);
+		}
+		return list;
+	}
+
+	/**
+	 * @return the size of the file when the index is built
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return offset of the first SOS marker or -1 if there is none
+	 */
+	public long getSOSOffset() {
+		return sosOffset;
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * SOSScanner.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.jpeg;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import cafe.io.IOUtils;
+import cafe.io.RandomAccessInputStream;
+
+/**
+ * Block oriented scanner for JPEG entropy-coded data following a SOS segment.
+ * <p>
+ * Reads the image data in chunks into a buffer which is reused between
+ * calls, looks for the next marker other than stuffed bytes and RSTn and
+ * copies whole runs of data between markers in one write.
+ * <p>
+ * In order not to consume bytes past the marker, the input must be either
+ * a RandomAccessInputStream or support mark/reset, e.g. BufferedInputStream.
+ * Other input streams are read one byte at a time.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class SOSScanner {
+	// Default buffer size
+	public static final int BUFFER_SIZE = 8192;
+
+	private byte[] buf;
+	// Number of bytes which can be consumed if no marker is found
+	private int safe;
+
+	public SOSScanner() {
+		this(BUFFER_SIZE);
+	}
+
+	public SOSScanner(int bufferSize) {
+		if(bufferSize < 2)
+			throw new IllegalArgumentException("Buffer size should be at least 2");
+		this.buf = new byte[bufferSize];
+	}
+
+	/**
+	 * Copies the image data up to the next marker which is not a RSTn.
+	 * RSTn markers are copied along with the image data while the
+	 * returned marker itself is consumed but not copied.
+	 *
+	 * @param is InputStream positioned at the start of the image data
+	 * @param os OutputStream to copy the image data to, null to skip the data
+	 * @return the marker following the image data
+	 * @throws IOException
+	 */
+	public short copy(InputStream is, OutputStream os) throws IOException {
+		boolean random = (is instanceof RandomAccessInputStream);
+
+		if(!random && !is.markSupported())
+			return copyByByte(is, os);
+
+		long start = 0;
+
+		for(;;) {
+			if(random)
+				start = ((RandomAccessInputStream)is).getStreamPointer();
+			else
+				is.mark(buf.length);
+
+			int len = is.read(buf, 0, buf.length);
+
+			if(len <= 0)
+				throw new IOException("Premature end of SOS segment!");
+
+			int pos = findMarker(len);
+
+			if(pos >= 0) {
+				if(os != null) os.write(buf, 0, pos);
+				rewind(is, start, pos + 2);
+				return (short)((0xff<<8)|(buf[pos + 1]&0xff));
+			}
+
+			if(safe == 0) { // A lone 0xff, check the byte after it
+				rewind(is, start, 1);
+				int nextByte = is.read();
+				if(nextByte == -1)
+					throw new IOException("Premature end of SOS segment!");
+				if(!isDataByte(nextByte))
+					return (short)((0xff<<8)|nextByte);
+				if(os != null) {
+					os.write(0xff);
+					os.write(nextByte);
+				}
+				continue;
+			}
+
+			if(os != null) os.write(buf, 0, safe);
+			rewind(is, start, safe);
+		}
+	}
+
+	/**
+	 * Skips the image data up to the next marker which is not a RSTn.
+	 *
+	 * @param is InputStream positioned at the start of the image data
+	 * @return the marker following the image data
+	 * @throws IOException
+	 */
+	public short skip(InputStream is) throws IOException {
+		return copy(is, null);
+	}
+
+	// Used when we can't go back to the marker position
+	private static short copyByByte(InputStream is, OutputStream os) throws IOException {
+		int nextByte = 0;
+
+		while((nextByte = IOUtils.read(is)) != -1) {
+			if(nextByte == 0xff) {
+				nextByte = IOUtils.read(is);
+
+				if (nextByte == -1)
+					throw new IOException("Premature end of SOS segment!");
+
+				if (!isDataByte(nextByte))
+					return (short)((0xff<<8)|nextByte);
+
+				if(os != null) os.write(0xff);
+			}
+
+			if(os != null) os.write(nextByte);
+		}
+
+		throw new IOException("Premature end of SOS segment!");
+	}
+
+	/**
+	 * Looks for the first marker in the first len bytes of the buffer.
+	 *
+	 * @return the offset of the 0xff starting the marker or -1 if no marker is
+	 * found, in which case safe is set to the number of bytes which can be
+	 * consumed without splitting a two byte sequence starting with 0xff.
+	 */
+	private int findMarker(int len) {
+		byte[] buf = this.buf;
+		int limit = len - 1;
+		int i = 0;
+
+		while(i < limit) {
+			if(buf[i] != (byte)0xff) {
+				i++;
+				continue;
+			}
+			if(!isDataByte(buf[i + 1]&0xff))
+				return i;
+			i += 2; // Stuffed byte or RSTn
+		}
+
+		safe = (i == limit && buf[i] != (byte)0xff) ? len : i;
+
+		return -1;
+	}
+
+	// Bytes following 0xff which don't end the image data: stuffed 0x00 and RST0 - RST7
+	private static boolean isDataByte(int nextByte) {
+		return nextByte == 0x00 || (nextByte >= 0xd0 && nextByte <= 0xd7);
+	}
+
+	// Positions the input right after the first n bytes of the last read
+	private static void rewind(InputStream is, long start, int n) throws IOException {
+		if(is instanceof RandomAccessInputStream) {
+			((RandomAccessInputStream)is).seek(start + n);
+		} else {
+			is.reset();
+			IOUtils.skipFully(is, n);
+		}
+	}
+}
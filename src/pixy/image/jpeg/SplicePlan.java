@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * SplicePlan.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.jpeg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of source ranges and new bytes making up the output image.
+ * <p>
+ * Source ranges are copied with FileChannel.transferTo which lets the
+ * operating system move the image data without copying it to user space.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+class SplicePlan {
+	private List<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * Adds a range of the source to the plan. The range is merged with
+	 * the previous one if they are contiguous.
+	 */
+	void add(long offset, long length) {
+		if(length <= 0) return;
+		if(entries.size() > 0) {
+			Entry last = entries.get(entries.size() - 1);
+			if(last.data == null && last.offset + last.length == offset) {
+				last.length += length;
+				return;
+			}
+		}
+		entries.add(new Entry(offset, length, null));
+	}
+
+	/**
+	 * Adds new bytes to the plan
+	 */
+	void add(byte[] data) {
+		if(data.length > 0)
+			entries.add(new Entry(0, data.length, data));
+	}
+
+	void execute(FileChannel src, WritableByteChannel dst) throws IOException {
+		for(Entry entry : entries) {
+			if(entry.data != null) {
+				ByteBuffer bb = ByteBuffer.wrap(entry.data);
+				while(bb.hasRemaining())
+					dst.write(bb);
+			} else {
+				long position = entry.offset;
+				long count = entry.length;
+				while(count > 0) {
+					long transferred = src.transferTo(position, count, dst);
+					if(transferred <= 0)
+						throw new IOException("Premature end of source at " + position);
+					position += transferred;
+					count -= transferred;
+				}
+			}
+		}
+	}
+
+	private static class Entry {
+		long offset;
+		long length;
+		byte[] data;
+
+		Entry(long offset, long length, byte[] data) {
+			this.offset = offset;
+			this.length = length;
+			this.data = data;
+		}
+	}
+}
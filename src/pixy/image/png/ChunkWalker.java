@@ -0,0 +1,366 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * ChunkWalker.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Verify chunk CRCs according to a CrcMode
+ * WY    16Oct2026  Added peek() to look at the start of the data
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.png;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+
+import cafe.image.png.Chunk;
+import cafe.image.png.ChunkType;
+import cafe.image.png.UnknownChunk;
+import cafe.io.IOUtils;
+
+/**
+ * Walks through the chunks of a PNG image one at a time.
+ * <p>
+ * Only the length and type of each chunk are read by next(). The data is
+ * read only if asked for with readChunk(), otherwise it is skipped when
+ * moving on to the next chunk, so large IDAT chunks are never loaded.
+ * <p>
+ * CRCs are verified according to the CrcMode as the chunks are read, copied
+ * or skipped, a mismatch throws an IOException. Verified chunks can't be
+ * skipped, they are read through instead. With an executor, the image data
+ * chunks are checked on the executor while the walk goes on. Their results
+ * are collected by awaitChecks(), which next() calls at the end of the image.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class ChunkWalker {
+	/** PNG signature constant */
+	private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+	// APNG frame data chunk "fdAT"
+	private static final int FDAT = 0x66644154;
+	private static final int BUFFER_SIZE = 8192;
+	// Image data chunks larger than this are checked on the calling thread
+	private static final int MAX_ASYNC_CHUNK = 8*1024*1024;
+	// Image data held by the checks not finished yet
+	private static final long MAX_PENDING_BYTES = 32*1024*1024;
+
+	private InputStream is;
+	private int length;
+	private int typeValue;
+	private ChunkType type;
+	// Bytes of the current chunk, including the CRC, not read yet
+	private long remaining;
+	// Start of the data read by peek(), copied along with the rest of the chunk
+	private byte[] head;
+	private boolean end;
+	private CrcMode crcMode;
+	private Executor executor;
+	private CRC32 crc = new CRC32();
+	// Image data checks running on the executor, oldest first
+	private LinkedList<FutureTask<Void>> pendingChecks = new LinkedList<FutureTask<Void>>();
+	private LinkedList<Integer> pendingSizes = new LinkedList<Integer>();
+	private long pendingBytes;
+
+	/**
+	 * Reads the PNG signature
+	 *
+	 * @param is InputStream positioned at the start of the PNG image
+	 * @throws IOException
+	 */
+	public ChunkWalker(InputStream is) throws IOException {
+		this(is, CrcMode.OFF, null);
+	}
+
+	/**
+	 * Reads the PNG signature
+	 *
+	 * @param is InputStream positioned at the start of the PNG image
+	 * @param crcMode which chunk CRCs to verify
+	 * @param executor Executor to check the image data chunks on, null to
+	 * check them on the calling thread
+	 * @throws IOException
+	 */
+	public ChunkWalker(InputStream is, CrcMode crcMode, Executor executor) throws IOException {
+		if(IOUtils.readLongMM(is) != SIGNATURE)
+			throw new RuntimeException("--- NOT A PNG IMAGE ---");
+		this.is = is;
+		this.crcMode = crcMode;
+		this.executor = executor;
+	}
+
+	/**
+	 * Waits for the image data checks running on the executor
+	 *
+	 * @throws IOException if any of the checks found a CRC mismatch
+	 */
+	public void awaitChecks() throws IOException {
+		while(!pendingChecks.isEmpty())
+			awaitOldestCheck();
+	}
+
+	private void awaitOldestCheck() throws IOException {
+		FutureTask<Void> check = pendingChecks.removeFirst();
+		pendingBytes -= pendingSizes.removeFirst();
+		try {
+			check.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for CRC checks");
+		} catch(ExecutionException e) {
+			pendingChecks.clear();
+			pendingSizes.clear();
+			pendingBytes = 0;
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+				throw (IOException)cause;
+			throw new IOException("CRC check failed", cause);
+		}
+	}
+
+	private static void checkCRC(CRC32 crc, int typeValue, byte[] head, byte[] data, int len, long expected) throws IOException {
+		crc.reset();
+		updateType(crc, typeValue);
+		if(head != null)
+			crc.update(head);
+		crc.update(data, 0, len);
+		if(crc.getValue() != expected)
+			throw crcMismatch(typeValue, expected, crc.getValue());
+	}
+
+	/**
+	 * Copies the current chunk as it is, including its length, type and CRC
+	 *
+	 * @param os OutputStream to copy the chunk to
+	 * @throws IOException
+	 */
+	public void copyChunk(OutputStream os) throws IOException {
+		int headLength = (head == null) ? 0 : head.length;
+		if(remaining + headLength != length + 4L)
+			throw new IllegalStateException("Chunk data already read or skipped");
+		IOUtils.writeIntMM(os, length);
+		IOUtils.writeIntMM(os, typeValue);
+		if(head != null)
+			os.write(head);
+		if(isVerified()) {
+			readRest(os);
+			return;
+		}
+		byte[] buf = new byte[(int)Math.min(BUFFER_SIZE, remaining)];
+		while(remaining > 0) {
+			int len = (int)Math.min(buf.length, remaining);
+			IOUtils.readFully(is, buf, 0, len);
+			os.write(buf, 0, len);
+			remaining -= len;
+		}
+	}
+
+	private static IOException crcMismatch(int typeValue, long expected, long calculated) {
+		return new IOException("CRC mismatch in chunk " + getName(typeValue) + ": 0x" + Long.toHexString(expected)
+				+ " read, 0x" + Long.toHexString(calculated) + " calculated");
+	}
+
+	/**
+	 * @return data length of the current chunk
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	// Four character name of a chunk type
+	private static String getName(int typeValue) {
+		char[] name = {(char)((typeValue >>> 24)&0xff), (char)((typeValue >>> 16)&0xff), (char)((typeValue >>> 8)&0xff), (char)(typeValue&0xff)};
+		return new String(name);
+	}
+
+	/**
+	 * @return type of the current chunk, UNKNOWN for types ChunkType doesn't know of
+	 */
+	public ChunkType getType() {
+		return type;
+	}
+
+	/**
+	 * @return the 4 byte type of the current chunk
+	 */
+	public int getTypeValue() {
+		return typeValue;
+	}
+
+	/**
+	 * @return true if the current chunk holds image data: IDAT or APNG fdAT
+	 */
+	public boolean isImageData() {
+		return type == ChunkType.IDAT || typeValue == FDAT;
+	}
+
+	// Whether the CRC of the current chunk is to be verified
+	private boolean isVerified() {
+		return crcMode == CrcMode.ALL || (crcMode == CrcMode.METADATA && !isImageData());
+	}
+
+	/**
+	 * Moves to the next chunk, skipping what is left of the current one. At
+	 * the end of the image, waits for the CRC checks still running.
+	 *
+	 * @return false after IEND or at the end of the input
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		if(end) {
+			awaitChecks();
+			return false;
+		}
+		if(remaining > 0 && isVerified())
+			readRest(null);
+		head = null;
+		while(remaining > 0) {
+			int n = (int)Math.min(remaining, Integer.MAX_VALUE);
+			IOUtils.skipFully(is, n);
+			remaining -= n;
+		}
+		int b = is.read();
+		if(b < 0) { // No IEND
+			end = true;
+			awaitChecks();
+			return false;
+		}
+		byte[] header = new byte[8];
+		header[0] = (byte)b;
+		IOUtils.readFully(is, header, 1, 7);
+		length = IOUtils.readIntMM(header, 0);
+		typeValue = IOUtils.readIntMM(header, 4);
+		type = ChunkType.fromInt(typeValue);
+		if(length < 0)
+			throw new IOException("Invalid length " + (length&0xffffffffL) + " for chunk " + type.getName());
+		remaining = (length&0xffffffffL) + 4;
+		if(type == ChunkType.IEND)
+			end = true;
+		return true;
+	}
+
+	/**
+	 * Reads the start of the data of the current chunk, such as the keyword
+	 * of a text chunk. The chunk can still be copied whole with copyChunk().
+	 *
+	 * @param buf array to read into, at most buf.length bytes are read
+	 * @return number of bytes read, less than buf.length for a short chunk
+	 * @throws IOException
+	 */
+	public int peek(byte[] buf) throws IOException {
+		if(remaining != length + 4L)
+			throw new IllegalStateException("Chunk data already read or skipped");
+		int len = Math.min(buf.length, length);
+		IOUtils.readFully(is, buf, 0, len);
+		head = new byte[len];
+		System.arraycopy(buf, 0, head, 0, len);
+		remaining -= len;
+		return len;
+	}
+
+	/**
+	 * Reads the data and the CRC of the current chunk
+	 *
+	 * @return the current chunk
+	 * @throws IOException
+	 */
+	public Chunk readChunk() throws IOException {
+		if(remaining != length + 4L)
+			throw new IllegalStateException("Chunk data already read or skipped");
+		byte[] buf = new byte[length];
+		IOUtils.readFully(is, buf);
+		long crc = IOUtils.readUnsignedIntMM(is);
+		remaining = 0;
+		if(isVerified())
+			verify(null, buf, length, crc);
+		if(type == ChunkType.UNKNOWN)
+			return new UnknownChunk(length, typeValue, buf, crc);
+		return new Chunk(type, length, buf, crc);
+	}
+
+	/*
+	 * Reads the rest of the data and the CRC of the current chunk and verifies
+	 * the CRC, copying the bytes read to os if it is not null. Image data goes
+	 * to the executor if there is one, otherwise the CRC is calculated as the
+	 * data is read.
+	 */
+	private void readRest(OutputStream os) throws IOException {
+		int dataLength = (int)(remaining - 4);
+		if(executor != null && isImageData() && dataLength <= MAX_ASYNC_CHUNK) {
+			byte[] data = new byte[dataLength];
+			IOUtils.readFully(is, data);
+			long expected = IOUtils.readUnsignedIntMM(is);
+			remaining = 0;
+			if(os != null) {
+				os.write(data);
+				IOUtils.writeIntMM(os, (int)expected);
+			}
+			verify(head, data, dataLength, expected);
+			return;
+		}
+		crc.reset();
+		updateType(crc, typeValue);
+		if(head != null)
+			crc.update(head);
+		byte[] buf = new byte[Math.min(BUFFER_SIZE, Math.max(dataLength, 1))];
+		while(dataLength > 0) {
+			int len = Math.min(buf.length, dataLength);
+			IOUtils.readFully(is, buf, 0, len);
+			crc.update(buf, 0, len);
+			if(os != null)
+				os.write(buf, 0, len);
+			dataLength -= len;
+		}
+		long expected = IOUtils.readUnsignedIntMM(is);
+		remaining = 0;
+		if(os != null)
+			IOUtils.writeIntMM(os, (int)expected);
+		if(crc.getValue() != expected)
+			throw crcMismatch(typeValue, expected, crc.getValue());
+	}
+
+	// The CRC covers the chunk type ahead of the data
+	private static void updateType(CRC32 crc, int typeValue) {
+		crc.update(new byte[] {(byte)(typeValue >>> 24), (byte)(typeValue >>> 16), (byte)(typeValue >>> 8), (byte)typeValue});
+	}
+
+	// Checks the CRC of a whole chunk, on the executor for image data
+	private void verify(final byte[] head, final byte[] data, final int len, final long expected) throws IOException {
+		if(executor == null || !isImageData() || len > MAX_ASYNC_CHUNK) {
+			checkCRC(crc, typeValue, head, data, len, expected);
+			return;
+		}
+		// Keep the data held by pending checks bounded
+		while(!pendingChecks.isEmpty() && pendingBytes + len > MAX_PENDING_BYTES)
+			awaitOldestCheck();
+		final int typeValue = this.typeValue;
+		FutureTask<Void> check = new FutureTask<Void>(new Callable<Void>() {
+			public Void call() throws IOException {
+				checkCRC(new CRC32(), typeValue, head, data, len, expected);
+				return null;
+			}
+		});
+		executor.execute(check);
+		pendingChecks.addLast(check);
+		pendingSizes.addLast(len);
+		pendingBytes += len;
+	}
+}
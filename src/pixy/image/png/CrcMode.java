@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * CrcMode.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.png;
+
+/**
+ * Which chunk CRCs are verified while a PNG image is read
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public enum CrcMode {
+	/** No CRC is verified */
+	OFF,
+	/** CRCs of all the chunks except the image data chunks IDAT and fdAT */
+	METADATA,
+	/** CRCs of all the chunks */
+	ALL;
+}
@@ -13,36 +13,54 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Verify chunk CRCs by CrcMode, calculate CRCs of new chunks
+ * WY    16Oct2026  Inflate and deflate with ZLibPool, bounded in size
+ * WY    16Oct2026  Remove text and time chunks as COMMENT in removeMetadata()
+ * WY    16Oct2026  Added eXIf reading, inserting and removing
+ * WY    16Oct2026  Insert chunks while copying the image chunk by chunk
+ * WY    16Oct2026  Walk the chunks with ChunkWalker in readMetadata()
+ * WY    16Oct2026  Send parsing diagnostics to Diagnostics instead of System.out
+ * WY    16Oct2026  Added readMetadata() for requested metadata types only
  * WY    13Mar2015  Initial creation
  */
 
 package pixy.image.png;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.InflaterInputStream;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
 
 import org.w3c.dom.Document;
 
+import pixy.image.jpeg.JPEGMeta;
 import pixy.meta.Metadata;
 import pixy.meta.MetadataType;
 import pixy.meta.adobe.XMP;
+import pixy.meta.exif.Exif;
+import pixy.meta.exif.PngExif;
 import pixy.meta.icc.ICCProfile;
+import pixy.util.Diagnostics;
+import pixy.util.ZLibPool;
 import cafe.image.png.Chunk;
 import cafe.image.png.ChunkType;
 import cafe.image.png.TextBuilder;
-import cafe.image.png.TextReader;
 import cafe.image.png.UnknownChunk;
+import cafe.image.util.IMGUtils;
+import cafe.io.FileCacheRandomAccessInputStream;
 import cafe.io.IOUtils;
+import cafe.io.RandomAccessInputStream;
 import cafe.string.XMLUtils;
 /**
  * PNG image tweaking tool
@@ -54,6 +72,64 @@ public class PNGMeta {
 	
 	/** PNG signature constant */
     private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+    // eXIf chunk type, not known to ChunkType
+    private static final int EXIF = 0x65584966;
+    private static final String XMP_KEYWORD = "XML:com.adobe.xmp";
+    // Caps on decompressed sizes against corrupt or malicious images
+    private static final int MAX_ICC_PROFILE_SIZE = 16*1024*1024;
+    private static final int MAX_TEXT_SIZE = 16*1024*1024;
+    
+    private static volatile CrcMode crcMode = CrcMode.OFF;
+    private static volatile Executor crcExecutor;
+	
+	/**
+	 * Inserts EXIF as an eXIf chunk while copying the image chunk by chunk.
+	 * The chunk goes in front of the image data as the PNG specification
+	 * requires. Any eXIf chunk already in the image is replaced.
+	 * 
+	 * @param is InputStream for the PNG image
+	 * @param os OutputStream for the output image
+	 * @param exif EXIF to insert
+	 * @param update true to keep the fields of the old EXIF unless replaced
+	 * by the new ones. Only an old eXIf before the image data can be kept.
+	 * @throws IOException
+	 */
+	public static void insertExif(InputStream is, OutputStream os, Exif exif, boolean update) throws IOException {
+		// We need thumbnail image but don't have one, create one from the current image input stream
+		if(exif.isThumbnailRequired() && !exif.containsImage()) {
+			RandomAccessInputStream rin = new FileCacheRandomAccessInputStream(is);
+			// Insert thumbnail into EXIF wrapper
+			exif.setThumbnailImage(IMGUtils.createThumbnail(rin));
+			rin.seek(0);
+			is = rin;
+		}
+		Exif oldExif = null;
+		boolean inserted = false;
+		
+		ChunkWalker walker = createWalker(is);
+		
+		IOUtils.writeLongMM(os, SIGNATURE);
+		
+		while(walker.next()) {
+			if(walker.getTypeValue() == EXIF) { // Drop the old eXIf
+				if(!inserted && update)
+					oldExif = new PngExif(walker.readChunk().getData());
+				continue;
+			}
+			if(!inserted && (walker.isImageData() || walker.getType() == ChunkType.IEND)) {
+				writeExif(os, exif, oldExif, update);
+				inserted = true;
+			}
+			walker.copyChunk(os);
+		}
+		
+		if(!inserted) // The image has no IEND
+			writeExif(os, exif, oldExif, update);
+		
+		// Close the input stream in case it's an instance of RandomAccessInputStream
+		if(is instanceof RandomAccessInputStream)
+			is.close();
+	}
 	
    	public static void insertChunk(Chunk customChunk, InputStream is, OutputStream os) throws IOException
   	{
@@ -62,22 +138,46 @@ public class PNGMeta {
   	
   	public static void insertChunks(Chunk[] chunks, InputStream is, OutputStream os) throws IOException
   	{
-  		List<Chunk> list = readChunks(is);  		
-        Collections.addAll(list, chunks);
-    	
-  		IOUtils.writeLongMM(os, SIGNATURE);
-	
-        serializeChunks(list, os);
+  		insertChunks(Arrays.asList(chunks), is, os);
   	}
   	
+  	/**
+  	 * Inserts the chunks while copying the image chunk by chunk. Each new chunk
+  	 * goes in front of the first chunk of the image which ranks after it, which
+  	 * is where serializeChunks() would put it, e.g. iCCP before PLTE and IDAT.
+  	 * Only one chunk of the image is in memory at a time.
+  	 * 
+  	 * @param chunks chunks to insert
+  	 * @param is InputStream for the PNG image
+  	 * @param os OutputStream for the output image
+  	 * @throws IOException
+  	 */
   	public static void insertChunks(List<Chunk> chunks, InputStream is, OutputStream os) throws IOException
   	{
-  		List<Chunk> list = readChunks(is);  		
-        list.addAll(chunks);
-    	
+  		// Sorting is stable, chunks of the same rank keep their order
+  		List<Chunk> pending = new ArrayList<Chunk>(chunks);
+  		Collections.sort(pending);
+  		Iterator<Chunk> iter = pending.iterator();
+  		Chunk next = iter.hasNext() ? iter.next() : null;
+  		
+  		ChunkWalker walker = createWalker(is);
+  		
   		IOUtils.writeLongMM(os, SIGNATURE);
-	
-        serializeChunks(list, os);
+  		
+  		while(walker.next()) {
+  			int ranking = walker.getType().getRanking();
+  			// New chunks go after the image chunks of the same rank
+  			while(next != null && next.getChunkType().getRanking() < ranking) {
+  				writeChunk(os, next);
+  				next = iter.hasNext() ? iter.next() : null;
+  			}
+  			walker.copyChunk(os);
+  		}
+  		// Chunks ranking with IEND or the image has no IEND
+  		while(next != null) {
+  			writeChunk(os, next);
+  			next = iter.hasNext() ? iter.next() : null;
+  		}
   	}
   	
   	public static void insertXMP(InputStream is, OutputStream os, String xmp) throws IOException {
@@ -86,94 +186,200 @@ public class PNGMeta {
 		XMLUtils.insertTrailingPI(doc, "xpacket", "end='w'");
 		String newXmp = XMLUtils.serializeToString(doc); // DONOT use XMLUtils.serializeToStringLS()
   		// Adds XMP chunk
-		TextBuilder xmpBuilder = new TextBuilder(ChunkType.ITXT).keyword("XML:com.adobe.xmp");
+		TextBuilder xmpBuilder = new TextBuilder(ChunkType.ITXT).keyword(XMP_KEYWORD);
 		xmpBuilder.text(newXmp);
 	    Chunk xmpChunk = xmpBuilder.build();
 	    
 	    insertChunk(xmpChunk, is, os);
     }
   	
-   	public static byte[] readICCProfile(byte[] buf) throws IOException {
-  		 int profileName_len = 0;
-		 while(buf[profileName_len] != 0) profileName_len++;
- 		 String profileName = new String(buf, 0, profileName_len,"UTF-8");
- 		
- 		 InflaterInputStream ii = new InflaterInputStream(new ByteArrayInputStream(buf, profileName_len + 2, buf.length - profileName_len - 2));
- 		 System.out.println("ICCProfile name: " + profileName);
- 		 
- 		 byte[] icc_profile = IOUtils.readFully(ii, 4096);
- 		 System.out.println("ICCProfile length: " + icc_profile.length);
- 	 		 
- 		 return icc_profile;
-  	}
-  	
+	/**
+	 * Creates a tEXt, zTXt or iTXt chunk. The text of zTXt and iTXt is
+	 * compressed, iTXt is written with empty language tag and translated
+	 * keyword.
+	 * 
+	 * @param chunkType TEXT, ZTXT or ITXT
+	 * @param keyword keyword of the text, 1-79 Latin-1 characters
+	 * @param text the text, Latin-1 for tEXt and zTXt
+	 * @return the text chunk
+	 * @throws IOException
+	 */
+	public static Chunk createTextChunk(ChunkType chunkType, String keyword, String text) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		bout.write(keyword.getBytes("ISO-8859-1"));
+		bout.write(0);
+		if(chunkType == ChunkType.TEXT) {
+			bout.write(text.getBytes("ISO-8859-1"));
+		} else if(chunkType == ChunkType.ZTXT) {
+			bout.write(0); // Compression method: deflate
+			byte[] latin1 = text.getBytes("ISO-8859-1");
+			bout.write(ZLibPool.deflate(latin1, 0, latin1.length));
+		} else if(chunkType == ChunkType.ITXT) {
+			bout.write(1); // Compressed
+			bout.write(0); // Compression method: deflate
+			bout.write(0); // Empty language tag
+			bout.write(0); // Empty translated keyword
+			byte[] utf8 = text.getBytes("UTF-8");
+			bout.write(ZLibPool.deflate(utf8, 0, utf8.length));
+		} else
+			throw new IllegalArgumentException("Not a text chunk type: " + chunkType);
+		byte[] data = bout.toByteArray();
+		
+		return new Chunk(chunkType, data.length, data, calculateCRC(chunkType.getValue(), data));
+	}
+	
+	public static byte[] readICCProfile(byte[] buf) throws IOException {
+		int profileName_len = 0;
+		while(buf[profileName_len] != 0) profileName_len++;
+		String profileName = new String(buf, 0, profileName_len,"UTF-8");
+		
+		if(Diagnostics.isEnabled())
+			Diagnostics.print("ICCProfile name: " + profileName);
+		// Skip the null separator and compression method. The profile size
+		// isn't known before inflating, start with a guess and grow from there
+		int offset = profileName_len + 2;
+		int length = buf.length - offset;
+		byte[] icc_profile = ZLibPool.inflate(buf, offset, length, Math.max(4096, 3*length), MAX_ICC_PROFILE_SIZE);
+		if(Diagnostics.isEnabled())
+			Diagnostics.print("ICCProfile length: " + icc_profile.length);
+		
+		return icc_profile;
+	}
+	
+	/**
+	 * Reads the text of a tEXt, zTXt or iTXt chunk, decompressing it if needed
+	 * 
+	 * @param chunk the text chunk
+	 * @return the text
+	 * @throws IOException if the text is corrupt or decompresses to more than
+	 * 16MB
+	 */
+	public static String readText(Chunk chunk) throws IOException {
+		ChunkType chunkType = chunk.getChunkType();
+		byte[] data = chunk.getData();
+		int offset = indexOf(data, 0, 0) + 1; // Skip the keyword
+		if(offset == 0)
+			throw new IOException("No null separator after the keyword of " + chunkType.getName());
+		if(chunkType == ChunkType.TEXT)
+			return new String(data, offset, data.length - offset, "ISO-8859-1");
+		if(chunkType == ChunkType.ZTXT) {
+			offset++; // Compression method
+			return new String(inflateText(data, offset), "ISO-8859-1");
+		}
+		if(chunkType == ChunkType.ITXT) {
+			if(offset + 2 > data.length)
+				throw new IOException("Truncated iTXt chunk");
+			boolean compressed = (data[offset] == 1);
+			offset += 2; // Compression flag and method
+			offset = indexOf(data, offset, 0) + 1; // Language tag
+			if(offset > 0)
+				offset = indexOf(data, offset, 0) + 1; // Translated keyword
+			if(offset == 0)
+				throw new IOException("Truncated iTXt chunk");
+			if(compressed)
+				return new String(inflateText(data, offset), "UTF-8");
+			return new String(data, offset, data.length - offset, "UTF-8");
+		}
+		throw new IllegalArgumentException("Not a text chunk: " + chunkType);
+	}
+	
+  	/**
+  	 * Reads all the chunks of the image. CRCs are verified according to the
+  	 * CrcMode set with setCrcMode().
+  	 * 
+  	 * @param is InputStream for the PNG image
+  	 * @return a list of the chunks
+  	 * @throws IOException
+  	 */
   	public static List<Chunk> readChunks(InputStream is) throws IOException {  		
   		List<Chunk> list = new ArrayList<Chunk>();
- 		 //Local variables for reading chunks
-        int data_len = 0;
-        int chunk_type = 0;
-        byte[] buf = null;
-     
-        long signature = IOUtils.readLongMM(is);
-
-        if (signature != SIGNATURE)
-        {
-       	 	throw new RuntimeException("--- NOT A PNG IMAGE ---");
-        }   
-
-        /** Read header */
-        /** We are expecting IHDR */
-        if ((IOUtils.readIntMM(is)!=13)||(IOUtils.readIntMM(is) != ChunkType.IHDR.getValue()))
-        {
-            throw new RuntimeException("Not a valid IHDR chunk.");
-        }     
-        
-        buf = new byte[13];
-        IOUtils.read(is, buf, 0, 13);
-  
-        list.add(new Chunk(ChunkType.IHDR, 13, buf, IOUtils.readUnsignedIntMM(is)));         
-      
-        while (true)
-        {
-        	data_len = IOUtils.readIntMM(is);
-	       	chunk_type = IOUtils.readIntMM(is);
-	   
-	       	if (chunk_type == ChunkType.IEND.getValue()) {
-	        	 list.add(new Chunk(ChunkType.IEND, data_len, new byte[0], IOUtils.readUnsignedIntMM(is)));
-	       		 break;
-	       	} 
-       		ChunkType chunkType = ChunkType.fromInt(chunk_type);
-       		buf = new byte[data_len];
-       		IOUtils.read(is, buf,0, data_len);
-              
-       		if (chunkType == ChunkType.UNKNOWN)
-       			list.add(new UnknownChunk(data_len, chunk_type, buf, IOUtils.readUnsignedIntMM(is)));
-       		else
-       			list.add(new Chunk(chunkType, data_len, buf, IOUtils.readUnsignedIntMM(is)));
-        }
-        
-        return list;
+  		
+  		ChunkWalker walker = createWalker(is);
+  		
+  		/** We are expecting IHDR */
+  		if(!walker.next() || walker.getLength() != 13 || walker.getType() != ChunkType.IHDR)
+  			throw new RuntimeException("Not a valid IHDR chunk.");
+  		
+  		do {
+  			list.add(walker.readChunk());
+  		} while(walker.next());
+  		
+  		return list;
   	}
   	
 	public static Map<MetadataType, Metadata> readMetadata(InputStream is) throws IOException {
+		return readMetadata(is, EnumSet.allOf(MetadataType.class));
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the PNG image. Only the
+	 * chunks holding the requested metadata are read, the others are skipped.
+	 * Reading stops at the first image data chunk.
+	 * 
+	 * @param is InputStream for the PNG image
+	 * @param metadataTypes types of metadata to read
+	 * @return a map of the requested Metadata found in the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, EnumSet<MetadataType> metadataTypes) throws IOException {
+		return readMetadata(is, metadataTypes, false);
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the PNG image. Only the
+	 * chunks holding the requested metadata are read, the others including
+	 * the image data are skipped without being loaded.
+	 * 
+	 * @param is InputStream for the PNG image
+	 * @param metadataTypes types of metadata to read
+	 * @param afterImageData true to also look for metadata after the image
+	 * data, such as XMP in an iTXt chunk at the end of the image. Otherwise
+	 * reading stops at the first image data chunk.
+	 * @return a map of the requested Metadata found in the image
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, EnumSet<MetadataType> metadataTypes, boolean afterImageData) throws IOException {
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
-		List<Chunk> chunks = PNGMeta.readChunks(is);
-		Iterator<Chunk> iter = chunks.iterator();
+		// Chunks we need to read for the requested metadata
+		Set<ChunkType> chunkTypes = EnumSet.noneOf(ChunkType.class);
+		if(metadataTypes.contains(MetadataType.ICC_PROFILE))
+			chunkTypes.add(ChunkType.ICCP);
+		if(metadataTypes.contains(MetadataType.XMP)) // We may find XMP data inside iTXt
+			chunkTypes.add(ChunkType.ITXT);
+		boolean readExif = metadataTypes.contains(MetadataType.EXIF);
+		// iCCP must come before the image data, only iTXt and eXIf may follow it
+		if(!chunkTypes.contains(ChunkType.ITXT) && !readExif)
+			afterImageData = false;
+		
+		ChunkWalker walker = createWalker(is);
 		
-		while (iter.hasNext()) {
-			Chunk chunk = iter.next();
-			ChunkType type = chunk.getChunkType();
-			long length = chunk.getLength();
-			if(type == ChunkType.ICCP)
-				metadataMap.put(MetadataType.ICC_PROFILE, new ICCProfile(readICCProfile(chunk.getData())));
-			if(type == ChunkType.ITXT) {// We may find XMP data inside here
-				TextReader reader = new TextReader(chunk);
-				if(reader.getKeyword().equals("XML:com.adobe.xmp")); // We found XMP data
-	   				metadataMap.put(MetadataType.XMP, new XMP(reader.getText()));
-	   		}
-			System.out.print(type.getName() + " (" + type.getAttribute() + ")");
-			System.out.print(" | " + length + " bytes");
-			System.out.println(" | " + "0x" + Long.toHexString(chunk.getCRC()) + " (CRC)");
+		while(walker.next()) {
+			ChunkType type = walker.getType();
+			long crc = -1;
+			if(walker.isImageData() && !afterImageData) {
+				if(Diagnostics.isEnabled())
+					Diagnostics.print(type.getName() + " (" + type.getAttribute() + ")" + " | " + walker.getLength() + " bytes | Image data reached, reading stops");
+				break;
+			}
+			if(readExif && walker.getTypeValue() == EXIF) {
+				Chunk chunk = walker.readChunk();
+				crc = chunk.getCRC();
+				metadataMap.put(MetadataType.EXIF, new PngExif(chunk.getData()));
+			} else if(chunkTypes.contains(type)) {
+				Chunk chunk = walker.readChunk();
+				crc = chunk.getCRC();
+				if(type == ChunkType.ICCP)
+					metadataMap.put(MetadataType.ICC_PROFILE, new ICCProfile(readICCProfile(chunk.getData())));
+				if(type == ChunkType.ITXT) {
+					byte[] data = chunk.getData();
+					int len = indexOf(data, 0, 0);
+					if(len > 0 && new String(data, 0, len, "ISO-8859-1").equals(XMP_KEYWORD)) // We found XMP data
+						metadataMap.put(MetadataType.XMP, new XMP(readText(chunk)));
+				}
+			} // Otherwise the data and CRC are skipped by the walker
+			if(Diagnostics.isEnabled())
+				Diagnostics.print(type.getName() + " (" + type.getAttribute() + ")" + " | " + walker.getLength() + " bytes"
+						+ ((crc == -1) ? "" : " | " + "0x" + Long.toHexString(crc) + " (CRC)"));
 		}
 		
 		is.close();
@@ -181,6 +387,54 @@ public class PNGMeta {
 		return metadataMap;
 	}
   	
+	/**
+	 * Removes the requested types of metadata while copying the image chunk
+	 * by chunk. All the other chunks are copied byte for byte and only one
+	 * chunk header or text keyword is held in memory at a time.
+	 * <p>
+	 * EXIF is the eXIf chunk, ICC_PROFILE the iCCP chunk, XMP the iTXt chunk
+	 * holding XMP, and COMMENT the tEXt, zTXt and other iTXt chunks along
+	 * with the tIME chunk. Other types are kept.
+	 * 
+	 * @param is InputStream for the PNG image
+	 * @param os OutputStream for the output image
+	 * @param metadataTypes types of metadata to remove
+	 * @throws IOException
+	 */
+	public static void removeMetadata(InputStream is, OutputStream os, MetadataType ... metadataTypes) throws IOException {
+		Set<MetadataType> types = EnumSet.noneOf(MetadataType.class);
+		types.addAll(Arrays.asList(metadataTypes));
+		boolean removeXMP = types.contains(MetadataType.XMP);
+		boolean removeComment = types.contains(MetadataType.COMMENT);
+		// Keywords are 1-79 bytes followed by a null separator
+		byte[] keyword = new byte[XMP_KEYWORD.length() + 1];
+		
+		ChunkWalker walker = createWalker(is);
+		
+		IOUtils.writeLongMM(os, SIGNATURE);
+		
+		while(walker.next()) {
+			ChunkType type = walker.getType();
+			if(walker.getTypeValue() == EXIF && types.contains(MetadataType.EXIF))
+				continue;
+			if(type == ChunkType.ICCP && types.contains(MetadataType.ICC_PROFILE))
+				continue;
+			if((type == ChunkType.TEXT || type == ChunkType.ZTXT || type == ChunkType.TIME) && removeComment)
+				continue;
+			if(type == ChunkType.ITXT && (removeXMP || removeComment)) {
+				if(removeXMP && removeComment)
+					continue;
+				// Tell XMP from other text by the keyword at the start of the data
+				int len = walker.peek(keyword);
+				boolean isXMP = (len == keyword.length && keyword[len - 1] == 0 
+						&& new String(keyword, 0, len - 1, "ISO-8859-1").equals(XMP_KEYWORD));
+				if(isXMP == removeXMP)
+					continue;
+			}
+			walker.copyChunk(os);
+		}
+	}
+	
 	public static List<Chunk> removeChunks(List<Chunk> chunks, ChunkType chunkType) {
   		
   		Iterator<Chunk> iter = chunks.listIterator();
@@ -230,5 +484,76 @@ public class PNGMeta {
         }
   	}
   	
+  	private static ChunkWalker createWalker(InputStream is) throws IOException {
+  		return new ChunkWalker(is, crcMode, crcExecutor);
+  	}
+  	
+  	// CRC of a chunk, calculated over the type and data
+  	private static long calculateCRC(int chunkType, byte[] data) {
+  		CRC32 crc = new CRC32();
+  		crc.update(new byte[] {(byte)(chunkType >>> 24), (byte)(chunkType >>> 16), (byte)(chunkType >>> 8), (byte)chunkType});
+  		crc.update(data);
+  		return crc.getValue();
+  	}
+  	
+  	// Position of the first b from offset on, -1 if not found
+  	private static int indexOf(byte[] data, int offset, int b) {
+  		for(int i = offset; i < data.length; i++) {
+  			if(data[i] == b) return i;
+  		}
+  		return -1;
+  	}
+  	
+  	// Inflates compressed text from offset to the end of the data
+  	private static byte[] inflateText(byte[] data, int offset) throws IOException {
+  		int length = data.length - offset;
+  		return ZLibPool.inflate(data, offset, length, Math.max(1024, 4*length), MAX_TEXT_SIZE);
+  	}
+  	
+  	// Writes a new chunk with its CRC calculated instead of the one it carries
+  	private static void writeChunk(OutputStream os, Chunk chunk) throws IOException {
+  		int chunkType = (chunk instanceof UnknownChunk) ? ((UnknownChunk)chunk).getTypeValue() : chunk.getChunkType().getValue();
+  		writeChunk(os, chunkType, chunk.getData());
+  	}
+  	
+  	// Writes a chunk with a freshly computed CRC over the type and data
+  	private static void writeChunk(OutputStream os, int chunkType, byte[] data) throws IOException {
+  		IOUtils.writeIntMM(os, data.length);
+  		IOUtils.writeIntMM(os, chunkType);
+  		IOUtils.write(os, data);
+  		IOUtils.writeIntMM(os, (int)calculateCRC(chunkType, data));
+  	}
+  	
+  	// Merges the new EXIF with the old one and writes it as an eXIf chunk
+  	private static void writeExif(OutputStream os, Exif exif, Exif oldExif, boolean update) throws IOException {
+  		JPEGMeta.mergeExif(exif, oldExif, update);
+  		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+  		new PngExif(exif).write(bout);
+  		writeChunk(os, EXIF, bout.toByteArray());
+  	}
+  	
+  	/**
+  	 * Sets which chunk CRCs are verified while reading, OFF by default.
+  	 * A mismatch throws an IOException.
+  	 * 
+  	 * @param mode CrcMode for all the images read from now on
+  	 */
+  	public static void setCrcMode(CrcMode mode) {
+  		crcMode = (mode == null) ? CrcMode.OFF : mode;
+  	}
+  	
+  	/**
+  	 * Sets the Executor the image data CRCs are checked on with CrcMode.ALL.
+  	 * The image data is then checked on the executor while the metadata is
+  	 * read on the calling thread, and any mismatch is thrown at the end of
+  	 * the image.
+  	 * 
+  	 * @param executor Executor for the image data checks, null to check them
+  	 * on the calling thread
+  	 */
+  	public static void setCrcExecutor(Executor executor) {
+  		crcExecutor = executor;
+  	}
+  	
   	private PNGMeta() {}
 }
@@ -0,0 +1,461 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * BigTIFF.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Report broken sub-IFDs through Diagnostics
+ * WY    16Oct2026  Find the page with TiffPageIndex
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import pixy.io.FileRandomAccessOutputStream;
+import pixy.meta.exif.ExifTag;
+import pixy.meta.exif.GPSTag;
+import pixy.meta.exif.InteropTag;
+import pixy.util.Diagnostics;
+import cafe.image.tiff.ASCIIField;
+import cafe.image.tiff.ByteField;
+import cafe.image.tiff.DoubleField;
+import cafe.image.tiff.FieldType;
+import cafe.image.tiff.FloatField;
+import cafe.image.tiff.IFD;
+import cafe.image.tiff.IFDField;
+import cafe.image.tiff.LongField;
+import cafe.image.tiff.RationalField;
+import cafe.image.tiff.SRationalField;
+import cafe.image.tiff.ShortField;
+import cafe.image.tiff.Tag;
+import cafe.image.tiff.TiffField;
+import cafe.image.tiff.TiffTag;
+import cafe.image.tiff.UndefinedField;
+import cafe.io.IOUtils;
+import cafe.io.RandomAccessInputStream;
+import cafe.io.ReadStrategyII;
+import cafe.io.ReadStrategyMM;
+import cafe.io.WriteStrategyII;
+import cafe.io.WriteStrategyMM;
+
+/**
+ * Reader and in-place updater for BigTIFF, the 64 bit offset variant of TIFF.
+ * <p>
+ * BigTIFF uses 8 byte counts and offsets and 20 byte IFD entries. The fields
+ * we can represent with the 32 bit TiffField classes are converted so that
+ * metadata is read the same way as for classic TIFF. Everything else, notably
+ * the LONG8 strip and tile arrays, stays in the file as raw entries which are
+ * copied unchanged when an updated IFD is appended.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+final class BigTIFF {
+	// BigTIFF identifier following the byte order
+	static final short BIGTIFF_ID = 0x2b; // "+" 43 decimal
+	// Field types new to BigTIFF
+	static final short TYPE_LONG8 = 16;
+	static final short TYPE_SLONG8 = 17;
+	static final short TYPE_IFD8 = 18;
+	// Size of an IFD entry: tag, type, count and value or offset
+	private static final int ENTRY_SIZE = 20;
+
+	private BigTIFF() {}
+
+	/**
+	 * A raw 20 byte IFD entry
+	 */
+	static class Entry {
+		final short tag;
+		final short type;
+		final long count;
+		// Offset of the value, points into the entry itself if the value is inline
+		final long valueOffset;
+		final byte[] raw;
+
+		Entry(short tag, short type, long count, long valueOffset, byte[] raw) {
+			this.tag = tag;
+			this.type = type;
+			this.count = count;
+			this.valueOffset = valueOffset;
+			this.raw = raw;
+		}
+
+		// Size of the value in bytes, -1 if unknown or too large
+		long getSize() {
+			int typeSize = getTypeSize(type);
+			if(typeSize == 0 || count < 0 || count > Integer.MAX_VALUE) return -1;
+			return typeSize*count;
+		}
+	}
+
+	/**
+	 * The IFD of a single BigTIFF page read for an in-place update
+	 */
+	static class Page implements InPlacePage {
+		private RandomAccessInputStream rin;
+		// Where the offset pointing to the page is stored
+		private long linkOffset;
+		private long nextIFDOffset;
+		private List<Entry> entries;
+		// The fields converted from the entries, keyed by tag
+		private Map<Short, TiffField<?>> fields;
+		private IFD ifd;
+
+		Page(RandomAccessInputStream rin, long linkOffset, long nextIFDOffset, List<Entry> entries, Map<Short, TiffField<?>> fields, IFD ifd) {
+			this.rin = rin;
+			this.linkOffset = linkOffset;
+			this.nextIFDOffset = nextIFDOffset;
+			this.entries = entries;
+			this.fields = fields;
+			this.ifd = ifd;
+		}
+
+		/*
+		 * Entries of the original IFD whose fields are not touched are copied
+		 * as they are, including the ones pointing to values we never read.
+		 * New and replaced fields are written with their values after the IFD.
+		 */
+		public void append(RandomAccessFile raf) throws IOException {
+			Map<Short, TiffField<?>> current = new HashMap<Short, TiffField<?>>();
+			for(TiffField<?> field : ifd.getFields())
+				current.put(field.getTag(), field);
+			// Entries must be sorted by tag, each one is either a raw Entry or a TiffField
+			TreeMap<Integer, Object> out = new TreeMap<Integer, Object>();
+			for(Entry entry : entries) {
+				TiffField<?> original = fields.get(entry.tag);
+				TiffField<?> field = current.remove(entry.tag);
+				if(field == null) {
+					if(original == null) // Never converted, keep it
+						out.put(entry.tag&0xffff, entry);
+					// Otherwise the field has been removed
+				} else if(field == original) {
+					out.put(entry.tag&0xffff, entry);
+				} else {
+					out.put(entry.tag&0xffff, field);
+				}
+			}
+			for(TiffField<?> field : current.values())
+				out.put(field.getTag()&0xffff, field);
+
+			long writeOffset = raf.length();
+			if(writeOffset % 2 != 0) writeOffset++; // IFD must begin on a word boundary
+			long valueOffset = writeOffset + 8 + ENTRY_SIZE*out.size() + 8;
+
+			FileRandomAccessOutputStream rout = new FileRandomAccessOutputStream(raf);
+			if(rin.getEndian() == IOUtils.BIG_ENDIAN)
+				rout.setWriteStrategy(WriteStrategyMM.getInstance());
+			else
+				rout.setWriteStrategy(WriteStrategyII.getInstance());
+			rout.seek(writeOffset);
+			rout.writeLong(out.size());
+			List<byte[]> values = new ArrayList<byte[]>();
+			for(Object o : out.values()) {
+				if(o instanceof Entry) {
+					rout.write(((Entry)o).raw);
+					continue;
+				}
+				TiffField<?> field = (TiffField<?>)o;
+				byte[] data = getBytes(field);
+				rout.writeShort(field.getTag());
+				rout.writeShort(field.getType().getValue());
+				rout.writeLong(data.length);
+				if(data.length <= 8) {
+					byte[] inline = new byte[8];
+					System.arraycopy(data, 0, inline, 0, data.length);
+					rout.write(inline);
+				} else {
+					rout.writeLong(valueOffset);
+					values.add(data);
+					valueOffset += data.length;
+					if(valueOffset % 2 != 0) valueOffset++;
+				}
+			}
+			rout.writeLong(nextIFDOffset);
+			for(byte[] data : values) {
+				rout.write(data);
+				if(rout.getStreamPointer() % 2 != 0) rout.write(0);
+			}
+			// Link in the new IFD only after it is completely written and on disk
+			raf.getChannel().force(false);
+			rout.seek(linkOffset);
+			rout.writeLong(writeOffset);
+			rout.shallowClose();
+		}
+
+		public IFD getIFD() {
+			return ifd;
+		}
+	}
+
+	// Only byte array values are written, which covers all the fields the in-place updates add
+	private static byte[] getBytes(TiffField<?> field) throws IOException {
+		FieldType type = field.getType();
+		if(type == FieldType.BYTE || type == FieldType.UNDEFINED)
+			return (byte[])field.getData();
+		throw new IOException("Can't write " + type + " field " + (field.getTag()&0xffff) + " to BigTIFF");
+	}
+
+	private static TagResolver getChildTagResolver(Tag ftag) {
+		if(ftag == TiffTag.EXIF_SUB_IFD)
+			return ExifTag.getTagResolver();
+		if(ftag == TiffTag.GPS_SUB_IFD)
+			return GPSTag.getTagResolver();
+		if(ftag == ExifTag.EXIF_INTEROPERABILITY_OFFSET)
+			return InteropTag.getTagResolver();
+		return null;
+	}
+
+	static int getTypeSize(short type) {
+		switch(type) {
+			case 1: // BYTE
+			case 2: // ASCII
+			case 6: // SBYTE
+			case 7: // UNDEFINED
+				return 1;
+			case 3: // SHORT
+			case 8: // SSHORT
+				return 2;
+			case 4: // LONG
+			case 9: // SLONG
+			case 11: // FLOAT
+			case 13: // IFD
+				return 4;
+			case 5: // RATIONAL
+			case 10: // SRATIONAL
+			case 12: // DOUBLE
+			case TYPE_LONG8:
+			case TYPE_SLONG8:
+			case TYPE_IFD8:
+				return 8;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Checks the header and sets the read strategy of the input
+	 *
+	 * @return true if the input is a BigTIFF
+	 */
+	static boolean isBigTIFF(RandomAccessInputStream rin) throws IOException {
+		rin.seek(0);
+		short endian = rin.readShort();
+		if(endian == IOUtils.BIG_ENDIAN)
+			rin.setReadStrategy(ReadStrategyMM.getInstance());
+		else if(endian == IOUtils.LITTLE_ENDIAN)
+			rin.setReadStrategy(ReadStrategyII.getInstance());
+		else
+			return false;
+		return rin.readShort() == BIGTIFF_ID;
+	}
+
+	/**
+	 * Reads the values of an entry holding offsets or counts such as
+	 * strip offsets, strip byte counts or sub-IFD pointers.
+	 *
+	 * @return the values as unsigned longs
+	 */
+	static long[] readLongs(RandomAccessInputStream rin, Entry entry) throws IOException {
+		if(entry.getSize() < 0)
+			throw new IOException("Invalid BigTIFF field " + (entry.tag&0xffff));
+		long[] values = new long[(int)entry.count];
+		rin.seek(entry.valueOffset);
+		for(int i = 0; i < values.length; i++) {
+			switch(entry.type) {
+				case 3: // SHORT
+					values[i] = rin.readShort()&0xffff;
+					break;
+				case 4: // LONG
+				case 13: // IFD
+					values[i] = rin.readInt()&0xffffffffL;
+					break;
+				case TYPE_LONG8:
+				case TYPE_IFD8:
+					values[i] = rin.readLong();
+					break;
+				default:
+					throw new IOException("BigTIFF field " + (entry.tag&0xffff) + " of type " + entry.type + " is not an offset");
+			}
+		}
+		return values;
+	}
+
+	// Reads the entries of the IFD at the offset
+	static List<Entry> readEntries(RandomAccessInputStream rin, long offset) throws IOException {
+		rin.seek(offset);
+		long count = rin.readLong();
+		if(count < 0 || count > 0xffff)
+			throw new IOException("Invalid number of BigTIFF IFD entries: " + count);
+		List<Entry> entries = new ArrayList<Entry>((int)count);
+		long position = offset + 8;
+		for(int i = 0; i < count; i++, position += ENTRY_SIZE) {
+			byte[] raw = new byte[ENTRY_SIZE];
+			rin.seek(position);
+			rin.readFully(raw);
+			rin.seek(position);
+			short tag = rin.readShort();
+			short type = rin.readShort();
+			long length = rin.readLong();
+			long valueOffset = position + 12;
+			Entry entry = new Entry(tag, type, length, valueOffset, raw);
+			if(entry.getSize() > 8)
+				entry = new Entry(tag, type, length, rin.readLong(), raw);
+			entries.add(entry);
+		}
+		return entries;
+	}
+
+	/**
+	 * Reads the byte order and the first IFD offset
+	 */
+	static long readHeader(RandomAccessInputStream rin) throws IOException {
+		if(!isBigTIFF(rin))
+			throw new RuntimeException("Invalid BigTIFF identifier");
+		short bytesize = rin.readShort();
+		short constant = rin.readShort();
+		if(bytesize != 8 || constant != 0)
+			throw new RuntimeException("Unsupported BigTIFF offset size: " + bytesize);
+		return rin.readLong();
+	}
+
+	/*
+	 * Converts the entries to fields of an IFD, following the EXIF, GPS and
+	 * Interoperability sub-IFDs. Entries we can't represent are left out.
+	 * If fields is not null, the converted fields are also put into it.
+	 */
+	static IFD readIFD(RandomAccessInputStream rin, List<Entry> entries, TagResolver tagResolver, Set<Tag> skippedTags, Map<Short, TiffField<?>> fields) throws IOException {
+		IFD ifd = new IFD();
+		for(Entry entry : entries) {
+			Tag ftag = tagResolver.resolve(entry.tag);
+			if(skippedTags != null && skippedTags.contains(ftag)) continue;
+			TagResolver childTagResolver = getChildTagResolver(ftag);
+			// Fields pointing to sub-IFDs are always read
+			TiffField<?> field = readField(rin, entry, childTagResolver == null);
+			if(childTagResolver != null) {
+				long childOffset = readLongs(rin, entry)[0];
+				// LONG8 pointer, keep a placeholder to tell the sub-IFD is there
+				if(field == null)
+					field = new LongField(entry.tag, new int[] {(int)childOffset});
+				try {
+					ifd.addChild(ftag, readIFD(rin, readEntries(rin, childOffset), childTagResolver, skippedTags, null));
+				} catch(Exception e) {
+					field = null; // Broken sub-IFD
+					Diagnostics.print("Skipped invalid BigTIFF sub-IFD " + ftag + ": " + e.getMessage());
+				}
+			}
+			if(field != null) {
+				ifd.addField(field);
+				if(fields != null) fields.put(entry.tag, field);
+			}
+		}
+		return ifd;
+	}
+
+	// Converts the entry to a field, returns null if it can't be represented
+	private static TiffField<?> readField(RandomAccessInputStream rin, Entry entry, boolean lazy) throws IOException {
+		long size = entry.getSize();
+		if(size < 0) return null;
+		short tag = entry.tag;
+		int length = (int)entry.count;
+		switch(entry.type) {
+			case 1: // BYTE
+			case 3: // SHORT
+			case 4: // LONG
+			case 7: // UNDEFINED
+				// Large values are left in the input until they are used
+				if(lazy && size > TIFFMeta.LAZY_FIELD_THRESHOLD)
+					return new LazyTiffField<Object>(tag, FieldType.fromShort(entry.type), length, entry.valueOffset, rin);
+				break;
+			default:
+		}
+		rin.seek(entry.valueOffset);
+		switch(entry.type) {
+			case 1: // BYTE
+			case 7: // UNDEFINED
+				byte[] data = new byte[length];
+				rin.readFully(data);
+				if(entry.type == 1)
+					return new ByteField(tag, data);
+				return new UndefinedField(tag, data);
+			case 2: // ASCII
+				data = new byte[length];
+				rin.readFully(data);
+				return new ASCIIField(tag, new String(data, 0, data.length, "UTF-8"));
+			case 3: // SHORT
+				short[] sdata = new short[length];
+				for(int i = 0; i < length; i++)
+					sdata[i] = rin.readShort();
+				return new ShortField(tag, sdata);
+			case 4: // LONG
+			case 13: // IFD
+				int[] ldata = new int[length];
+				for(int i = 0; i < length; i++)
+					ldata[i] = rin.readInt();
+				if(entry.type == 4)
+					return new LongField(tag, ldata);
+				return new IFDField(tag, ldata);
+			case 5: // RATIONAL
+			case 10: // SRATIONAL
+				ldata = new int[length*2];
+				for(int i = 0; i < ldata.length; i++)
+					ldata[i] = rin.readInt();
+				if(entry.type == 5)
+					return new RationalField(tag, ldata);
+				return new SRationalField(tag, ldata);
+			case 11: // FLOAT
+				float[] fdata = new float[length];
+				for(int i = 0; i < length; i++)
+					fdata[i] = rin.readFloat();
+				return new FloatField(tag, fdata);
+			case 12: // DOUBLE
+				double[] ddata = new double[length];
+				for(int i = 0; i < length; i++)
+					ddata[i] = rin.readDouble();
+				return new DoubleField(tag, ddata);
+			default: // LONG8 and the signed types
+				return null;
+		}
+	}
+
+	/**
+	 * Reads the IFD of a page
+	 *
+	 * @param pageIndex TiffPageIndex for the BigTIFF image
+	 * @param pageNumber page to read (zero based)
+	 * @param tagResolver TagResolver for the tags of the page IFD
+	 * @param skippedTags tags of the fields to leave out, null to read all of them
+	 * @return the page
+	 * @throws IOException
+	 */
+	static Page readPage(TiffPageIndex pageIndex, int pageNumber, TagResolver tagResolver, Set<Tag> skippedTags) throws IOException {
+		RandomAccessInputStream rin = pageIndex.getInput();
+		long offset = pageIndex.getPageOffset(pageNumber);
+		long linkOffset = pageIndex.getLinkOffset(pageNumber);
+		List<Entry> entries = readEntries(rin, offset);
+		rin.seek(offset + 8 + ENTRY_SIZE*entries.size());
+		long nextIFDOffset = rin.readLong();
+		Map<Short, TiffField<?>> fields = new HashMap<Short, TiffField<?>>();
+		IFD ifd = readIFD(rin, entries, tagResolver, skippedTags, fields);
+
+		return new Page(rin, linkOffset, nextIFDOffset, entries, fields, ifd);
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * DenseTagResolver.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import cafe.image.tiff.Tag;
+import cafe.image.tiff.TiffTag;
+
+/**
+ * TagResolver backed by an array indexed by the tag value.
+ * <p>
+ * The array only spans the values between the smallest and the largest
+ * known tag, so looking up a tag is a subtraction, a range check and an
+ * array access with no boxing or hashing involved.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class DenseTagResolver implements TagResolver {
+	// Tag value reserved for UNKNOWN by the tag enums
+	private static final int UNKNOWN_VALUE = 0xffff;
+	
+	private final Tag[] table;
+	private final int base;
+	
+	/**
+	 * @param tags known tags, usually values() of a tag enum
+	 */
+	public DenseTagResolver(Tag[] tags) {
+		int min = UNKNOWN_VALUE;
+		int max = -1;
+		for(Tag tag : tags) {
+			int value = tag.getValue()&0xffff;
+			if(value == UNKNOWN_VALUE) continue;
+			if(value < min) min = value;
+			if(value > max) max = value;
+		}
+		if(max < 0) {
+			this.base = 0;
+			this.table = new Tag[0];
+			return;
+		}
+		this.base = min;
+		this.table = new Tag[max - min + 1];
+		for(Tag tag : tags) {
+			int value = tag.getValue()&0xffff;
+			if(value != UNKNOWN_VALUE)
+				table[value - min] = tag;
+		}
+	}
+	
+	public Tag resolve(short value) {
+		int index = (value&0xffff) - base;
+		if(index < 0 || index >= table.length) return TiffTag.UNKNOWN;
+		Tag tag = table[index];
+		if(tag == null) return TiffTag.UNKNOWN;
+		return tag;
+	}
+}
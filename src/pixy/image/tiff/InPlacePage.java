@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * InPlacePage.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import cafe.image.tiff.IFD;
+
+/**
+ * A page of a TIFF or BigTIFF file read for an in-place metadata update.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+interface InPlacePage {
+	/**
+	 * @return the working IFD of the page to be modified
+	 */
+	IFD getIFD();
+
+	/**
+	 * Appends the modified IFD to the end of the file and links it in
+	 * place of the original one.
+	 *
+	 * @param raf the file the page is read from, opened for writing
+	 * @throws IOException
+	 */
+	void append(RandomAccessFile raf) throws IOException;
+}
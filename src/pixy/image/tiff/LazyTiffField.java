@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * LazyTiffField.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Take 64 bit value offset for BigTIFF
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import java.io.IOException;
+
+import cafe.image.tiff.ByteField;
+import cafe.image.tiff.FieldType;
+import cafe.image.tiff.LongField;
+import cafe.image.tiff.ShortField;
+import cafe.image.tiff.TiffField;
+import cafe.image.tiff.UndefinedField;
+import cafe.io.RandomAccessInputStream;
+import cafe.io.RandomAccessOutputStream;
+
+/**
+ * TIFF field whose value is read from the input only when it is first used.
+ * <p>
+ * Only the entry header (tag, type, count and value offset) is kept until
+ * then. On first access the value is read into a regular ByteField,
+ * UndefinedField, ShortField or LongField which the calls are delegated to.
+ * The input must remain open until the value has been loaded.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+class LazyTiffField<T> extends TiffField<T> {
+	private RandomAccessInputStream rin;
+	private final long valueOffset;
+	// The field holding the value once loaded
+	private TiffField<T> field;
+	// Point to the value where it is in the input instead of writing it again
+	private boolean inPlace;
+
+	LazyTiffField(short tag, FieldType type, int length, long valueOffset, RandomAccessInputStream rin) {
+		super(tag, type, length);
+		switch(type) {
+			case BYTE:
+			case UNDEFINED:
+			case SHORT:
+			case LONG:
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported field type for lazy loading: " + type);
+		}
+		this.valueOffset = valueOffset;
+		this.rin = rin;
+	}
+
+	public T getData() {
+		return load().getData();
+	}
+
+	public int[] getDataAsLong() {
+		return load().getDataAsLong();
+	}
+
+	public String getDataAsString() {
+		return load().getDataAsString();
+	}
+
+	public boolean isLoaded() {
+		return field != null;
+	}
+
+	/*
+	 * Marks the field as written back to the file it is read from. If the value
+	 * is still not loaded when the field is written, the entry points to the value
+	 * where it already is and nothing is read or copied.
+	 */
+	void setInPlace(boolean inPlace) {
+		this.inPlace = inPlace;
+	}
+
+	@SuppressWarnings("unchecked")
+	TiffField<T> load() {
+		if(field == null) {
+			try {
+				field = (TiffField<T>)read();
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to read the value of field " + getTag() + " at offset " + valueOffset, e);
+			}
+			data = field.getData();
+			rin = null; // No longer needed
+		}
+		return field;
+	}
+
+	/*
+	 * Returns the loaded field, or if not loaded yet, a field holding the value
+	 * read just for the caller. The value is not kept, the field stays lazy.
+	 */
+	TiffField<?> peek() {
+		if(field != null) return field;
+		try {
+			return read();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to read the value of field " + getTag() + " at offset " + valueOffset, e);
+		}
+	}
+
+	// Reads the value without moving the stream pointer of the input
+	private TiffField<?> read() throws IOException {
+		long pointer = rin.getStreamPointer();
+		int length = getLength();
+		TiffField<?> field = null;
+		rin.seek(valueOffset);
+		switch(getType()) {
+			case BYTE:
+			case UNDEFINED:
+				byte[] bdata = new byte[length];
+				rin.readFully(bdata);
+				if(getType() == FieldType.BYTE)
+					field = new ByteField(getTag(), bdata);
+				else
+					field = new UndefinedField(getTag(), bdata);
+				break;
+			case SHORT:
+				short[] sdata = new short[length];
+				for(int i = 0; i < length; i++)
+					sdata[i] = rin.readShort();
+				field = new ShortField(getTag(), sdata);
+				break;
+			case LONG:
+				int[] ldata = new int[length];
+				for(int i = 0; i < length; i++)
+					ldata[i] = rin.readInt();
+				field = new LongField(getTag(), ldata);
+				break;
+			default:
+		}
+		rin.seek(pointer);
+
+		return field;
+	}
+
+	protected int writeData(RandomAccessOutputStream os, int toOffset) throws IOException {
+		if(inPlace && field == null) {
+			os.writeInt((int)valueOffset);
+			dataOffset = (int)valueOffset;
+			return toOffset;
+		}
+		TiffField<T> field = load();
+		// The header is already written, let the loaded field write it again along with its value
+		os.seek(os.getStreamPointer() - 8);
+		toOffset = field.write(os, toOffset);
+		dataOffset = field.getDataOffset();
+
+		return toOffset;
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * SharedUndefinedField.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import java.io.IOException;
+
+import cafe.image.tiff.UndefinedField;
+import cafe.io.RandomAccessOutputStream;
+
+/**
+ * UndefinedField which can be added to several IFDs of the same image.
+ * <p>
+ * The value is written only with the first IFD, the other IFDs written to
+ * the same output point to the same copy of the value. This is used to
+ * add the same ICC profile or XMP to many pages.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+class SharedUndefinedField extends UndefinedField {
+	// The output the value is written to and where
+	private RandomAccessOutputStream output;
+	private int valueOffset;
+
+	SharedUndefinedField(short tag, byte[] data) {
+		super(tag, data);
+	}
+
+	protected int writeData(RandomAccessOutputStream os, int toOffset) throws IOException {
+		if(os == output && getLength() > 4) { // Already written, point to it
+			dataOffset = valueOffset;
+			os.writeInt(valueOffset);
+			return toOffset;
+		}
+		toOffset = super.writeData(os, toOffset);
+		output = os;
+		valueOffset = getDataOffset();
+
+		return toOffset;
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * StripCopyPlan.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Hand the ranges over to StreamingRandomAccessOutputStream
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+
+import pixy.io.ByteBufferRandomAccessInputStream;
+import pixy.io.FileRandomAccessOutputStream;
+import pixy.io.StreamingRandomAccessOutputStream;
+import cafe.io.RandomAccessInputStream;
+import cafe.io.RandomAccessOutputStream;
+
+/**
+ * Source and destination offsets of the strips and tiles of a TIFF rewrite.
+ * <p>
+ * The output offsets of all the IFDs and image data are worked out first
+ * while the IFDs are written. The image data is then copied in one go with
+ * positional reads and writes, split into tasks which run concurrently on
+ * the executor. For a StreamingRandomAccessOutputStream the ranges are handed
+ * over to the output which copies them while it is written out in order.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+class StripCopyPlan {
+	// Ranges are split into tasks of at most this many bytes
+	private static final int TASK_SIZE = 4*1024*1024;
+	private static final int BUFFER_SIZE = 64*1024;
+
+	private RandomAccessInputStream src;
+	private RandomAccessOutputStream dst;
+	private Executor executor;
+	private List<Range> ranges = new ArrayList<Range>();
+
+	private StripCopyPlan(RandomAccessInputStream src, RandomAccessOutputStream dst, Executor executor) {
+		this.src = src;
+		this.dst = dst;
+		this.executor = executor;
+	}
+
+	/**
+	 * Creates a plan if the output is a StreamingRandomAccessOutputStream or
+	 * if the copy can be done concurrently, which requires an executor, an
+	 * in-memory or mapped input and a file output.
+	 *
+	 * @return the plan or null if the data must be copied through the streams
+	 */
+	static StripCopyPlan create(RandomAccessInputStream rin, RandomAccessOutputStream rout, Executor executor) {
+		if(rout instanceof StreamingRandomAccessOutputStream)
+			return new StripCopyPlan(rin, rout, null);
+		if(executor == null || !(rin instanceof ByteBufferRandomAccessInputStream) || !(rout instanceof FileRandomAccessOutputStream))
+			return null;
+		return new StripCopyPlan(rin, rout, executor);
+	}
+
+	/**
+	 * Adds a range to copy. The range is merged with the previous one if
+	 * both the sources and destinations are contiguous.
+	 */
+	void add(long srcOffset, long length, long dstOffset) {
+		if(length <= 0) return;
+		if(ranges.size() > 0) {
+			Range last = ranges.get(ranges.size() - 1);
+			if(last.srcOffset + last.length == srcOffset && last.dstOffset + last.length == dstOffset) {
+				last.length += length;
+				return;
+			}
+		}
+		ranges.add(new Range(srcOffset, length, dstOffset));
+	}
+
+	private static void copy(ByteBufferRandomAccessInputStream src, FileRandomAccessOutputStream dst, long srcOffset, long length, long dstOffset) throws IOException {
+		byte[] buf = new byte[(int)Math.min(BUFFER_SIZE, length)];
+		while(length > 0) {
+			int len = (int)Math.min(buf.length, length);
+			int bytesRead = 0;
+			while(bytesRead < len) {
+				int n = src.read(srcOffset + bytesRead, buf, bytesRead, len - bytesRead);
+				if(n < 0)
+					throw new IOException("Premature end of input at " + (srcOffset + bytesRead));
+				bytesRead += n;
+			}
+			dst.write(dstOffset, buf, 0, len);
+			srcOffset += len;
+			dstOffset += len;
+			length -= len;
+		}
+	}
+
+	/**
+	 * Copies all the ranges and waits for the copy to finish
+	 *
+	 * @throws IOException if any of the ranges fails to copy
+	 */
+	void execute() throws IOException {
+		if(dst instanceof StreamingRandomAccessOutputStream) {
+			for(Range range : ranges)
+				((StreamingRandomAccessOutputStream)dst).copyFrom(src, range.srcOffset, range.length, range.dstOffset);
+			ranges.clear();
+			return;
+		}
+		final ByteBufferRandomAccessInputStream src = (ByteBufferRandomAccessInputStream)this.src;
+		final FileRandomAccessOutputStream dst = (FileRandomAccessOutputStream)this.dst;
+		CompletionService<Void> service = new ExecutorCompletionService<Void>(executor);
+		int tasks = 0;
+		for(Range range : ranges) {
+			for(long done = 0; done < range.length; done += TASK_SIZE) {
+				final long srcOffset = range.srcOffset + done;
+				final long dstOffset = range.dstOffset + done;
+				final long length = Math.min(TASK_SIZE, range.length - done);
+				service.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						copy(src, dst, srcOffset, length, dstOffset);
+						return null;
+					}
+				});
+				tasks++;
+			}
+		}
+		// Wait for all the tasks even if one of them fails
+		IOException failure = null;
+		boolean interrupted = false;
+		for(int i = 0; i < tasks; i++) {
+			try {
+				service.take().get();
+			} catch(InterruptedException e) {
+				interrupted = true;
+				i--;
+			} catch(ExecutionException e) {
+				if(failure == null) {
+					Throwable cause = e.getCause();
+					if(cause instanceof IOException)
+						failure = (IOException)cause;
+					else
+						failure = new IOException("Copying image data failed", cause);
+				}
+			}
+		}
+		ranges.clear();
+		if(interrupted) // Keep the interrupt for the caller
+			Thread.currentThread().interrupt();
+		if(failure != null) throw failure;
+	}
+
+	private static class Range {
+		long srcOffset;
+		long length;
+		long dstOffset;
+
+		Range(long srcOffset, long length, long dstOffset) {
+			this.srcOffset = srcOffset;
+			this.length = length;
+			this.dstOffset = dstOffset;
+		}
+	}
+}
@@ -13,6 +13,24 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Don't copy untouched values when appending an IFD in place
+ * WY    16Oct2026  Don't load image data offsets and unused blobs for TiffExif
+ * WY    16Oct2026  Keep fields lazy while dumping diagnostics
+ * WY    16Oct2026  Reject BigTIFF in insertExif() with an IOException
+ * WY    16Oct2026  Grow the image data copy buffer for larger runs
+ * WY    16Oct2026  Flush appended IFD before linking it in, release the mapped input
+ * WY    16Oct2026  Send embedded metadata dumps to Diagnostics
+ * WY    16Oct2026  Added page set variants of insert and remove methods
+ * WY    16Oct2026  Copy runs of contiguous strips and tiles at once
+ * WY    16Oct2026  Copy image data concurrently with StripCopyPlan
+ * WY    16Oct2026  Read only the IFD of the requested page
+ * WY    16Oct2026  Read and update metadata of BigTIFF files
+ * WY    16Oct2026  Added in-place metadata update for TIFF files
+ * WY    16Oct2026  Read large field values lazily in readMetadata()
+ * WY    16Oct2026  Resolve field tags with TagResolver instead of reflection
+ * WY    16Oct2026  Send parsing diagnostics to Diagnostics instead of System.out
+ * WY    16Oct2026  Added readMetadata() for requested metadata types only
+ * WY    16Oct2026  Copy old-style JPEG image data with SOSScanner
  * WY    13Mar2015  Initial creation
  */
 
@@ -22,21 +40,27 @@ import java.awt.color.ICC_Profile;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.w3c.dom.Document;
 
+import pixy.image.jpeg.SOSScanner;
+import pixy.io.FileRandomAccessOutputStream;
+import pixy.io.MappedRandomAccessInputStream;
 import pixy.meta.Metadata;
 import pixy.meta.MetadataType;
 import pixy.meta.adobe.IRB;
@@ -51,9 +75,11 @@ import pixy.meta.exif.GPSTag;
 import pixy.meta.exif.InteropTag;
 import pixy.meta.exif.TiffExif;
 import pixy.meta.icc.ICCProfile;
+import pixy.meta.icc.ICCProfileReader;
 import pixy.meta.iptc.IPTC;
 import pixy.meta.iptc.IPTCDataSet;
 import pixy.meta.iptc.IPTCReader;
+import pixy.util.Diagnostics;
 import pixy.util.MetadataUtils;
 import cafe.image.ImageIO;
 import cafe.image.ImageType;
@@ -88,17 +114,65 @@ import cafe.util.ArrayUtils;
 import static cafe.image.writer.TIFFWriter.*;
 
 public class TIFFMeta {
+	// Resolves the tags of the main IFDs
+	private static final TagResolver TIFF_TAG_RESOLVER = new DenseTagResolver(TiffTag.values());
+	// Value size above which a field is loaded lazily
+	static final int LAZY_FIELD_THRESHOLD = 1024;
+	// Copies image data concurrently when rewriting a TIFF, null to copy sequentially
+	private static volatile Executor copyExecutor;
+	// Largest buffer used to copy image data sequentially
+	private static final int COPY_BUFFER_SIZE = 1024*1024;
+	
+	/*
+	 * Appends the IFD of the page to the end of the file and links it in place of the
+	 * original IFD by patching the 4 byte offset pointing to the page: the first IFD
+	 * offset in the header or the next IFD offset of the previous page. Image data and
+	 * the other IFDs are left untouched, the original IFD is simply no longer used.
+	 */
+	private static void appendIFD(RandomAccessFile raf, TiffPageIndex pageIndex, IFD workingPage, int pageNumber) throws IOException {
+		RandomAccessInputStream rin = pageIndex.getInput();
+		// Find the offset pointing to the page and the offset of the page following it
+		long linkOffset = pageIndex.getLinkOffset(pageNumber);
+		long ifdOffset = pageIndex.getPageOffset(pageNumber);
+		rin.seek(ifdOffset);
+		rin.seek(ifdOffset + 2 + 12*(rin.readShort()&0xffff));
+		int nextIFDOffset = rin.readInt();
+		
+		long writeOffset = raf.length();
+		if(writeOffset % 2 != 0) writeOffset++; // IFD must begin on a word boundary
+		if(writeOffset > Integer.MAX_VALUE)
+			throw new IOException("Can't append IFD to TIFF file larger than 2GB");
+		
+		FileRandomAccessOutputStream rout = new FileRandomAccessOutputStream(raf);
+		if(rin.getEndian() == IOUtils.BIG_ENDIAN)
+			rout.setWriteStrategy(WriteStrategyMM.getInstance());
+		else
+			rout.setWriteStrategy(WriteStrategyII.getInstance());
+		
+		// Values never loaded are still in place, only new and modified values are appended
+		keepValuesInPlace(workingPage);
+		int endOffset = workingPage.write(rout, (int)writeOffset);
+		if(endOffset < writeOffset)
+			throw new IOException("Can't append IFD to TIFF file larger than 2GB");
+		workingPage.setNextIFDOffset(rout, nextIFDOffset);
+		// Link in the new IFD only after it is completely written and on disk
+		raf.getChannel().force(false);
+		rout.seek(linkOffset);
+		rout.writeInt((int)writeOffset);
+		rout.shallowClose();
+	}
+	
 	private static int copyHeader(RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {		
 		rin.seek(STREAM_HEAD);
 		// First 2 bytes determine the byte order of the file, "MM" or "II"
 	    short endian = rin.readShort();
 	
 		if (endian == IOUtils.BIG_ENDIAN) {
-		    System.out.println("Byte order: Motorola BIG_ENDIAN");
+		    Diagnostics.print("Byte order: Motorola BIG_ENDIAN");
 		    rin.setReadStrategy(ReadStrategyMM.getInstance());
 		    rout.setWriteStrategy(WriteStrategyMM.getInstance());
 		} else if(endian == IOUtils.LITTLE_ENDIAN) {
-		    System.out.println("Byte order: Intel LITTLE_ENDIAN");
+		    Diagnostics.print("Byte order: Intel LITTLE_ENDIAN");
 		    rin.setReadStrategy(ReadStrategyII.getInstance());
 		    rout.setWriteStrategy(WriteStrategyII.getInstance());
 		} else {
@@ -182,11 +256,11 @@ public class TIFFMeta {
 		// The very first marker should be the start_of_image marker!	
 		if(Marker.fromShort(IOUtils.readShortMM(rin)) != Marker.SOI)
 		{
-			System.out.println("Invalid JPEG image, expected SOI marker not found!");
+			Diagnostics.print("Invalid JPEG image, expected SOI marker not found!");
 			return;
 		}
 		
-		System.out.println(Marker.SOI);
+		Diagnostics.print("SOI");
 		IOUtils.writeShortMM(rout, Marker.SOI.getValue());
 		
 		marker = IOUtils.readShortMM(rin);
@@ -195,14 +269,15 @@ public class TIFFMeta {
 	    {	        
 			if (Marker.fromShort(marker) == Marker.EOI)
 			{
-				System.out.println(Marker.EOI);
+				Diagnostics.print("EOI");
 				IOUtils.writeShortMM(rout, marker);
 				finished = true;
 			}
 		   	else // Read markers
 			{
 		   		emarker = Marker.fromShort(marker);
-				System.out.println(emarker); 
+				if(Diagnostics.isEnabled())
+					Diagnostics.print(emarker.toString());
 				
 				switch (emarker) {
 					case JPG: // JPG and JPGn shouldn't appear in the image.
@@ -257,58 +332,21 @@ public class TIFFMeta {
 		IOUtils.writeShortMM(rout, Marker.SOS.getValue());
 		IOUtils.writeShortMM(rout, len);
 		rout.write(buf);		
-		// Actual image data follow.
-		int nextByte = 0;
-		short marker = 0;	
-		
-		while((nextByte = IOUtils.read(rin)) != -1)
-		{
-			rout.write(nextByte);
-			
-			if(nextByte == 0xff)
-			{
-				nextByte = IOUtils.read(rin);
-			    rout.write(nextByte);
-			    
-				if (nextByte == -1) {
-					throw new IOException("Premature end of SOS segment!");					
-				}								
-				
-				if (nextByte != 0x00)
-				{
-					marker = (short)((0xff<<8)|nextByte);
-					
-					switch (Marker.fromShort(marker)) {										
-						case RST0:  
-						case RST1:
-						case RST2:
-						case RST3:
-						case RST4:
-						case RST5:
-						case RST6:
-						case RST7:
-							System.out.println(Marker.fromShort(marker));
-							continue;
-						default:
-					}
-					break;
-				}
-			}
-		}
-		
-		if (nextByte == -1) {
-			throw new IOException("Premature end of SOS segment!");
-		}
-
-		return marker;
+		// Actual image data follow. The marker ending the data is not copied
+		// here and will be written by the caller.
+		return new SOSScanner().copy(rin, rout);
 	}
 	
 	/**
+	 * If plan is not null, the strips and tiles are only added to the plan with their
+	 * final output offsets and copied later, otherwise they are copied right away.
+	 * 
 	 * @param offset offset to write page image data
+	 * @param plan StripCopyPlan collecting the strips and tiles to copy, or null
 	 * 
 	 * @return the position where to write the IFD for the current image page
 	 */
-	private static int copyPageData(IFD ifd, int offset, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+	private static int copyPageData(IFD ifd, int offset, RandomAccessInputStream rin, RandomAccessOutputStream rout, StripCopyPlan plan) throws IOException {
 		// Move stream pointer to the right place
 		rout.seek(offset);
 
@@ -359,15 +397,29 @@ public class TIFFMeta {
 			// We are going to write the image data first
 			rout.seek(offset);
 		
-			// Copy image data from offset
-			for(int i = 0; i < off.length; i++) {
-				rin.seek(off[i]);
-				byte[] buf = new byte[counts[i]];
-				rin.readFully(buf);
-				rout.write(buf);
-				temp[i] = offset;
-				offset += buf.length;
+			// Copy image data from offset, each run of contiguous strips or tiles at once
+			byte[] buf = null;
+			for(int i = 0; i < off.length; ) {
+				long runStart = off[i]&0xffffffffL;
+				long runLength = 0;
+				do {
+					temp[i] = offset + (int)runLength;
+					runLength += counts[i]&0xffffffffL;
+					i++;
+				} while(i < off.length && (off[i]&0xffffffffL) == runStart + runLength);
+				if(plan != null) {
+					plan.add(runStart, runLength, offset);
+				} else {
+					// Grow the buffer for a larger run, up to COPY_BUFFER_SIZE
+					int bufSize = (int)Math.min(COPY_BUFFER_SIZE, Math.max(1, runLength));
+					if(buf == null || buf.length < bufSize)
+						buf = new byte[bufSize];
+					copyRange(rin, rout, runStart, runLength, buf);
+				}
+				offset += runLength;
 			}
+			// Move to the end of the image data, which may only be planned yet
+			rout.seek(offset);
 						
 			if(ifd.getField(TiffTag.STRIP_BYTE_COUNTS) != null)
 				stripOffSets = new LongField(TiffTag.STRIP_OFFSETS.getValue(), temp);
@@ -434,20 +486,36 @@ public class TIFFMeta {
 		return (int)rout.getStreamPointer();	
 	}
 	
+	// Copies length bytes from the offset of rin to the current position of rout through buf
+	private static void copyRange(RandomAccessInputStream rin, RandomAccessOutputStream rout, long offset, long length, byte[] buf) throws IOException {
+		rin.seek(offset);
+		while(length > 0) {
+			int len = (int)Math.min(buf.length, length);
+			rin.readFully(buf, 0, len);
+			rout.write(buf, 0, len);
+			length -= len;
+		}
+	}
+	
 	// Copy a list of IFD and associated image data if any
 	private static int copyPages(List<IFD> list, int writeOffset, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+		// Lay out all the pages first if the image data can be copied concurrently
+		StripCopyPlan plan = StripCopyPlan.create(rin, rout, copyExecutor);
 		// Write the first page data
-		writeOffset = copyPageData(list.get(0), writeOffset, rin, rout);
+		writeOffset = copyPageData(list.get(0), writeOffset, rin, rout, plan);
 		// Then write the first IFD
 		writeOffset = list.get(0).write(rout, writeOffset);
 		// We are going to write the remaining image pages and IFDs if any
 		for(int i = 1; i < list.size(); i++) {
-			writeOffset = copyPageData(list.get(i), writeOffset, rin, rout);
+			writeOffset = copyPageData(list.get(i), writeOffset, rin, rout, plan);
 			// Tell the IFD to update next IFD offset for the following IFD
 			list.get(i-1).setNextIFDOffset(rout, writeOffset); 
 			writeOffset = list.get(i).write(rout, writeOffset);
 		}
 		
+		if(plan != null)
+			plan.execute();
+		
 		return writeOffset;
 	}
 	
@@ -460,16 +528,19 @@ public class TIFFMeta {
 	 * @throws Exception
 	 */
 	public static byte[] extractICCProfile(int pageNumber, RandomAccessInputStream rin) throws Exception {
-		// Read pass image header
-		int offset = readHeader(rin);
-		// Read the IFDs into a list first
-		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
-		
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
-		
-		IFD workingPage = ifds.get(pageNumber);
+		return extractICCProfile(new TiffPageIndex(rin), pageNumber);
+	}
+	
+	/**
+	 * Extracts the ICC profile of a page reading only the IFD of the page
+	 * 
+	 * @param pageIndex TiffPageIndex for the image
+	 * @param pageNumber page from which to extract the ICC profile
+	 * @return the ICC profile or null if there is none
+	 * @throws Exception
+	 */
+	public static byte[] extractICCProfile(TiffPageIndex pageIndex, int pageNumber) throws Exception {
+		IFD workingPage = readPageIFD(pageIndex, pageNumber, null, false);
 		TiffField<?> f_iccProfile = workingPage.getField(TiffTag.ICC_PROFILE);
 		if(f_iccProfile != null) {
 			return (byte[])f_iccProfile.getData();
@@ -483,16 +554,19 @@ public class TIFFMeta {
 	}
 	
 	public static IRBThumbnail extractThumbnail(int pageNumber, RandomAccessInputStream rin) throws IOException {
-		// Read pass image header
-		int offset = readHeader(rin);
-		// Read the IFDs into a list first
-		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
-		
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
-		
-		IFD workingPage = ifds.get(pageNumber);
+		return extractThumbnail(new TiffPageIndex(rin), pageNumber);
+	}
+	
+	/**
+	 * Extracts the Photoshop thumbnail of a page reading only the IFD of the page
+	 * 
+	 * @param pageIndex TiffPageIndex for the image
+	 * @param pageNumber page from which to extract the thumbnail
+	 * @return the thumbnail or null if there is none
+	 * @throws IOException
+	 */
+	public static IRBThumbnail extractThumbnail(TiffPageIndex pageIndex, int pageNumber) throws IOException {
+		IFD workingPage = readPageIFD(pageIndex, pageNumber, null, false);
 		TiffField<?> f_photoshop = workingPage.getField(TiffTag.PHOTOSHOP);
 		if(f_photoshop != null) {
 			byte[] data = (byte[])f_photoshop.getData();
@@ -534,6 +608,25 @@ public class TIFFMeta {
 		}			
 	}
 	
+	// Selects the IFDs of the pages, null pages selects all of them
+	private static List<IFD> getPages(List<IFD> ifds, BitSet pages) {
+		if(pages == null) return ifds;
+		if(pages.length() > ifds.size())
+			throw new IllegalArgumentException("pageNumber " + (pages.length() - 1) + " out of bounds: 0 - " + (ifds.size() - 1));
+		List<IFD> selected = new ArrayList<IFD>(pages.cardinality());
+		for(int i = pages.nextSetBit(0); i >= 0; i = pages.nextSetBit(i + 1))
+			selected.add(ifds.get(i));
+		return selected;
+	}
+	
+	private static BitSet getPageSet(int pageNumber) {
+		if(pageNumber < 0)
+			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds");
+		BitSet pages = new BitSet(pageNumber + 1);
+		pages.set(pageNumber);
+		return pages;
+	}
+	
 	// Used to calculate how many bytes to read in case we have only one strip or tile
 	private static int[] getBytes2Read(IFD ifd) {
 		// Let's calculate how many bytes we are supposed to read
@@ -637,6 +730,37 @@ public class TIFFMeta {
 		return totalBytes2Read;
 	}
 	
+	/**
+	 * Insert EXIF data into the TIFF file
+	 * <p>
+	 * The file is updated in place: the modified IFD is appended to the end of
+	 * the file and linked in place of the original one. Image data is not copied.
+	 * BigTIFF files are rejected since EXIF sub-IFDs can't be written with the
+	 * 8 byte offsets of BigTIFF yet, use one of the other in-place methods or
+	 * convert the file to TIFF first.
+	 * 
+	 * @param file TIFF file to update
+	 * @param exif EXIF wrapper instance
+	 * @param pageNumber page offset where to insert EXIF (zero based)
+	 * @param update True to keep the original data, otherwise false
+	 * @throws IOException if the file is a BigTIFF or can't be read or written
+	 */
+	public static void insertExif(File file, Exif exif, int pageNumber, boolean update) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		RandomAccessInputStream rin = null;
+		try {
+			rin = new MappedRandomAccessInputStream(raf.getChannel(), 0);
+			if(BigTIFF.isBigTIFF(rin)) // Sub-IFDs can't be written to BigTIFF yet
+				throw new IOException("Can't insert EXIF into BigTIFF file " + file + ", EXIF sub-IFDs can't be written to BigTIFF");
+			InPlacePage page = readPage(rin, pageNumber);
+			updateExif(page.getIFD(), exif, update);
+			page.append(raf);
+		} finally {
+			if(rin != null) rin.close(); // Releases the mapping
+			raf.close();
+		}
+	}
+	
 	public static void insertExif(RandomAccessInputStream rin, RandomAccessOutputStream rout, Exif exif, boolean update) throws IOException {
 		insertExif(rin, rout, exif, 0, update);
 	}
@@ -655,41 +779,12 @@ public class TIFFMeta {
 		int offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
+		readIFDs(null, null, TIFF_TAG_RESOLVER, ifds, offset, rin);
 		
 		if(pageNumber < 0 || pageNumber >= ifds.size())
 			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
 		
-		IFD imageIFD = ifds.get(pageNumber);
-		IFD exifSubIFD = imageIFD.getChild(TiffTag.EXIF_SUB_IFD);
-		IFD gpsSubIFD = imageIFD.getChild(TiffTag.GPS_SUB_IFD);
-		IFD newImageIFD = exif.getImageIFD();
-		IFD newExifSubIFD = exif.getExifIFD();
-		IFD newGpsSubIFD = exif.getGPSIFD();
-		
-		if(newImageIFD != null) { // Copy the Image IFD fields - this is dangerous.
-			imageIFD.addFields(newImageIFD.getFields());
-		}
-		
-		if(update && exifSubIFD != null && newExifSubIFD != null) {
-			exifSubIFD.addFields(newExifSubIFD.getFields());
-			newExifSubIFD = exifSubIFD;
-		}
-		
-		if(newExifSubIFD != null) {
-			imageIFD.addField(new LongField(TiffTag.EXIF_SUB_IFD.getValue(), new int[]{0})); // Place holder
-			imageIFD.addChild(TiffTag.EXIF_SUB_IFD, newExifSubIFD);		
-		}
-		
-		if(update && gpsSubIFD != null && newGpsSubIFD != null) {
-			gpsSubIFD.addFields(newGpsSubIFD.getFields());
-			newGpsSubIFD = gpsSubIFD;
-		}
-		
-		if(newGpsSubIFD != null) {
-			imageIFD.addField(new LongField(TiffTag.GPS_SUB_IFD.getValue(), new int[]{0})); // Place holder
-			imageIFD.addChild(TiffTag.GPS_SUB_IFD, newGpsSubIFD);		
-		}
+		updateExif(ifds.get(pageNumber), exif, update);
 		
 		int writeOffset = FIRST_WRITE_OFFSET;
 		// Copy pages
@@ -699,6 +794,31 @@ public class TIFFMeta {
 		writeToStream(rout, firstIFDOffset);
 	}
 	
+	/**
+	 * Insert ICC_Profile into the TIFF file
+	 * <p>
+	 * The file is updated in place: the modified IFD is appended to the end of
+	 * the file and linked in place of the original one. Image data is not copied.
+	 * 
+	 * @param file TIFF file to update
+	 * @param icc_profile byte array holding the ICC_Profile
+	 * @param pageNumber page offset where to insert ICC_Profile
+	 * @throws IOException
+	 */
+	public static void insertICCProfile(File file, byte[] icc_profile, int pageNumber) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		RandomAccessInputStream rin = null;
+		try {
+			rin = new MappedRandomAccessInputStream(raf.getChannel(), 0);
+			InPlacePage page = readPage(rin, pageNumber);
+			page.getIFD().addField(new UndefinedField(TiffTag.ICC_PROFILE.getValue(), icc_profile));
+			page.append(raf);
+		} finally {
+			if(rin != null) rin.close(); // Releases the mapping
+			raf.close();
+		}
+	}
+	
 	/**
 	 * Insert ICC_Profile into TIFF page
 	 * 
@@ -709,16 +829,28 @@ public class TIFFMeta {
 	 * @throws Exception
 	 */
 	public static void insertICCProfile(byte[] icc_profile, int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+		insertICCProfile(icc_profile, getPageSet(pageNumber), rin, rout);
+	}
+	
+	/**
+	 * Inserts the same ICC profile into several pages in one pass. The profile
+	 * is written to the output only once and shared by all the pages.
+	 * 
+	 * @param icc_profile ICC profile data
+	 * @param pages pages to insert the ICC profile into, null for all the pages
+	 * @param rin RandomAccessInputStream for the input TIFF
+	 * @param rout RandomAccessOutputStream for the output TIFF
+	 * @throws IOException
+	 */
+	public static void insertICCProfile(byte[] icc_profile, BitSet pages, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
 		int offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
+		readIFDs(null, null, TIFF_TAG_RESOLVER, ifds, offset, rin);
 		
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
-		
-		IFD workingPage = ifds.get(pageNumber);
-		workingPage.addField(new UndefinedField(TiffTag.ICC_PROFILE.getValue(), icc_profile));
+		TiffField<?> f_iccProfile = new SharedUndefinedField(TiffTag.ICC_PROFILE.getValue(), icc_profile);
+		for(IFD workingPage : getPages(ifds, pages))
+			workingPage.addField(f_iccProfile);
 		
 		offset = copyPages(ifds, offset, rin, rout);
 		int firstIFDOffset = ifds.get(0).getStartOffset();	
@@ -743,6 +875,32 @@ public class TIFFMeta {
 		insertICCProfile(icc_profile.getData(), pageNumber, rin, rout);
 	}
 	
+	/**
+	 * Insert IPTC data into the TIFF file
+	 * <p>
+	 * The file is updated in place: the modified IFD is appended to the end of
+	 * the file and linked in place of the original one. Image data is not copied.
+	 * 
+	 * @param file TIFF file to update
+	 * @param pageNumber page offset where to insert IPTC
+	 * @param iptcs A list of IPTCDataSet to insert into the TIFF image
+	 * @param update whether we want to keep the original image or create a completely new IPTC data set
+	 * @throws IOException
+	 */
+	public static void insertIPTC(File file, int pageNumber, List<IPTCDataSet> iptcs, boolean update) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		RandomAccessInputStream rin = null;
+		try {
+			rin = new MappedRandomAccessInputStream(raf.getChannel(), 0);
+			InPlacePage page = readPage(rin, pageNumber);
+			updateIPTC(page.getIFD(), iptcs, update, rin.getEndian());
+			page.append(raf);
+		} finally {
+			if(rin != null) rin.close(); // Releases the mapping
+			raf.close();
+		}
+	}
+	
 	public static void insertIPTC(RandomAccessInputStream rin, RandomAccessOutputStream rout, List<IPTCDataSet> iptcs, boolean update) throws IOException {
 		insertIPTC(rin, rout, 0, iptcs, update);
 	}
@@ -769,67 +927,28 @@ public class TIFFMeta {
 	 * @throws IOException
 	 */
 	public static void insertIPTC(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, List<IPTCDataSet> iptcs, boolean update) throws IOException {
+		insertIPTC(rin, rout, getPageSet(pageNumber), iptcs, update);
+	}
+	
+	/**
+	 * Inserts IPTC into several pages in one pass
+	 * 
+	 * @param rin RandomAccessInputStream for the input TIFF
+	 * @param rout RandomAccessOutputStream for the output TIFF
+	 * @param pages pages to insert IPTC into, null for all the pages
+	 * @param iptcs IPTC data sets to insert
+	 * @param update True to keep the original data, otherwise false
+	 * @throws IOException
+	 */
+	public static void insertIPTC(RandomAccessInputStream rin, RandomAccessOutputStream rout, BitSet pages, List<IPTCDataSet> iptcs, boolean update) throws IOException {
 		int offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
-		
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
+		readIFDs(null, null, TIFF_TAG_RESOLVER, ifds, offset, rin);
 		
-		IFD workingPage = ifds.get(pageNumber);
-	
-		ByteArrayOutputStream bout = new ByteArrayOutputStream();
-		
-		// See if we also have regular IPTC tag field
-		TiffField<?> f_iptc = workingPage.removeField(TiffTag.IPTC);		
-		TiffField<?> f_photoshop = workingPage.getField(TiffTag.PHOTOSHOP);
-		if(f_photoshop != null) { // Read 8BIMs
-			IRB irb = new IRB((byte[])f_photoshop.getData());
-			// Shallow copy the map.
-			Map<Short, _8BIM> bims = new HashMap<Short, _8BIM>(irb.get8BIM());
-			_8BIM photoshop_iptc = bims.remove(ImageResourceID.IPTC_NAA.getValue());
-			if(photoshop_iptc != null) { // If we have IPTC
-				if(update) { // If we need to keep the old data, copy it
-					if(f_iptc != null) {// We are going to synchronize the two IPTC data
-						byte[] data = null;
-						if(f_iptc.getType() == FieldType.LONG)
-							data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), rin.getEndian() == IOUtils.BIG_ENDIAN);
-						else
-							data = (byte[])f_iptc.getData();
-						copyIPTCDataSet(iptcs, data);
-					}
-					// Now copy the Photoshop IPTC data
-					copyIPTCDataSet(iptcs, photoshop_iptc.getData());
-					// Remove duplicates
-					iptcs = new ArrayList<IPTCDataSet>(new HashSet<IPTCDataSet>(iptcs));
-				}
-			}
-			// Create IPTC 8BIM
-			for(IPTCDataSet dataset : iptcs) {
-				dataset.write(bout);
-			}
-			_8BIM iptc_bim = new _8BIM(ImageResourceID.IPTC_NAA, "iptc", bout.toByteArray());
-			bout.reset();
-			iptc_bim.write(bout); // Write the IPTC 8BIM first
-			for(_8BIM bim : bims.values()) // Copy the other 8BIMs if any
-				bim.write(bout);
-			// Add a new Photoshop tag field to TIFF
-			workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
-		} else { // We don't have photoshop, add IPTC to regular IPTC tag field
-			if(f_iptc != null && update) {
-				byte[] data = null;
-				if(f_iptc.getType() == FieldType.LONG)
-					data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), rin.getEndian() == IOUtils.BIG_ENDIAN);
-				else
-					data = (byte[])f_iptc.getData();
-				copyIPTCDataSet(iptcs, data);
-			}
-			for(IPTCDataSet dataset : iptcs) {
-				dataset.write(bout);
-			}		
-			workingPage.addField(new UndefinedField(TiffTag.IPTC.getValue(), bout.toByteArray()));
-		}		
+		// Each page is merged with its own IPTC, updateIPTC() may change the list
+		for(IFD workingPage : getPages(ifds, pages))
+			updateIPTC(workingPage, new ArrayList<IPTCDataSet>(iptcs), update, rin.getEndian());
 		
 		offset = copyPages(ifds, offset, rin, rout);
 		int firstIFDOffset = ifds.get(0).getStartOffset();	
@@ -837,39 +956,59 @@ public class TIFFMeta {
 		writeToStream(rout, firstIFDOffset);	
 	}
 	
+	/**
+	 * Insert Photoshop IRB into the TIFF file
+	 * <p>
+	 * The file is updated in place: the modified IFD is appended to the end of
+	 * the file and linked in place of the original one. Image data is not copied.
+	 * 
+	 * @param file TIFF file to update
+	 * @param pageNumber page offset where to insert IRB
+	 * @param bims A list of 8BIMs to insert
+	 * @param update True to keep the original 8BIMs not replaced, otherwise false
+	 * @throws IOException
+	 */
+	public static void insertIRB(File file, int pageNumber, List<_8BIM> bims, boolean update) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		RandomAccessInputStream rin = null;
+		try {
+			rin = new MappedRandomAccessInputStream(raf.getChannel(), 0);
+			InPlacePage page = readPage(rin, pageNumber);
+			updateIRB(page.getIFD(), bims, update);
+			page.append(raf);
+		} finally {
+			if(rin != null) rin.close(); // Releases the mapping
+			raf.close();
+		}
+	}
+	
 	public static void insertIRB(RandomAccessInputStream rin, RandomAccessOutputStream rout, List<_8BIM> bims, boolean update) throws IOException {
 		insertIRB(rin, rout, 0, bims, update);
 	}
 	
 	public static void insertIRB(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, List<_8BIM> bims, boolean update) throws IOException {
+		insertIRB(rin, rout, getPageSet(pageNumber), bims, update);
+	}
+	
+	/**
+	 * Inserts Photoshop IRB into several pages in one pass
+	 * 
+	 * @param rin RandomAccessInputStream for the input TIFF
+	 * @param rout RandomAccessOutputStream for the output TIFF
+	 * @param pages pages to insert the IRB into, null for all the pages
+	 * @param bims 8BIMs to insert
+	 * @param update True to keep the original data, otherwise false
+	 * @throws IOException
+	 */
+	public static void insertIRB(RandomAccessInputStream rin, RandomAccessOutputStream rout, BitSet pages, List<_8BIM> bims, boolean update) throws IOException {
 		int offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
-	
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
+		readIFDs(null, null, TIFF_TAG_RESOLVER, ifds, offset, rin);
 		
-		IFD workingPage = ifds.get(pageNumber);
-		
-		ByteArrayOutputStream bout = new ByteArrayOutputStream();
-		
-		if(update) {
-			TiffField<?> f_irb = workingPage.getField(TiffTag.PHOTOSHOP);
-			if(f_irb != null) {
-				IRB irb = new IRB((byte[])f_irb.getData());
-				// Shallow copy the map
-				Map<Short, _8BIM> bimMap = new HashMap<Short, _8BIM>(irb.get8BIM());
-				for(_8BIM bim : bims)
-					bimMap.remove(bim.getID());
-				bims.addAll(bimMap.values());
-			}
-		}
-		
-		for(_8BIM bim : bims)
-			bim.write(bout);
-		
-		workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
+		// Each page is merged with its own IRB, updateIRB() may change the list
+		for(IFD workingPage : getPages(ifds, pages))
+			updateIRB(workingPage, new ArrayList<_8BIM>(bims), update);
 		
 		offset = copyPages(ifds, offset, rin, rout);
 		int firstIFDOffset = ifds.get(0).getStartOffset();	
@@ -891,6 +1030,31 @@ public class TIFFMeta {
 		insertIRB(rin, rout, Arrays.asList(MetadataUtils.createThumbnail8BIM(thumbnail)), true);
 	}
 	
+	/**
+	 * Insert XMP data into the TIFF file
+	 * <p>
+	 * The file is updated in place: the modified IFD is appended to the end of
+	 * the file and linked in place of the original one. Image data is not copied.
+	 * 
+	 * @param file TIFF file to update
+	 * @param xmp byte array for the XMP data to be inserted
+	 * @param pageNumber page offset where to insert XMP
+	 * @throws IOException
+	 */
+	public static void insertXMP(File file, byte[] xmp, int pageNumber) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		RandomAccessInputStream rin = null;
+		try {
+			rin = new MappedRandomAccessInputStream(raf.getChannel(), 0);
+			InPlacePage page = readPage(rin, pageNumber);
+			page.getIFD().addField(new UndefinedField(TiffTag.XMP.getValue(), xmp));
+			page.append(raf);
+		} finally {
+			if(rin != null) rin.close(); // Releases the mapping
+			raf.close();
+		}
+	}
+	
 	public static void insertXMP(byte[] xmp, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
 		insertXMP(xmp, 0, rin, rout);
 	}
@@ -904,16 +1068,28 @@ public class TIFFMeta {
 	 * @throws IOException
 	 */
 	public static void insertXMP(byte[] xmp, int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+		insertXMP(xmp, getPageSet(pageNumber), rin, rout);
+	}
+	
+	/**
+	 * Inserts the same XMP into several pages in one pass. The XMP is written
+	 * to the output only once and shared by all the pages.
+	 * 
+	 * @param xmp XMP data
+	 * @param pages pages to insert the XMP into, null for all the pages
+	 * @param rin RandomAccessInputStream for the input TIFF
+	 * @param rout RandomAccessOutputStream for the output TIFF
+	 * @throws IOException
+	 */
+	public static void insertXMP(byte[] xmp, BitSet pages, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
 		int offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
+		readIFDs(null, null, TIFF_TAG_RESOLVER, ifds, offset, rin);
 		
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
-		
-		IFD workingPage = ifds.get(pageNumber);
-		workingPage.addField(new UndefinedField(TiffTag.XMP.getValue(), xmp));
+		TiffField<?> f_xmp = new SharedUndefinedField(TiffTag.XMP.getValue(), xmp);
+		for(IFD workingPage : getPages(ifds, pages))
+			workingPage.addField(f_xmp);
 		
 		offset = copyPages(ifds, offset, rin, rout);
 		int firstIFDOffset = ifds.get(0).getStartOffset();	
@@ -934,21 +1110,16 @@ public class TIFFMeta {
 		System.out.print(indent);
 		for(IFD currIFD : list) {
 			System.out.println("IFD #" + id);
-			printIFD(currIFD, TiffTag.class, indent);
+			printIFD(currIFD, TIFF_TAG_RESOLVER, indent);
 			id++;
 		}
 	}
 	
 	public static void printIFD(IFD currIFD, Class<? extends Tag> tagClass, String indent) {
-		// Use reflection to invoke fromShort(short) method
-		Method method = null;
-		try {
-			method = tagClass.getDeclaredMethod("fromShort", short.class);
-		} catch (NoSuchMethodException e) {
-			e.printStackTrace();
-		} catch (SecurityException e) {
-			e.printStackTrace();
-		}
+		printIFD(currIFD, getTagResolver(tagClass), indent);
+	}
+	
+	public static void printIFD(IFD currIFD, TagResolver tagResolver, String indent) {
 		Collection<TiffField<?>> fields = currIFD.getFields();
 		int i = 0;
 		for(TiffField<?> field : fields) {
@@ -956,16 +1127,7 @@ public class TIFFMeta {
 			System.out.println("Field #" + i);
 			System.out.print(indent);
 			short tag = field.getTag();
-			Tag ftag = TiffTag.UNKNOWN;
-			try {
-				ftag = (Tag)method.invoke(null, tag);
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
-			} catch (IllegalArgumentException e) {
-				e.printStackTrace();
-			} catch (InvocationTargetException e) {
-				e.printStackTrace();
-			}
+			Tag ftag = tagResolver.resolve(tag);
 			if (ftag == TiffTag.UNKNOWN) {
 				System.out.println("Tag: " + ftag + " [Value: 0x"+ Integer.toHexString(tag&0xffff) + "]" + " (Unknown)");
 			} else {
@@ -995,7 +1157,7 @@ public class TIFFMeta {
 		if(children.get(TiffTag.EXIF_SUB_IFD) != null) {
 			System.out.print(indent + "--------- ");
 			System.out.println("<<Exif SubIFD starts>>");
-			printIFD(children.get(TiffTag.EXIF_SUB_IFD), ExifTag.class, indent + "--------- ");
+			printIFD(children.get(TiffTag.EXIF_SUB_IFD), ExifTag.getTagResolver(), indent + "--------- ");
 			System.out.print(indent + "--------- ");
 			System.out.println("<<Exif SubIFD ends>>");
 		}
@@ -1003,13 +1165,13 @@ public class TIFFMeta {
 		if(children.get(TiffTag.GPS_SUB_IFD) != null) {
 			System.out.print(indent + "--------- ");
 			System.out.println("<<GPS SubIFD starts>>");
-			printIFD(children.get(TiffTag.GPS_SUB_IFD), GPSTag.class, indent + "--------- ");
+			printIFD(children.get(TiffTag.GPS_SUB_IFD), GPSTag.getTagResolver(), indent + "--------- ");
 			System.out.print(indent + "--------- ");
 			System.out.println("<<GPS SubIFD ends>>");
 		}		
 	}
 	
-	private static int readHeader(RandomAccessInputStream rin) throws IOException {
+	static int readHeader(RandomAccessInputStream rin) throws IOException {
 		int offset = 0;
 	    // First 2 bytes determine the byte order of the file
 		rin.seek(STREAM_HEAD);
@@ -1018,12 +1180,12 @@ public class TIFFMeta {
 	
 		if (endian == IOUtils.BIG_ENDIAN)
 		{
-		    System.out.println("Byte order: Motorola BIG_ENDIAN");
+		    Diagnostics.print("Byte order: Motorola BIG_ENDIAN");
 		    rin.setReadStrategy(ReadStrategyMM.getInstance());
 		}
 		else if(endian == IOUtils.LITTLE_ENDIAN)
 		{
-		    System.out.println("Byte order: Intel LITTLE_ENDIAN");
+		    Diagnostics.print("Byte order: Intel LITTLE_ENDIAN");
 		    rin.setReadStrategy(ReadStrategyII.getInstance());
 		}
 		else {		
@@ -1047,60 +1209,59 @@ public class TIFFMeta {
 		return offset;
 	}
 	
-	private static int readIFD(IFD parent, Tag parentTag, Class<? extends Tag> tagClass, RandomAccessInputStream rin, List<IFD> list, int offset, String indent) throws IOException 
+	private static int readIFD(IFD parent, Tag parentTag, TagResolver tagResolver, RandomAccessInputStream rin, List<IFD> list, int offset, String indent, Set<Tag> skippedTags, boolean lazy) throws IOException 
 	{	
-		// Use reflection to invoke fromShort(short) method
-		Method method = null;
-		try {
-			method = tagClass.getDeclaredMethod("fromShort", short.class);
-		} catch (NoSuchMethodException e) {
-			e.printStackTrace();
-		} catch (SecurityException e) {
-			e.printStackTrace();
-		}
 		String indent2 = indent + "----- "; // Increment indentation
 		IFD tiffIFD = new IFD();
 		rin.seek(offset);
 		int no_of_fields = rin.readShort();
-		System.out.print(indent);
-		System.out.println("Total number of fields: " + no_of_fields);
+		if(Diagnostics.isEnabled())
+			Diagnostics.print(indent + "Total number of fields: " + no_of_fields);
 		offset += 2;
 		
 		for (int i = 0; i < no_of_fields; i++)
 		{
-			System.out.print(indent);
-			System.out.println("Field "+i+" =>");
+			if(Diagnostics.isEnabled())
+				Diagnostics.print(indent + "Field "+i+" =>");
 			rin.seek(offset);
 			short tag = rin.readShort();
-			Tag ftag = TiffTag.UNKNOWN;
-			try {
-				ftag = (Tag)method.invoke(null, tag);
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
-			} catch (IllegalArgumentException e) {
-				e.printStackTrace();
-			} catch (InvocationTargetException e) {
-				e.printStackTrace();
+			Tag ftag = tagResolver.resolve(tag);
+			if(skippedTags != null && skippedTags.contains(ftag)) { // Not interested, skip the whole field
+				if(Diagnostics.isEnabled())
+					Diagnostics.print(indent + "Tag: " + ftag + " (Skipped)");
+				offset += 12;
+				continue;
 			}
-			System.out.print(indent);
-			if (ftag == TiffTag.UNKNOWN) {
-				System.out.println("Tag: " + ftag + " [Value: 0x"+ Integer.toHexString(tag&0xffff) + "]" + " (Unknown)");
-			} else {
-				System.out.println("Tag: " + ftag);
+			if(Diagnostics.isEnabled()) {
+				if (ftag == TiffTag.UNKNOWN) {
+					Diagnostics.print(indent + "Tag: " + ftag + " [Value: 0x"+ Integer.toHexString(tag&0xffff) + "]" + " (Unknown)");
+				} else {
+					Diagnostics.print(indent + "Tag: " + ftag);
+				}
 			}
 			offset += 2;
 			rin.seek(offset);
 			short type = rin.readShort();
 			FieldType ftype = FieldType.fromShort(type);
-			System.out.print(indent);
-			System.out.println("Data type: " + ftype);
+			if(Diagnostics.isEnabled())
+				Diagnostics.print(indent + "Data type: " + ftype);
 			offset += 2;
 			rin.seek(offset);
 			int field_length = rin.readInt();
-			System.out.print(indent);
-			System.out.println("Field length: " + field_length);
+			if(Diagnostics.isEnabled())
+				Diagnostics.print(indent + "Field length: " + field_length);
 			offset += 4;
 			String suffix = null;
+			// Large values are left in the input until they are used
+			if(lazy && isLazyField(ftag, ftype, field_length)) {
+				rin.seek(offset);
+				LazyTiffField<Object> lazyField = new LazyTiffField<Object>(tag, ftype, field_length, rin.readInt()&0xffffffffL, rin);
+				tiffIFD.addField(lazyField);
+				if(Diagnostics.isEnabled()) // The value is read for the dump only, the field stays lazy
+					printField(lazyField.peek(), ftag, indent, rin.getEndian() == IOUtils.BIG_ENDIAN);
+				offset += 4;
+				continue;
+			}
 			////// Try to read actual data.
 			switch (ftype)
 			{
@@ -1120,18 +1281,8 @@ public class TIFFMeta {
 					else
 						byteField = new UndefinedField(tag, data);
 					tiffIFD.addField(byteField);
-					System.out.print(indent);
-					if(ftag == TiffTag.ICC_PROFILE) {
-						showICCProfile(data);
-					} else if(ftag == TiffTag.PHOTOSHOP) {
-						showPhtoshop(data);
-					} else if(ftag == TiffTag.XMP) {						
-						XMLUtils.showXML(XMLUtils.createXML(data));
-					} else if(ftag == TiffTag.IPTC) {
-						showIPTC(data);
-					}
-					suffix = ftag.getFieldAsString(data);
-					System.out.println("Field value: " + byteField.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+					if(Diagnostics.isEnabled())
+						printField(byteField, ftag, indent, rin.getEndian() == IOUtils.BIG_ENDIAN);
 					offset += 4;					
 					break;
 				case ASCII:
@@ -1148,8 +1299,8 @@ public class TIFFMeta {
 					TiffField<String> ascIIField = new ASCIIField(tag, new String(data, 0, data.length, "UTF-8"));
 					tiffIFD.addField(ascIIField);
 					if(data.length>0) {
-						System.out.print(indent);
-						System.out.println("Field value: " + ascIIField.getDataAsString());
+						if(Diagnostics.isEnabled())
+							Diagnostics.print(indent + "Field value: " + ascIIField.getDataAsString());
 					}
 					offset += 4;	
 					break;
@@ -1181,9 +1332,8 @@ public class TIFFMeta {
 					}
 					TiffField<short[]> shortField = new ShortField(tag, sdata);
 					tiffIFD.addField(shortField);
-					System.out.print(indent);
-					suffix = ftag.getFieldAsString(shortField.getDataAsLong());
-					System.out.println("Field value: " + shortField.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+					if(Diagnostics.isEnabled())
+						printField(shortField, ftag, indent, rin.getEndian() == IOUtils.BIG_ENDIAN);
 					break;
 				case LONG:
 					int[] ldata = new int[field_length];
@@ -1205,50 +1355,48 @@ public class TIFFMeta {
 					TiffField<int[]> longField = new LongField(tag, ldata);
 					tiffIFD.addField(longField);
 					
-					System.out.print(indent);
-					suffix = ftag.getFieldAsString(ldata);
-					System.out.println("Field value: " + longField.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+					if(Diagnostics.isEnabled())
+						printField(longField, ftag, indent, rin.getEndian() == IOUtils.BIG_ENDIAN);
 					
 					if ((ftag == TiffTag.EXIF_SUB_IFD) && (ldata[0]!= 0)) {
-						System.out.print(indent);
-						System.out.println("<<ExifSubIFD: offset byte " + offset + ">>");
+						if(Diagnostics.isEnabled())
+							Diagnostics.print(indent + "<<ExifSubIFD: offset byte " + offset + ">>");
 						try { // If something bad happens, we skip the sub IFD
-							readIFD(tiffIFD, TiffTag.EXIF_SUB_IFD, ExifTag.class, rin, null, ldata[0], indent2);
+							readIFD(tiffIFD, TiffTag.EXIF_SUB_IFD, ExifTag.getTagResolver(), rin, null, ldata[0], indent2, skippedTags, lazy);
 						} catch(Exception e) {
 							tiffIFD.removeField(TiffTag.EXIF_SUB_IFD);
 							e.printStackTrace();
 						}
 					} else if ((ftag == TiffTag.GPS_SUB_IFD) && (ldata[0] != 0)) {
-						System.out.print(indent);
-						System.out.println("<<GPSSubIFD: offset byte " + offset + ">>");
+						if(Diagnostics.isEnabled())
+							Diagnostics.print(indent + "<<GPSSubIFD: offset byte " + offset + ">>");
 						try {
-							readIFD(tiffIFD, TiffTag.GPS_SUB_IFD, GPSTag.class, rin, null, ldata[0], indent2);
+							readIFD(tiffIFD, TiffTag.GPS_SUB_IFD, GPSTag.getTagResolver(), rin, null, ldata[0], indent2, skippedTags, lazy);
 						} catch(Exception e) {
 							tiffIFD.removeField(TiffTag.GPS_SUB_IFD);
 							e.printStackTrace();
 						}
 					} else if((ftag == ExifTag.EXIF_INTEROPERABILITY_OFFSET) && (ldata[0] != 0)) {
-						System.out.print(indent);
-						System.out.println("<<ExifInteropSubIFD: offset byte " + offset + ">>");
+						if(Diagnostics.isEnabled())
+							Diagnostics.print(indent + "<<ExifInteropSubIFD: offset byte " + offset + ">>");
 						try {
-							readIFD(tiffIFD, ExifTag.EXIF_INTEROPERABILITY_OFFSET, InteropTag.class, rin, null, ldata[0], indent2);
+							readIFD(tiffIFD, ExifTag.EXIF_INTEROPERABILITY_OFFSET, InteropTag.getTagResolver(), rin, null, ldata[0], indent2, skippedTags, lazy);
 						} catch(Exception e) {
 							tiffIFD.removeField(ExifTag.EXIF_INTEROPERABILITY_OFFSET);
 							e.printStackTrace();
 						}
-					} else if (ftag == TiffTag.IPTC) {
-						showIPTC(ArrayUtils.toByteArray(ldata, rin.getEndian() == IOUtils.BIG_ENDIAN));						
 					} else if (ftag == TiffTag.SUB_IFDS) {						
 						for(int ifd = 0; ifd < ldata.length; ifd++) {
-							System.out.print(indent);
-							System.out.println("******* SubIFD " + ifd + " *******");
+							if(Diagnostics.isEnabled())
+								Diagnostics.print(indent + "******* SubIFD " + ifd + " *******");
 							try {
-								readIFD(tiffIFD, TiffTag.SUB_IFDS, TiffTag.class, rin, null, ldata[0], indent2);
+								readIFD(tiffIFD, TiffTag.SUB_IFDS, TIFF_TAG_RESOLVER, rin, null, ldata[0], indent2, skippedTags, lazy);
 							} catch(Exception e) {
 								tiffIFD.removeField(TiffTag.SUB_IFDS);
 								e.printStackTrace();
 							}
-							System.out.println("******* End of SubIFD " + ifd + " *******");
+							if(Diagnostics.isEnabled())
+								Diagnostics.print("******* End of SubIFD " + ifd + " *******");
 						}
 					}				
 					break;
@@ -1272,8 +1420,8 @@ public class TIFFMeta {
 					TiffField<float[]> floatField = new FloatField(tag, fdata);
 					tiffIFD.addField(floatField);
 					
-					System.out.print(indent);
-					System.out.println("Field value: " + floatField.getDataAsString());
+					if(Diagnostics.isEnabled())
+						Diagnostics.print(indent + "Field value: " + floatField.getDataAsString());
 						
 					break;
 				case DOUBLE:
@@ -1289,8 +1437,8 @@ public class TIFFMeta {
 					TiffField<double[]> doubleField = new DoubleField(tag, ddata);
 					tiffIFD.addField(doubleField);
 					
-					System.out.print(indent);
-					System.out.println("Field value: " + doubleField.getDataAsString());
+					if(Diagnostics.isEnabled())
+						Diagnostics.print(indent + "Field value: " + doubleField.getDataAsString());
 						
 					break;
 				case RATIONAL:
@@ -1314,9 +1462,10 @@ public class TIFFMeta {
 					} else {
 						rationalField = new RationalField(tag, ldata);
 					}
-					System.out.print(indent);
-					suffix = ftag.getFieldAsString(ldata);
-					System.out.println("Field value: " + rationalField.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+					if(Diagnostics.isEnabled()) {
+						suffix = ftag.getFieldAsString(ldata);
+						Diagnostics.print(indent + "Field value: " + rationalField.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+					}
 					tiffIFD.addField(rationalField);
 					
 					break;
@@ -1339,14 +1488,16 @@ public class TIFFMeta {
 					}
 					TiffField<int[]> ifdField = new IFDField(tag, ldata);
 					tiffIFD.addField(ifdField);
-					System.out.print(indent);
-					suffix = ftag.getFieldAsString(ldata);
-					System.out.println("Field value: " + ifdField.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+					if(Diagnostics.isEnabled()) {
+						suffix = ftag.getFieldAsString(ldata);
+						Diagnostics.print(indent + "Field value: " + ifdField.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+					}
 					for(int ifd = 0; ifd < ldata.length; ifd++) {
-						System.out.print(indent);
-						System.out.println("******* SubIFD " + ifd + " *******");
-						readIFD(tiffIFD, TiffTag.SUB_IFDS, TiffTag.class, rin, null, ldata[0], indent2);
-						System.out.println("******* End of SubIFD " + ifd + " *******");
+						if(Diagnostics.isEnabled())
+							Diagnostics.print(indent + "******* SubIFD " + ifd + " *******");
+						readIFD(tiffIFD, TiffTag.SUB_IFDS, TIFF_TAG_RESOLVER, rin, null, ldata[0], indent2, skippedTags, lazy);
+						if(Diagnostics.isEnabled())
+							Diagnostics.print("******* End of SubIFD " + ifd + " *******");
 					}
 								
 					break;
@@ -1365,20 +1516,71 @@ public class TIFFMeta {
 		return rin.readInt();
 	}
 	
-	private static void readIFDs(IFD parent, Tag parentTag, Class<? extends Tag> tagClass, List<IFD> list, int offset, RandomAccessInputStream rin) throws IOException {
+	// Reads the page of the TIFF or BigTIFF file for an in-place update, large values are left in rin until used
+	private static InPlacePage readPage(RandomAccessInputStream rin, final int pageNumber) throws IOException {
+		final TiffPageIndex pageIndex = new TiffPageIndex(rin);
+		if(pageIndex.isBigTIFF())
+			return BigTIFF.readPage(pageIndex, pageNumber, TIFF_TAG_RESOLVER, null);
+		final IFD workingPage = readPageIFD(pageIndex, pageNumber, null, true);
+		
+		return new InPlacePage() {
+			public IFD getIFD() {
+				return workingPage;
+			}
+			
+			public void append(RandomAccessFile raf) throws IOException {
+				appendIFD(raf, pageIndex, workingPage, pageNumber);
+			}
+		};
+	}
+	
+	/*
+	 * Reads the IFD of the page and its sub-IFDs, none of the other pages is read.
+	 * Large values of BigTIFF fields are always left in the input until used.
+	 */
+	private static IFD readPageIFD(TiffPageIndex pageIndex, int pageNumber, Set<Tag> skippedTags, boolean lazy) throws IOException {
+		if(pageIndex.isBigTIFF())
+			return BigTIFF.readPage(pageIndex, pageNumber, TIFF_TAG_RESOLVER, skippedTags).getIFD();
+		long offset = pageIndex.getPageOffset(pageNumber);
+		if(offset > Integer.MAX_VALUE)
+			throw new IOException("IFD offset " + offset + " is beyond 2GB");
+		if(Diagnostics.isEnabled()) {
+			Diagnostics.print("************************************************");
+			Diagnostics.print("IFD " + pageNumber + " => offset byte " + offset);
+		}
+		List<IFD> list = new ArrayList<IFD>(1);
+		readIFD(null, null, TIFF_TAG_RESOLVER, pageIndex.getInput(), list, (int)offset, "", skippedTags, lazy);
+		
+		return list.get(0);
+	}
+	
+	private static void readIFDs(IFD parent, Tag parentTag, TagResolver tagResolver, List<IFD> list, int offset, RandomAccessInputStream rin) throws IOException {
+		readIFDs(parent, parentTag, tagResolver, list, offset, rin, null, false);
+	}
+	
+	/*
+	 * Fields with tags from skippedTags are left out of the IFDs without reading their values
+	 * and sub-IFDs they point to. Null skippedTags reads all the fields.
+	 * 
+	 * If lazy is true, large values are read from rin only when they are used, see LazyTiffField.
+	 */
+	private static void readIFDs(IFD parent, Tag parentTag, TagResolver tagResolver, List<IFD> list, int offset, RandomAccessInputStream rin, Set<Tag> skippedTags, boolean lazy) throws IOException {
 		int ifd = 0;
 		// Read the IFDs into a list first	
 		while (offset != 0)
 		{
-			System.out.println("************************************************");
-			System.out.println("IFD " + ifd++ + " => offset byte " + offset);
-			offset = readIFD(parent, parentTag, tagClass, rin, list, offset, "");
+			if(Diagnostics.isEnabled()) {
+				Diagnostics.print("************************************************");
+				Diagnostics.print("IFD " + ifd + " => offset byte " + offset);
+			}
+			ifd++;
+			offset = readIFD(parent, parentTag, tagResolver, rin, list, offset, "", skippedTags, lazy);
 		}
 	}
 	
 	public static void readIFDs(List<IFD> list, RandomAccessInputStream rin) throws IOException {
 		int offset = readHeader(rin);
-		readIFDs(null, null, TiffTag.class, list, offset, rin);
+		readIFDs(null, null, TIFF_TAG_RESOLVER, list, offset, rin);
 	}
 	
 	public static Map<MetadataType, Metadata> readMetadata(RandomAccessInputStream rin) throws IOException {
@@ -1386,16 +1588,43 @@ public class TIFFMeta {
 	}
 	
 	public static Map<MetadataType, Metadata> readMetadata(RandomAccessInputStream rin, int pageNumber) throws IOException	{
+		return readMetadata(rin, pageNumber, EnumSet.allOf(MetadataType.class));
+	}
+	
+	public static Map<MetadataType, Metadata> readMetadata(RandomAccessInputStream rin, EnumSet<MetadataType> metadataTypes) throws IOException {
+		return readMetadata(rin, 0, metadataTypes);
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the specified page. Fields
+	 * holding other metadata are skipped without reading their values.
+	 * 
+	 * @param rin RandomAccessInputStream for the TIFF image
+	 * @param pageNumber page from which to read the metadata
+	 * @param metadataTypes types of metadata to read
+	 * @return a map of the requested Metadata found in the page
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(RandomAccessInputStream rin, int pageNumber, EnumSet<MetadataType> metadataTypes) throws IOException {
+		return readMetadata(new TiffPageIndex(rin), pageNumber, metadataTypes);
+	}
+	
+	/**
+	 * Reads the requested types of metadata from the specified page. Only the
+	 * IFD of the page is read, the index lets other pages of the same image be
+	 * read later without walking the IFD chain again.
+	 * 
+	 * @param pageIndex TiffPageIndex for the TIFF image
+	 * @param pageNumber page from which to read the metadata
+	 * @param metadataTypes types of metadata to read
+	 * @return a map of the requested Metadata found in the page
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(TiffPageIndex pageIndex, int pageNumber, EnumSet<MetadataType> metadataTypes) throws IOException {
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
-		System.out.println("*** TIFF snooping starts ***");
-		int offset = readHeader(rin);
-		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
-		
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
-		
-		IFD currIFD = ifds.get(pageNumber);
+		Diagnostics.print("*** TIFF snooping starts ***");
+		RandomAccessInputStream rin = pageIndex.getInput();
+		IFD currIFD = readPageIFD(pageIndex, pageNumber, getSkippedTags(metadataTypes), true);
 		TiffField<?> field = currIFD.getField(TiffTag.ICC_PROFILE); 
 		if(field != null) { // We have found ICC_Profile
 			metadataMap.put(MetadataType.ICC_PROFILE, new ICCProfile((byte[])field.getData()));
@@ -1424,14 +1653,193 @@ public class TIFFMeta {
 		}
 		field = currIFD.getField(TiffTag.EXIF_SUB_IFD);
 		if(field != null) { // We have found EXIF SubIFD
-			metadataMap.put(MetadataType.EXIF, new TiffExif(currIFD));
+			// TiffExif keeps the IFD after rin is closed, give it only what it needs loaded
+			metadataMap.put(MetadataType.EXIF, new TiffExif(copyExifIFD(currIFD)));
 		}
 		
-		System.out.println("*** TIFF snooping ends ***");
+		Diagnostics.print("*** TIFF snooping ends ***");
+		
+		// IRB may be read only to look for IPTC
+		metadataMap.keySet().retainAll(metadataTypes);
 		
 		return metadataMap;
 	}
 	
+	// Dumps the value of a BYTE, UNDEFINED, SHORT or LONG field along with the metadata embedded in it
+	private static void printField(TiffField<?> field, Tag ftag, String indent, boolean bigEndian) {
+		String suffix = null;
+		switch(field.getType()) {
+			case BYTE:
+			case UNDEFINED:
+				byte[] data = (byte[])field.getData();
+				if(ftag == TiffTag.ICC_PROFILE) {
+					showICCProfile(data);
+				} else if(ftag == TiffTag.PHOTOSHOP) {
+					showPhtoshop(data);
+				} else if(ftag == TiffTag.XMP) {						
+					Diagnostics.print(XMLUtils.serializeToString(XMLUtils.createXML(data)));
+				} else if(ftag == TiffTag.IPTC) {
+					showIPTC(data);
+				}
+				suffix = ftag.getFieldAsString(data);
+				Diagnostics.print(indent + "Field value: " + field.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+				break;
+			case SHORT:
+				suffix = ftag.getFieldAsString(field.getDataAsLong());
+				Diagnostics.print(indent + "Field value: " + field.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+				break;
+			case LONG:
+				int[] ldata = (int[])field.getData();
+				suffix = ftag.getFieldAsString(ldata);
+				Diagnostics.print(indent + "Field value: " + field.getDataAsString() + (StringUtils.isNullOrEmpty(suffix)?"":" => " + suffix));
+				if(ftag == TiffTag.IPTC)
+					showIPTC(ArrayUtils.toByteArray(ldata, bigEndian));
+				break;
+			default:
+		}
+	}
+	
+	// Tells if the value of the field can be left in the input until it is used
+	private static boolean isLazyField(Tag ftag, FieldType ftype, int field_length) {
+		// Fields pointing to sub-IFDs are always read
+		if(ftag == TiffTag.EXIF_SUB_IFD || ftag == TiffTag.GPS_SUB_IFD || ftag == TiffTag.SUB_IFDS
+				|| ftag == ExifTag.EXIF_INTEROPERABILITY_OFFSET)
+			return false;
+		long size = field_length&0xffffffffL;
+		switch(ftype) {
+			case BYTE:
+			case UNDEFINED:
+				break;
+			case SHORT:
+				size *= 2;
+				break;
+			case LONG:
+				size *= 4;
+				break;
+			default:
+				return false;
+		}
+		return size > LAZY_FIELD_THRESHOLD && size <= Integer.MAX_VALUE;
+	}
+	
+	/*
+	 * Copies the main IFD for TiffExif with the EXIF and GPS sub-IFDs loaded. Image
+	 * data offsets and byte counts as well as lazy fields never loaded, which are the
+	 * large ones such as ICC_Profile or XMP, are left out so they are not read.
+	 */
+	private static IFD copyExifIFD(IFD ifd) {
+		IFD copy = new IFD();
+		for(TiffField<?> field : ifd.getFields()) {
+			short tag = field.getTag();
+			if(tag == TiffTag.STRIP_OFFSETS.getValue() || tag == TiffTag.STRIP_BYTE_COUNTS.getValue()
+					|| tag == TiffTag.TILE_OFFSETS.getValue() || tag == TiffTag.TILE_BYTE_COUNTS.getValue())
+				continue;
+			if(field instanceof LazyTiffField && !((LazyTiffField<?>)field).isLoaded())
+				continue;
+			copy.addField(field);
+		}
+		IFD exifSubIFD = ifd.getChild(TiffTag.EXIF_SUB_IFD);
+		if(exifSubIFD != null) {
+			loadFields(exifSubIFD);
+			copy.addChild(TiffTag.EXIF_SUB_IFD, exifSubIFD);
+		}
+		IFD gpsSubIFD = ifd.getChild(TiffTag.GPS_SUB_IFD);
+		if(gpsSubIFD != null) {
+			loadFields(gpsSubIFD);
+			copy.addChild(TiffTag.GPS_SUB_IFD, gpsSubIFD);
+		}
+		return copy;
+	}
+	
+	// Marks the lazy fields of the IFD and its sub-IFDs to point to their values in the input
+	private static void keepValuesInPlace(IFD ifd) {
+		for(TiffField<?> field : ifd.getFields()) {
+			if(field instanceof LazyTiffField)
+				((LazyTiffField<?>)field).setInPlace(true);
+		}
+		for(IFD child : ifd.getChildren().values())
+			keepValuesInPlace(child);
+	}
+	
+	// Reads the values of the lazy fields of the IFD and its sub-IFDs
+	private static void loadFields(IFD ifd) {
+		for(TiffField<?> field : ifd.getFields()) {
+			if(field instanceof LazyTiffField)
+				((LazyTiffField<?>)field).load();
+		}
+		for(IFD child : ifd.getChildren().values())
+			loadFields(child);
+	}
+	
+	private static TagResolver getTagResolver(Class<? extends Tag> tagClass) {
+		if(tagClass == ExifTag.class)
+			return ExifTag.getTagResolver();
+		if(tagClass == GPSTag.class)
+			return GPSTag.getTagResolver();
+		if(tagClass == InteropTag.class)
+			return InteropTag.getTagResolver();
+		if(tagClass == TiffTag.class)
+			return TIFF_TAG_RESOLVER;
+		throw new IllegalArgumentException("No TagResolver for " + tagClass.getName());
+	}
+	
+	/**
+	 * Sets the executor used to copy the image data when a TIFF is rewritten.
+	 * The image data is copied concurrently only if the input is a
+	 * ByteBufferRandomAccessInputStream, e.g. MappedRandomAccessInputStream,
+	 * and the output is a FileRandomAccessOutputStream. Otherwise, or if the
+	 * executor is null, which is the default, it is copied sequentially.
+	 * 
+	 * @param executor Executor to run the copy tasks
+	 */
+	public static void setCopyExecutor(Executor executor) {
+		copyExecutor = executor;
+	}
+	
+	// Tags of the fields holding metadata not requested
+	private static Set<Tag> getSkippedTags(Set<MetadataType> metadataTypes) {
+		Set<Tag> skippedTags = new HashSet<Tag>();
+		if(!metadataTypes.contains(MetadataType.ICC_PROFILE))
+			skippedTags.add(TiffTag.ICC_PROFILE);
+		if(!metadataTypes.contains(MetadataType.XMP))
+			skippedTags.add(TiffTag.XMP);
+		if(!metadataTypes.contains(MetadataType.IPTC))
+			skippedTags.add(TiffTag.IPTC);
+		if(!metadataTypes.contains(MetadataType.PHOTOSHOP) && !metadataTypes.contains(MetadataType.IPTC))
+			skippedTags.add(TiffTag.PHOTOSHOP);
+		if(!metadataTypes.contains(MetadataType.EXIF)) {
+			skippedTags.add(TiffTag.EXIF_SUB_IFD);
+			skippedTags.add(TiffTag.GPS_SUB_IFD);
+		}
+		
+		return skippedTags;
+	}
+	
+	/**
+	 * Remove meta data from the TIFF file
+	 * <p>
+	 * The file is updated in place: the modified IFD is appended to the end of
+	 * the file and linked in place of the original one. Image data is not copied.
+	 * 
+	 * @param file TIFF file to update
+	 * @param metadataTypes types of metadata to remove
+	 * @param pageNumber working page from which to remove the metadata
+	 * @throws IOException
+	 */
+	public static void removeMetadata(File file, Set<MetadataType> metadataTypes, int pageNumber) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		RandomAccessInputStream rin = null;
+		try {
+			rin = new MappedRandomAccessInputStream(raf.getChannel(), 0);
+			InPlacePage page = readPage(rin, pageNumber);
+			removeMetadata(page.getIFD(), metadataTypes);
+			page.append(raf);
+		} finally {
+			if(rin != null) rin.close(); // Releases the mapping
+			raf.close();
+		}
+	}
+	
 	public static void removeMetadata(int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout, MetadataType ... metadataTypes) throws IOException {
 		removeMetadata(new HashSet<MetadataType>(Arrays.asList(metadataTypes)), pageNumber, rin, rout);
 	}
@@ -1449,16 +1857,39 @@ public class TIFFMeta {
 	 * @throws IOException
 	 */
 	public static void removeMetadata(Set<MetadataType> metadataTypes, int pageNumber, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+		removeMetadata(metadataTypes, getPageSet(pageNumber), rin, rout);
+	}
+	
+	/**
+	 * Removes the metadata from several pages in one pass
+	 * 
+	 * @param metadataTypes types of metadata to remove
+	 * @param pages pages to remove the metadata from, null for all the pages
+	 * @param rin RandomAccessInputStream for the input TIFF
+	 * @param rout RandomAccessOutputStream for the output TIFF
+	 * @throws IOException
+	 */
+	public static void removeMetadata(Set<MetadataType> metadataTypes, BitSet pages, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
 		int offset = copyHeader(rin, rout);
 		// Read the IFDs into a list first
 		List<IFD> ifds = new ArrayList<IFD>();
-		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
-	
-		if(pageNumber < 0 || pageNumber >= ifds.size())
-			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
+		readIFDs(null, null, TIFF_TAG_RESOLVER, ifds, offset, rin);
 		
-		IFD workingPage = ifds.get(pageNumber);
+		for(IFD workingPage : getPages(ifds, pages))
+			removeMetadata(workingPage, metadataTypes);
 		
+		offset = copyPages(ifds, offset, rin, rout);
+		int firstIFDOffset = ifds.get(0).getStartOffset();	
+
+		writeToStream(rout, firstIFDOffset);		
+	}
+	
+	public static void removeMetadata(Set<MetadataType> metadataTypes, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
+		removeMetadata(metadataTypes, 0, rin, rout);
+	}
+	
+	// Removes the metadata from the page
+	private static void removeMetadata(IFD workingPage, Set<MetadataType> metadataTypes) throws IOException {
 		TiffField<?> metadata = null;
 		
 		for(MetadataType metaType : metadataTypes) {
@@ -1506,15 +1937,6 @@ public class TIFFMeta {
 				default:
 			}
 		}
-		
-		offset = copyPages(ifds, offset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);		
-	}
-	
-	public static void removeMetadata(Set<MetadataType> metadataTypes, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
-		removeMetadata(metadataTypes, 0, rin, rout);
 	}
 	
 	private static void removeMetadataFromIRB(IFD workingPage, byte[] data, ImageResourceID ... ids) throws IOException {
@@ -1535,15 +1957,125 @@ public class TIFFMeta {
 	}
 		
 	private static void showICCProfile(byte[] icc_profile) {
-		ICCProfile.showProfile(icc_profile);
+		new ICCProfileReader(icc_profile).showMetadata(Diagnostics.getPrintStream());
 	}
 	
 	private static void showIPTC(byte[] iptc) {
-		new IPTCReader(iptc).showMetadata();			
+		new IPTCReader(iptc).showMetadata(Diagnostics.getPrintStream());
 	}
 	
 	private static void showPhtoshop(byte[] data) {
-		new IRBReader(data).showMetadata();		
+		new IRBReader(data).showMetadata(Diagnostics.getPrintStream());
+	}
+	
+	// Adds the EXIF data to the image IFD
+	private static void updateExif(IFD imageIFD, Exif exif, boolean update) {
+		IFD exifSubIFD = imageIFD.getChild(TiffTag.EXIF_SUB_IFD);
+		IFD gpsSubIFD = imageIFD.getChild(TiffTag.GPS_SUB_IFD);
+		IFD newImageIFD = exif.getImageIFD();
+		IFD newExifSubIFD = exif.getExifIFD();
+		IFD newGpsSubIFD = exif.getGPSIFD();
+		
+		if(newImageIFD != null) { // Copy the Image IFD fields - this is dangerous.
+			imageIFD.addFields(newImageIFD.getFields());
+		}
+		
+		if(update && exifSubIFD != null && newExifSubIFD != null) {
+			exifSubIFD.addFields(newExifSubIFD.getFields());
+			newExifSubIFD = exifSubIFD;
+		}
+		
+		if(newExifSubIFD != null) {
+			imageIFD.addField(new LongField(TiffTag.EXIF_SUB_IFD.getValue(), new int[]{0})); // Place holder
+			imageIFD.addChild(TiffTag.EXIF_SUB_IFD, newExifSubIFD);		
+		}
+		
+		if(update && gpsSubIFD != null && newGpsSubIFD != null) {
+			gpsSubIFD.addFields(newGpsSubIFD.getFields());
+			newGpsSubIFD = gpsSubIFD;
+		}
+		
+		if(newGpsSubIFD != null) {
+			imageIFD.addField(new LongField(TiffTag.GPS_SUB_IFD.getValue(), new int[]{0})); // Place holder
+			imageIFD.addChild(TiffTag.GPS_SUB_IFD, newGpsSubIFD);		
+		}
+	}
+	
+	// Adds the IPTC data to the page, endian is the byte order of the image
+	private static void updateIPTC(IFD workingPage, List<IPTCDataSet> iptcs, boolean update, short endian) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		
+		// See if we also have regular IPTC tag field
+		TiffField<?> f_iptc = workingPage.removeField(TiffTag.IPTC);		
+		TiffField<?> f_photoshop = workingPage.getField(TiffTag.PHOTOSHOP);
+		if(f_photoshop != null) { // Read 8BIMs
+			IRB irb = new IRB((byte[])f_photoshop.getData());
+			// Shallow copy the map.
+			Map<Short, _8BIM> bims = new HashMap<Short, _8BIM>(irb.get8BIM());
+			_8BIM photoshop_iptc = bims.remove(ImageResourceID.IPTC_NAA.getValue());
+			if(photoshop_iptc != null) { // If we have IPTC
+				if(update) { // If we need to keep the old data, copy it
+					if(f_iptc != null) {// We are going to synchronize the two IPTC data
+						byte[] data = null;
+						if(f_iptc.getType() == FieldType.LONG)
+							data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), endian == IOUtils.BIG_ENDIAN);
+						else
+							data = (byte[])f_iptc.getData();
+						copyIPTCDataSet(iptcs, data);
+					}
+					// Now copy the Photoshop IPTC data
+					copyIPTCDataSet(iptcs, photoshop_iptc.getData());
+					// Remove duplicates
+					iptcs = new ArrayList<IPTCDataSet>(new HashSet<IPTCDataSet>(iptcs));
+				}
+			}
+			// Create IPTC 8BIM
+			for(IPTCDataSet dataset : iptcs) {
+				dataset.write(bout);
+			}
+			_8BIM iptc_bim = new _8BIM(ImageResourceID.IPTC_NAA, "iptc", bout.toByteArray());
+			bout.reset();
+			iptc_bim.write(bout); // Write the IPTC 8BIM first
+			for(_8BIM bim : bims.values()) // Copy the other 8BIMs if any
+				bim.write(bout);
+			// Add a new Photoshop tag field to TIFF
+			workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
+		} else { // We don't have photoshop, add IPTC to regular IPTC tag field
+			if(f_iptc != null && update) {
+				byte[] data = null;
+				if(f_iptc.getType() == FieldType.LONG)
+					data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), endian == IOUtils.BIG_ENDIAN);
+				else
+					data = (byte[])f_iptc.getData();
+				copyIPTCDataSet(iptcs, data);
+			}
+			for(IPTCDataSet dataset : iptcs) {
+				dataset.write(bout);
+			}		
+			workingPage.addField(new UndefinedField(TiffTag.IPTC.getValue(), bout.toByteArray()));
+		}
+	}
+	
+	// Adds the 8BIMs to the Photoshop field of the page
+	private static void updateIRB(IFD workingPage, List<_8BIM> bims, boolean update) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		
+		if(update) {
+			TiffField<?> f_irb = workingPage.getField(TiffTag.PHOTOSHOP);
+			if(f_irb != null) {
+				IRB irb = new IRB((byte[])f_irb.getData());
+				// Shallow copy the map
+				Map<Short, _8BIM> bimMap = new HashMap<Short, _8BIM>(irb.get8BIM());
+				for(_8BIM bim : bims)
+					bimMap.remove(bim.getID());
+				bims.addAll(bimMap.values());
+			}
+		}
+		
+		for(_8BIM bim : bims)
+			bim.write(bout);
+		
+		workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
 	}
 	
 	private static void writeToStream(RandomAccessOutputStream rout, int firstIFDOffset) throws IOException {
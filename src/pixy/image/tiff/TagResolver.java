@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * TagResolver.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import cafe.image.tiff.Tag;
+
+/**
+ * Maps the short value read from a TIFF field to the tag it stands for.
+ * <p>
+ * Used by TIFFMeta to resolve the fields of the different kinds of IFDs
+ * (TIFF, EXIF, GPS and interoperability) without reflection.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public interface TagResolver {
+	/**
+	 * @param value tag value of the field
+	 * @return the tag or TiffTag.UNKNOWN if the value is unknown
+	 */
+	public Tag resolve(short value);
+}
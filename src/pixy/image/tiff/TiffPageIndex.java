@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * TiffPageIndex.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.image.tiff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import cafe.io.RandomAccessInputStream;
+
+/**
+ * Table of the IFD offsets of the pages of a TIFF or BigTIFF image.
+ * <p>
+ * The table is filled as pages are asked for by following only the next
+ * IFD offsets of the main IFD chain, the fields of the pages on the way
+ * are never read. Pages already found are looked up directly, so the same
+ * index can be reused to access different pages of the same image.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class TiffPageIndex {
+	// Where the first IFD offset is stored in the header
+	private static final long TIFF_FIRST_IFD_OFFSET_POSITION = 4;
+	private static final long BIGTIFF_FIRST_IFD_OFFSET_POSITION = 8;
+
+	private RandomAccessInputStream rin;
+	private boolean bigTIFF;
+	// IFD offsets of the pages found so far
+	private List<Long> pageOffsets = new ArrayList<Long>();
+	// Where the offset pointing to each page is stored
+	private List<Long> linkOffsets = new ArrayList<Long>();
+	// Offset of the IFD following the last page found, 0 at the end of the chain
+	private long nextOffset;
+	private long nextLinkOffset;
+	private Set<Long> visited = new HashSet<Long>();
+
+	/**
+	 * Reads the image header. The input must stay open as long as the
+	 * index is used.
+	 *
+	 * @param rin RandomAccessInputStream for the TIFF or BigTIFF image
+	 * @throws IOException
+	 */
+	public TiffPageIndex(RandomAccessInputStream rin) throws IOException {
+		this.rin = rin;
+		if(BigTIFF.isBigTIFF(rin)) {
+			bigTIFF = true;
+			nextOffset = BigTIFF.readHeader(rin);
+			nextLinkOffset = BIGTIFF_FIRST_IFD_OFFSET_POSITION;
+		} else {
+			nextOffset = TIFFMeta.readHeader(rin)&0xffffffffL;
+			nextLinkOffset = TIFF_FIRST_IFD_OFFSET_POSITION;
+		}
+	}
+
+	private void checkPage(int pageNumber) throws IOException {
+		if(pageNumber < 0 || !walkTo(pageNumber))
+			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (pageOffsets.size() - 1));
+	}
+
+	RandomAccessInputStream getInput() {
+		return rin;
+	}
+
+	// Offset of the 4 or 8 byte offset pointing to the page
+	long getLinkOffset(int pageNumber) throws IOException {
+		checkPage(pageNumber);
+		return linkOffsets.get(pageNumber);
+	}
+
+	/**
+	 * Walks through the whole IFD chain to count the pages
+	 *
+	 * @return number of pages of the image
+	 * @throws IOException
+	 */
+	public int getPageCount() throws IOException {
+		walkTo(Integer.MAX_VALUE - 1);
+		return pageOffsets.size();
+	}
+
+	/**
+	 * @param pageNumber page number (zero based)
+	 * @return offset of the IFD of the page
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the image has no such page
+	 */
+	public long getPageOffset(int pageNumber) throws IOException {
+		checkPage(pageNumber);
+		return pageOffsets.get(pageNumber);
+	}
+
+	public boolean isBigTIFF() {
+		return bigTIFF;
+	}
+
+	// Follows the next IFD offsets until the page is found or the chain ends
+	private boolean walkTo(int pageNumber) throws IOException {
+		while(pageOffsets.size() <= pageNumber && nextOffset != 0) {
+			if(!visited.add(nextOffset)) { // Broken chain looping back, end it here
+				nextOffset = 0;
+				break;
+			}
+			long offset = nextOffset;
+			pageOffsets.add(offset);
+			linkOffsets.add(nextLinkOffset);
+			rin.seek(offset);
+			if(bigTIFF) {
+				nextLinkOffset = offset + 8 + 20*rin.readLong();
+				rin.seek(nextLinkOffset);
+				nextOffset = rin.readLong();
+			} else {
+				nextLinkOffset = offset + 2 + 12*(rin.readShort()&0xffff);
+				rin.seek(nextLinkOffset);
+				nextOffset = rin.readInt()&0xffffffffL;
+			}
+		}
+		return pageNumber < pageOffsets.size();
+	}
+}
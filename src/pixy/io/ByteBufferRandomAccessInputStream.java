@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * ByteBufferRandomAccessInputStream.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Added positional read
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import cafe.io.RandomAccessInputStream;
+
+/**
+ * RandomAccessInputStream reading directly from a byte array or ByteBuffer.
+ * <p>
+ * Unlike FileCacheRandomAccessInputStream, nothing is copied: seeking only
+ * moves the stream pointer and reads go straight to the buffer. The stream
+ * may span several buffers which allows for inputs larger than a single
+ * ByteBuffer can hold, see MappedRandomAccessInputStream.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class ByteBufferRandomAccessInputStream extends RandomAccessInputStream {
+	// A single buffer never holds more than 2^31 - 1 bytes
+	private static final int SINGLE_BUFFER_SHIFT = 31;
+	
+	private ByteBuffer[] buffers;
+	// Every buffer except the last one holds exactly 1 << shift bytes
+	private final int shift;
+	private final long mask;
+	private final long length;
+	private long pointer;
+	private boolean closed;
+	
+	public ByteBufferRandomAccessInputStream(byte[] data) {
+		this(data, 0, data.length);
+	}
+	
+	/**
+	 * @param data byte array holding the input
+	 * @param offset start of the input, becomes stream position 0
+	 * @param length length of the input
+	 */
+	public ByteBufferRandomAccessInputStream(byte[] data, int offset, int length) {
+		this(ByteBuffer.wrap(data, offset, length));
+	}
+	
+	/**
+	 * @param buffer ByteBuffer holding the input from its position to its limit.
+	 * The position and limit of the buffer are not changed by the stream.
+	 */
+	public ByteBufferRandomAccessInputStream(ByteBuffer buffer) {
+		this(new ByteBuffer[] {buffer.slice()}, SINGLE_BUFFER_SHIFT);
+	}
+	
+	/**
+	 * @param buffers consecutive parts of the input, each one read from
+	 * position 0 to its limit
+	 * @param shift every buffer except the last one holds 1 << shift bytes
+	 */
+	protected ByteBufferRandomAccessInputStream(ByteBuffer[] buffers, int shift) {
+		super(null);
+		if(buffers.length == 0)
+			throw new IllegalArgumentException("At least one buffer is required");
+		long chunkSize = 1L << shift;
+		for(int i = 0; i < buffers.length - 1; i++) {
+			if(buffers[i].limit() != chunkSize)
+				throw new IllegalArgumentException("Buffer #" + i + " should hold " + chunkSize + " bytes");
+		}
+		this.buffers = buffers;
+		this.shift = shift;
+		this.mask = chunkSize - 1;
+		this.length = ((long)(buffers.length - 1) << shift) + buffers[buffers.length - 1].limit();
+	}
+	
+	@Override
+	public int available() throws IOException {
+		ensureNotClosed();
+		return (int)Math.min(Integer.MAX_VALUE, Math.max(0, length - pointer));
+	}
+	
+	public void close() throws IOException {
+		shallowClose();
+	}
+	
+	private void ensureNotClosed() throws IOException {
+		if(closed) throw new IOException("Stream closed");
+	}
+	
+	/**
+	 * @return total number of bytes in the stream
+	 */
+	public long getLength() {
+		return length;
+	}
+	
+	public long getStreamPointer() {
+		return pointer;
+	}
+	
+	public int read() throws IOException {
+		ensureNotClosed();
+		if(pointer >= length) return -1;
+		ByteBuffer buffer = buffers[(int)(pointer >>> shift)];
+		int b = buffer.get((int)(pointer & mask))&0xff;
+		pointer++;
+		return b;
+	}
+	
+	public int read(byte[] b, int off, int len) throws IOException {
+		ensureNotClosed();
+		if(off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if(len == 0) return 0;
+		if(pointer >= length) return -1;
+		int bytesRead = 0;
+		while(bytesRead < len && pointer < length) {
+			ByteBuffer buffer = buffers[(int)(pointer >>> shift)];
+			int index = (int)(pointer & mask);
+			int n = Math.min(len - bytesRead, buffer.limit() - index);
+			buffer.position(index);
+			buffer.get(b, off + bytesRead, n);
+			bytesRead += n;
+			pointer += n;
+		}
+		return bytesRead;
+	}
+	
+	/**
+	 * Reads up to len bytes starting at the position. Neither the stream
+	 * pointer nor the buffers are changed, so different threads can read
+	 * different parts of the stream at the same time.
+	 *
+	 * @param position where to start reading
+	 * @return number of bytes read or -1 if the position is at or past the end
+	 * @throws IOException
+	 */
+	public int read(long position, byte[] b, int off, int len) throws IOException {
+		ByteBuffer[] buffers = this.buffers;
+		if(buffers == null) throw new IOException("Stream closed");
+		if(off < 0 || len < 0 || len > b.length - off || position < 0)
+			throw new IndexOutOfBoundsException();
+		if(len == 0) return 0;
+		if(position >= length) return -1;
+		int bytesRead = 0;
+		while(bytesRead < len && position < length) {
+			ByteBuffer buffer = buffers[(int)(position >>> shift)].duplicate();
+			int index = (int)(position & mask);
+			int n = Math.min(len - bytesRead, buffer.limit() - index);
+			buffer.position(index);
+			buffer.get(b, off + bytesRead, n);
+			bytesRead += n;
+			position += n;
+		}
+		return bytesRead;
+	}
+	
+	/**
+	 * Sets the stream pointer. Seeking past the end of the stream is allowed,
+	 * subsequent reads will return -1.
+	 */
+	public void seek(long loc) throws IOException {
+		ensureNotClosed();
+		if(loc < 0)
+			throw new IOException("Negative seek offset: " + loc);
+		pointer = loc;
+	}
+	
+	/**
+	 * Releases the buffers. There is no underlying stream to close.
+	 */
+	public void shallowClose() throws IOException {
+		closed = true;
+		buffers = null;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		ensureNotClosed();
+		if(n <= 0) return 0;
+		long skipped = Math.min(n, Math.max(0, length - pointer));
+		pointer += skipped;
+		return skipped;
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * FileRandomAccessOutputStream.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Added positional write
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import cafe.io.RandomAccessOutputStream;
+
+/**
+ * RandomAccessOutputStream writing directly to an existing file.
+ * <p>
+ * Unlike FileCacheRandomAccessOutputStream, there is no cache to dump to
+ * another stream: every write goes to the file at the stream pointer,
+ * so the file can be modified in place.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class FileRandomAccessOutputStream extends RandomAccessOutputStream {
+	private RandomAccessFile raf;
+	private long pointer;
+	private long length;
+	private boolean closed;
+
+	/**
+	 * @param raf RandomAccessFile opened for writing. The stream pointer
+	 * starts at 0 regardless of the file pointer of raf.
+	 * @throws IOException
+	 */
+	public FileRandomAccessOutputStream(RandomAccessFile raf) throws IOException {
+		super(null);
+		this.raf = raf;
+		this.length = raf.length();
+	}
+
+	/**
+	 * Closes the stream along with the underlying RandomAccessFile
+	 */
+	public void close() throws IOException {
+		if(closed) return;
+		shallowClose();
+		raf.close();
+	}
+
+	private void ensureNotClosed() throws IOException {
+		if(closed) throw new IOException("Stream closed");
+	}
+
+	public synchronized long getLength() {
+		return length;
+	}
+
+	public long getStreamPointer() {
+		return pointer;
+	}
+
+	public void seek(long loc) throws IOException {
+		ensureNotClosed();
+		if(loc < 0)
+			throw new IOException("Negative seek offset: " + loc);
+		pointer = loc;
+	}
+
+	/**
+	 * Closes the stream but leaves the underlying RandomAccessFile open
+	 */
+	public void shallowClose() throws IOException {
+		closed = true;
+	}
+
+	public void write(int b) throws IOException {
+		ensureNotClosed();
+		raf.seek(pointer);
+		raf.write(b);
+		pointer++;
+		if(pointer > length) length = pointer;
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureNotClosed();
+		raf.seek(pointer);
+		raf.write(b, off, len);
+		pointer += len;
+		if(pointer > length) length = pointer;
+	}
+
+	/**
+	 * Writes the bytes at the position without moving the stream pointer.
+	 * Different threads can write different parts of the file at the same time.
+	 *
+	 * @param position where to write the bytes
+	 * @throws IOException
+	 */
+	public void write(long position, byte[] b, int off, int len) throws IOException {
+		ensureNotClosed();
+		ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+		FileChannel channel = raf.getChannel();
+		while(bb.hasRemaining())
+			channel.write(bb, position + bb.position() - off);
+		synchronized(this) {
+			if(position + len > length) length = position + len;
+		}
+	}
+	
+	/**
+	 * Nothing to do, the data is already in the file
+	 */
+	public void writeToStream(long len) throws IOException {
+		ensureNotClosed();
+	}
+}
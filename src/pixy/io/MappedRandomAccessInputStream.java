@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * MappedRandomAccessInputStream.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * RandomAccessInputStream backed by a memory mapped file.
+ * <p>
+ * The file is mapped read only in chunks of 1GB so files larger than 2GB
+ * can be read as well. The operating system pages in only the parts of the
+ * file which are actually read, no temporary copy of the file is made.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class MappedRandomAccessInputStream extends ByteBufferRandomAccessInputStream {
+	// Each mapped chunk holds 1 << CHUNK_SHIFT bytes
+	private static final int CHUNK_SHIFT = 30;
+	
+	/**
+	 * Maps the whole file
+	 * 
+	 * @param file input file
+	 * @throws IOException
+	 */
+	public MappedRandomAccessInputStream(File file) throws IOException {
+		super(map(file), CHUNK_SHIFT);
+	}
+	
+	/**
+	 * Maps the file from the position to the end of the file. The channel
+	 * is left open and its position is not changed.
+	 * 
+	 * @param channel FileChannel for the input file
+	 * @param position start of the input, becomes stream position 0
+	 * @throws IOException
+	 */
+	public MappedRandomAccessInputStream(FileChannel channel, long position) throws IOException {
+		super(map(channel, position), CHUNK_SHIFT);
+	}
+	
+	private static ByteBuffer[] map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// The mapping stays valid after the channel is closed
+			return map(raf.getChannel(), 0);
+		} finally {
+			raf.close();
+		}
+	}
+	
+	private static ByteBuffer[] map(FileChannel channel, long position) throws IOException {
+		long size = Math.max(0, channel.size() - position);
+		long chunkSize = 1L << CHUNK_SHIFT;
+		int numOfChunks = (int)Math.max(1, (size + chunkSize - 1) >>> CHUNK_SHIFT);
+		ByteBuffer[] buffers = new ByteBuffer[numOfChunks];
+		for(int i = 0; i < numOfChunks; i++) {
+			long offset = (long)i << CHUNK_SHIFT;
+			buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(chunkSize, size - offset));
+		}
+		return buffers;
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * StreamingRandomAccessOutputStream.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import cafe.io.RandomAccessInputStream;
+import cafe.io.RandomAccessOutputStream;
+
+/**
+ * RandomAccessOutputStream laying out the output before it is written to a
+ * plain OutputStream in increasing offset order.
+ * <p>
+ * Unlike FileCacheRandomAccessOutputStream, the output is not cached to a
+ * temporary file. Bytes written to the stream are kept in memory as segments
+ * of contiguous bytes, so only what is actually written takes up memory,
+ * while large ranges of the output, such as image data, are only recorded
+ * with copyFrom() as ranges of an input. writeToStream() then writes the
+ * output in one pass, copying the recorded ranges from the input on the way.
+ * This is meant for outputs where the written bytes are small compared to
+ * the copied ranges.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class StreamingRandomAccessOutputStream extends RandomAccessOutputStream {
+	private static final int BUFFER_SIZE = 64*1024;
+	private static final int MIN_SEGMENT_CAPACITY = 64;
+	// Stands for the parts never written to
+	private static final byte[] ZEROS = new byte[4096];
+
+	private OutputStream os;
+	// Bytes written, keyed by output offset. Segments neither overlap nor touch
+	private TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+	// Ranges to copy from inputs, keyed by output offset
+	private TreeMap<Long, Range> ranges = new TreeMap<Long, Range>();
+	private long pointer;
+	private long length;
+	// Everything before this offset is already written to os
+	private long flushedPos;
+	private boolean closed;
+
+	/**
+	 * @param os OutputStream the output is finally written to
+	 */
+	public StreamingRandomAccessOutputStream(OutputStream os) {
+		super(os);
+		this.os = os;
+	}
+
+	/**
+	 * Closes the stream along with the underlying OutputStream
+	 */
+	public void close() throws IOException {
+		if(closed) return;
+		shallowClose();
+		os.close();
+	}
+
+	/**
+	 * Records a range of an input to be copied to the output when it is written
+	 * out. The input must stay open until then. The range takes precedence over
+	 * bytes written to the same part of the output.
+	 *
+	 * @param in input to copy from
+	 * @param srcOffset start of the range in the input
+	 * @param len number of bytes to copy
+	 * @param dstOffset where the range goes in the output
+	 * @throws IOException
+	 */
+	public void copyFrom(RandomAccessInputStream in, long srcOffset, long len, long dstOffset) throws IOException {
+		ensureNotClosed();
+		if(len <= 0) return;
+		if(dstOffset < flushedPos)
+			throw new IOException("Offset " + dstOffset + " is already written out");
+		Map.Entry<Long, Range> last = ranges.floorEntry(dstOffset);
+		if(last != null) {
+			Range range = last.getValue();
+			if(range.in == in && range.dstOffset + range.length == dstOffset && range.srcOffset + range.length == srcOffset) {
+				range.length += len; // Contiguous with the previous range
+				updateLength(dstOffset + len);
+				return;
+			}
+		}
+		ranges.put(dstOffset, new Range(in, srcOffset, len, dstOffset));
+		updateLength(dstOffset + len);
+	}
+
+	private void copyRange(Range range, long from, long to, byte[] buf) throws IOException {
+		range.in.seek(range.srcOffset + (from - range.dstOffset));
+		while(from < to) {
+			int len = (int)Math.min(buf.length, to - from);
+			range.in.readFully(buf, 0, len);
+			os.write(buf, 0, len);
+			from += len;
+		}
+	}
+
+	private void ensureNotClosed() throws IOException {
+		if(closed) throw new IOException("Stream closed");
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getStreamPointer() {
+		return pointer;
+	}
+
+	public void seek(long loc) throws IOException {
+		ensureNotClosed();
+		if(loc < 0)
+			throw new IOException("Negative seek offset: " + loc);
+		pointer = loc;
+	}
+
+	/**
+	 * Closes the stream but leaves the underlying OutputStream open
+	 */
+	public void shallowClose() throws IOException {
+		closed = true;
+		segments = null;
+		ranges = null;
+	}
+
+	private void updateLength(long end) {
+		if(end > length) length = end;
+	}
+
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte)b}, 0, 1);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureNotClosed();
+		if(off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if(pointer < flushedPos)
+			throw new IOException("Offset " + pointer + " is already written out");
+		if(len == 0) return;
+		long end = pointer + len;
+		// Extend the segment holding or ending at the pointer, or start a new one
+		Map.Entry<Long, Segment> entry = segments.floorEntry(pointer);
+		Segment segment;
+		if(entry != null && entry.getValue().end() >= pointer) {
+			segment = entry.getValue();
+		} else {
+			segment = new Segment(pointer, len);
+			segments.put(pointer, segment);
+		}
+		// Take in the segments the new bytes reach, keeping what is past them
+		Map.Entry<Long, Segment> next;
+		while((next = segments.higherEntry(segment.start)) != null && next.getKey() <= end) {
+			Segment following = next.getValue();
+			segments.remove(next.getKey());
+			if(following.end() > end) {
+				int from = (int)(end - following.start);
+				segment.put(end, following.data, from, following.length - from);
+			}
+		}
+		segment.put(pointer, b, off, len);
+		pointer = end;
+		updateLength(pointer);
+	}
+
+	// Writes the bytes kept in memory from one offset to another, zeros where nothing was written
+	private void writeSegments(long from, long to) throws IOException {
+		Map.Entry<Long, Segment> entry = segments.floorEntry(from);
+		Iterator<Segment> iter = ((entry == null) ? segments : segments.tailMap(entry.getKey(), true)).values().iterator();
+		while(from < to) {
+			Segment segment = iter.hasNext() ? iter.next() : null;
+			long start = (segment == null) ? to : Math.min(to, Math.max(from, segment.start));
+			while(from < start) {
+				int n = (int)Math.min(ZEROS.length, start - from);
+				os.write(ZEROS, 0, n);
+				from += n;
+			}
+			if(segment == null) break;
+			long end = Math.min(to, segment.end());
+			if(from < end) {
+				os.write(segment.data, (int)(from - segment.start), (int)(end - from));
+				from = end;
+			}
+		}
+	}
+
+	/**
+	 * Writes the next len bytes of the output to the underlying OutputStream.
+	 * Parts of the output never written to come out as zeros. Once written
+	 * out, that part of the output can't be changed any more.
+	 *
+	 * @param len number of bytes to write out
+	 * @throws IOException
+	 */
+	public void writeToStream(long len) throws IOException {
+		ensureNotClosed();
+		long pos = flushedPos;
+		long end = Math.min(length, flushedPos + len);
+		byte[] buf = null;
+		while(pos < end) {
+			Map.Entry<Long, Range> entry = ranges.floorEntry(pos);
+			if(entry != null && entry.getValue().dstOffset + entry.getValue().length > pos) {
+				Range range = entry.getValue();
+				long to = Math.min(end, range.dstOffset + range.length);
+				if(buf == null) buf = new byte[BUFFER_SIZE];
+				copyRange(range, pos, to, buf);
+				pos = to;
+			} else {
+				Long next = ranges.higherKey(pos);
+				long to = (next == null) ? end : Math.min(end, next);
+				writeSegments(pos, to);
+				pos = to;
+			}
+		}
+		flushedPos = pos;
+		// Free what has been written out
+		for(Iterator<Segment> iter = segments.values().iterator(); iter.hasNext(); ) {
+			if(iter.next().end() > flushedPos) break;
+			iter.remove();
+		}
+		for(Iterator<Range> iter = ranges.values().iterator(); iter.hasNext(); ) {
+			Range range = iter.next();
+			if(range.dstOffset + range.length > flushedPos) break;
+			iter.remove();
+		}
+		os.flush();
+	}
+
+	// Contiguous bytes written to the output
+	private static class Segment {
+		long start;
+		byte[] data;
+		int length;
+
+		Segment(long start, int capacity) {
+			this.start = start;
+			this.data = new byte[Math.max(MIN_SEGMENT_CAPACITY, capacity)];
+		}
+
+		long end() {
+			return start + length;
+		}
+
+		// Copies bytes into the segment, growing it as needed
+		void put(long offset, byte[] b, int off, int len) {
+			int index = (int)(offset - start);
+			if(index + len > data.length) // Grow by half at least
+				data = Arrays.copyOf(data, Math.max(index + len, data.length + (data.length >> 1)));
+			System.arraycopy(b, off, data, index, len);
+			length = Math.max(length, index + len);
+		}
+	}
+
+	private static class Range {
+		RandomAccessInputStream in;
+		long srcOffset;
+		long length;
+		long dstOffset;
+
+		Range(RandomAccessInputStream in, long srcOffset, long length, long dstOffset) {
+			this.in = in;
+			this.srcOffset = srcOffset;
+			this.length = length;
+			this.dstOffset = dstOffset;
+		}
+	}
+}
@@ -13,6 +13,13 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Remove GIF metadata
+ * WY    16Oct2026  Insert and remove PNG EXIF
+ * WY    16Oct2026  Write TIFF output with StreamingRandomAccessOutputStream
+ * WY    16Oct2026  Recognize BigTIFF in readMetadata()
+ * WY    16Oct2026  Map TIFF files instead of caching them to a temporary file
+ * WY    16Oct2026  Added view constructor for metadata backed by a larger array
+ * WY    16Oct2026  Added readMetadata() for requested metadata types only
  * WY    13Mar2015  initial creation
  */
 
@@ -26,6 +33,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +44,8 @@ import pixy.image.gif.GIFMeta;
 import pixy.image.jpeg.JPEGMeta;
 import pixy.image.png.PNGMeta;
 import pixy.image.tiff.TIFFMeta;
+import pixy.io.MappedRandomAccessInputStream;
+import pixy.io.StreamingRandomAccessOutputStream;
 import pixy.meta.Metadata;
 import pixy.meta.MetadataReader;
 import pixy.meta.MetadataType;
@@ -45,7 +56,6 @@ import cafe.image.ImageIO;
 import cafe.image.ImageType;
 import cafe.image.util.IMGUtils;
 import cafe.io.FileCacheRandomAccessInputStream;
-import cafe.io.FileCacheRandomAccessOutputStream;
 import cafe.io.RandomAccessInputStream;
 import cafe.io.RandomAccessOutputStream;
 
@@ -59,6 +69,9 @@ public abstract class Metadata {
 	// Fields
 	private MetadataType type;
 	private byte[] data;
+	// Part of data holding the metadata
+	private int offset;
+	private int length;
 	
 	public static void  extractThumbnails(File image, String pathToThumbnail) throws IOException {
 		FileInputStream fin = new FileInputStream(image);
@@ -67,6 +80,7 @@ public abstract class Metadata {
 	}
 	
 	public static void extractThumbnails(InputStream is, String pathToThumbnail) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -76,7 +90,7 @@ public abstract class Metadata {
 				JPEGMeta.extractThumbnails(pushbackStream, pathToThumbnail);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
 				TIFFMeta.extractThumbnail(randIS, pathToThumbnail);
 				randIS.close();
 				break;
@@ -111,6 +125,7 @@ public abstract class Metadata {
 	}
 	
 	public static void insertExif(InputStream is, OutputStream out, Exif exif, boolean update) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -120,17 +135,19 @@ public abstract class Metadata {
 				JPEGMeta.insertExif(pushbackStream, out, exif, update);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(out);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				RandomAccessOutputStream randOS = new StreamingRandomAccessOutputStream(out);
 				TIFFMeta.insertExif(randIS, randOS, exif, update);
 				randIS.close();
 				randOS.close();
 				break;
+			case PNG:
+				PNGMeta.insertExif(pushbackStream, out, exif, update);
+				break;
 			case GIF:
 			case PCX:
 			case TGA:
 			case BMP:
-			case PNG:
 				System.out.println(imageType + " image format does not support EXIF data");
 				break;
 			default:
@@ -144,6 +161,7 @@ public abstract class Metadata {
 	}
 	
 	public static void insertICCProfile(InputStream is, OutputStream out, byte[] icc_profile) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -153,8 +171,8 @@ public abstract class Metadata {
 				JPEGMeta.insertICCProfile(pushbackStream, out, icc_profile);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(out);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				RandomAccessOutputStream randOS = new StreamingRandomAccessOutputStream(out);
 				TIFFMeta.insertICCProfile(icc_profile, 0, randIS, randOS);
 				randIS.close();
 				randOS.close();
@@ -176,6 +194,7 @@ public abstract class Metadata {
 	}
 	
 	public static void insertIPTC(InputStream is, OutputStream out, List<IPTCDataSet> iptcs, boolean update) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -185,8 +204,8 @@ public abstract class Metadata {
 				JPEGMeta.insertIPTC(pushbackStream, out, iptcs, update);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(out);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				RandomAccessOutputStream randOS = new StreamingRandomAccessOutputStream(out);
 				TIFFMeta.insertIPTC(randIS, randOS, iptcs, update);
 				randIS.close();
 				randOS.close();
@@ -209,6 +228,7 @@ public abstract class Metadata {
 	}
 	
 	public static void insertIRB(InputStream is, OutputStream out, List<_8BIM> bims, boolean update) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -218,8 +238,8 @@ public abstract class Metadata {
 				JPEGMeta.insertIRB(pushbackStream, out, bims, update);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(out);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				RandomAccessOutputStream randOS = new StreamingRandomAccessOutputStream(out);
 				TIFFMeta.insertIRB(randIS, randOS, bims, update);
 				randIS.close();
 				randOS.close();
@@ -238,6 +258,7 @@ public abstract class Metadata {
 	}
 	
 	public static void insertIRBThumbnail(InputStream is, OutputStream out, BufferedImage thumbnail) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -247,8 +268,8 @@ public abstract class Metadata {
 				JPEGMeta.insertIRBThumbnail(pushbackStream, out, thumbnail);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(out);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				RandomAccessOutputStream randOS = new StreamingRandomAccessOutputStream(out);
 				TIFFMeta.insertThumbnail(randIS, randOS, thumbnail);
 				randIS.close();
 				randOS.close();
@@ -267,6 +288,7 @@ public abstract class Metadata {
 	}
 	
 	public static void insertXMP(InputStream is, OutputStream out, String xmp) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -276,8 +298,8 @@ public abstract class Metadata {
 				JPEGMeta.insertXMP(pushbackStream, out, xmp, null); // No ExtendedXMP
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(out);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				RandomAccessOutputStream randOS = new StreamingRandomAccessOutputStream(out);
 				TIFFMeta.insertXMP(xmp, randIS, randOS);
 				randIS.close();
 				randOS.close();
@@ -307,37 +329,65 @@ public abstract class Metadata {
 		return metadataMap; 
 	}
 	
+	public static Map<MetadataType, Metadata> readMetadata(File image, EnumSet<MetadataType> metadataTypes) throws IOException {
+		FileInputStream fin = new FileInputStream(image);
+		Map<MetadataType, Metadata> metadataMap = readMetadata(fin, metadataTypes);
+		fin.close();
+		
+		return metadataMap; 
+	}
+	
 	/**
 	 * Reads all metadata associated with the input image
+	 * <p>
+	 * For JPEG images, reading stops at the first SOS segment. Use
+	 * JPEGMeta.readMetadata(InputStream, true) to scan the whole image.
 	 *
 	 * @param is InputStream for the image
 	 * @return a list of Metadata for the input stream
 	 * @throws IOException
 	 */
 	public static Map<MetadataType, Metadata> readMetadata(InputStream is) throws IOException {
+		return readMetadata(is, EnumSet.allOf(MetadataType.class));
+	}
+	
+	/**
+	 * Reads only the requested types of metadata associated with the input image.
+	 * Segments, chunks or fields holding other metadata are skipped without
+	 * reading their data and thumbnails are only looked for if IMAGE is requested.
+	 *
+	 * @param is InputStream for the image
+	 * @param metadataTypes types of metadata to read
+	 * @return a map of the requested Metadata found in the input stream
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, EnumSet<MetadataType> metadataTypes) throws IOException {
 		// Metadata map for all the Metadata read
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
-		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
+		ImageType imageType = IMGUtils.guessImageType(pushbackStream);
+		if(imageType == ImageType.UNKNOWN && isBigTIFF(pushbackStream))
+			imageType = ImageType.TIFF; // TIFFMeta reads BigTIFF as well
 		// Delegate metadata reading to corresponding image tweakers.
 		switch(imageType) {
 			case JPG:
-				metadataMap = JPEGMeta.readMetadata(pushbackStream);
+				metadataMap = JPEGMeta.readMetadata(pushbackStream, metadataTypes);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				metadataMap = TIFFMeta.readMetadata(randIS);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				metadataMap = TIFFMeta.readMetadata(randIS, metadataTypes);
 				randIS.close();
 				break;
 			case PNG:
-				metadataMap = PNGMeta.readMetadata(pushbackStream);
+				metadataMap = PNGMeta.readMetadata(pushbackStream, metadataTypes);
 				break;
 			case GIF:
-				metadataMap = GIFMeta.readMetadata(pushbackStream);
+				metadataMap = GIFMeta.readMetadata(pushbackStream, metadataTypes);
 				break;
 			case BMP:
-				metadataMap = BMPMeta.readMetadata(pushbackStream);
+				metadataMap = BMPMeta.readMetadata(pushbackStream, metadataTypes);
 				break;
 			default:
 				pushbackStream.close();
@@ -361,6 +411,7 @@ public abstract class Metadata {
 	 * @throws IOException
 	 */
 	public static void removeMetadata(InputStream is, OutputStream os, MetadataType ...metadataTypes) throws IOException {
+		long filePosition = getFilePosition(is); // Start of the image if it comes from a file
 		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
 		PushbackInputStream pushbackStream = new PushbackInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
 		ImageType imageType = IMGUtils.guessImageType(pushbackStream);		
@@ -370,12 +421,18 @@ public abstract class Metadata {
 				JPEGMeta.removeMetadata(pushbackStream, os, metadataTypes);
 				break;
 			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(pushbackStream);
-				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(os);
+				RandomAccessInputStream randIS = createRandomAccessInputStream(is, filePosition, pushbackStream);
+				RandomAccessOutputStream randOS = new StreamingRandomAccessOutputStream(os);
 				TIFFMeta.removeMetadata(randIS, randOS, metadataTypes);
 				randIS.close();
 				randOS.close();
 				break;
+			case PNG:
+				PNGMeta.removeMetadata(pushbackStream, os, metadataTypes);
+				break;
+			case GIF:
+				GIFMeta.removeMetadata(pushbackStream, os, metadataTypes);
+				break;
 			case PCX:
 			case TGA:
 			case BMP:
@@ -388,16 +445,69 @@ public abstract class Metadata {
 	}
 	
 	public Metadata(MetadataType type, byte[] data) {
+		this(type, data, 0, (data == null)? 0 : data.length);
+	}
+	
+	/**
+	 * Creates metadata backed by part of a larger array, such as the image
+	 * segment it is read from, without copying the data.
+	 * 
+	 * @param type metadata type
+	 * @param data array holding the metadata
+	 * @param offset start of the metadata in the array
+	 * @param length length of the metadata
+	 */
+	public Metadata(MetadataType type, byte[] data, int offset, int length) {
 		this.type = type;
 		this.data = data;
+		this.offset = offset;
+		this.length = length;
 	}
 	
 	public byte[] getData() {
+		if(data != null && (offset != 0 || length != data.length)) { // Trim the backing array on first access
+			data = Arrays.copyOfRange(data, offset, offset + length);
+			offset = 0;
+		}
 		return data;
 	}
 	
 	public abstract MetadataReader getReader();
 	
+	/**
+	 * Creates a RandomAccessInputStream for a TIFF image. If the image comes
+	 * from a FileInputStream, the file is mapped from the start of the image,
+	 * otherwise the stream is cached to a temporary file.
+	 */
+	private static RandomAccessInputStream createRandomAccessInputStream(InputStream is, long filePosition, InputStream pushbackStream) throws IOException {
+		if(filePosition >= 0)
+			return new MappedRandomAccessInputStream(((FileInputStream)is).getChannel(), filePosition);
+		return new FileCacheRandomAccessInputStream(pushbackStream);
+	}
+	
+	// Checks for the BigTIFF magic number "II+\0" or "MM\0+" and pushes it back
+	private static boolean isBigTIFF(PushbackInputStream is) throws IOException {
+		byte[] magic = new byte[ImageIO.IMAGE_MAGIC_NUMBER_LEN];
+		int len = 0;
+		while(len < magic.length) {
+			int n = is.read(magic, len, magic.length - len);
+			if(n < 0) break;
+			len += n;
+		}
+		is.unread(magic, 0, len);
+		if(len < 4) return false;
+		
+		return (magic[0] == 'I' && magic[1] == 'I' && magic[2] == 0x2b && magic[3] == 0)
+			|| (magic[0] == 'M' && magic[1] == 'M' && magic[2] == 0 && magic[3] == 0x2b);
+	}
+	
+	// Returns the position of the FileInputStream or -1 for other input streams
+	private static long getFilePosition(InputStream is) throws IOException {
+		if(is instanceof FileInputStream)
+			return ((FileInputStream)is).getChannel().position();
+		return -1;
+	}
+	
 	public MetadataType getType() {
 		return type;
 	}
@@ -415,6 +525,6 @@ public abstract class Metadata {
 	 * @throws IOException
 	 */
 	public void write(OutputStream out) throws IOException {
-		out.write(data);
+		out.write(data, offset, length);
 	}	
 }
\ No newline at end of file
@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================================
+ * WY    16Oct2026  Added constructor for data backed by part of an array
  * WY    13Mar2015  Initial creation
  */
 
@@ -56,6 +57,11 @@ public class IRB extends Metadata {
 		reader = new IRBReader(data);
 	}
 	
+	public IRB(byte[] data, int offset, int length) {
+		super(MetadataType.PHOTOSHOP, data, offset, length);
+		reader = new IRBReader(data, offset, length);
+	}
+	
 	public Map<Short, _8BIM> get8BIM() {
 		return reader.get8BIM();
 	}
@@ -11,6 +11,7 @@
 package pixy.meta.adobe;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,13 +34,21 @@ import cafe.util.ArrayUtils;
  */
 public class IRBReader implements MetadataReader {
 	private byte[] data;
+	private int offset;
+	private int length;
 	private boolean containsThumbnail;
 	private IRBThumbnail thumbnail;
 	private boolean loaded;
 	Map<Short, _8BIM> _8bims = new HashMap<Short, _8BIM>();
 	
 	public IRBReader(byte[] data) {
+		this(data, 0, data.length);
+	}
+	
+	public IRBReader(byte[] data, int offset, int length) {
 		this.data = data;
+		this.offset = offset;
+		this.length = length;
 	}
 	
 	public boolean containsThumbnail() {
@@ -67,8 +76,9 @@ public class IRBReader implements MetadataReader {
 	
 	@Override
 	public void read() throws IOException {
-		int i = 0;
-		while((i+4) < data.length) {
+		int i = offset;
+		int end = offset + length;
+		while((i+4) < end) {
 			String _8bim = new String(data, i, 4);
 			i += 4;			
 			if(_8bim.equals("8BIM")) {
@@ -103,7 +113,8 @@ public class IRBReader implements MetadataReader {
 							_8bims.put(id, new PhotoshopIPTC(name, newData));
 						break;
 					default:
-						_8bims.put(id, new _8BIM(id, name, size, ArrayUtils.subArray(data, i, size)));
+						// Backed by the IRB data, no copy
+						_8bims.put(id, new _8BIM(id, name, size, data, i));
 				}				
 				
 				if(eId == ImageResourceID.THUMBNAIL_RESOURCE_PS4 || eId == ImageResourceID.THUMBNAIL_RESOURCE_PS5) {
@@ -135,6 +146,10 @@ public class IRBReader implements MetadataReader {
 	}
 	
 	public void showMetadata() {
+		showMetadata(System.out);
+	}
+	
+	public void showMetadata(PrintStream out) {
 		if(!loaded) {
 			try {
 				read();
@@ -142,35 +157,35 @@ public class IRBReader implements MetadataReader {
 				e.printStackTrace();
 			}			
 		}
-		System.out.println("<<Adobe IRB information starts>>");
+		out.println("<<Adobe IRB information starts>>");
 		for(_8BIM _8bim : _8bims.values()) {
-			_8bim.print();
+			_8bim.print(out);
 		}
 		if(containsThumbnail) {
-			System.out.println(thumbnail.getResouceID());
+			out.println(thumbnail.getResouceID());
 			int thumbnailFormat = thumbnail.getDataType(); //1 = kJpegRGB. Also supports kRawRGB (0).
 			switch (thumbnailFormat) {
 				case IRBThumbnail.DATA_TYPE_KJpegRGB:
-					System.out.println("Thumbnail format: KJpegRGB");
+					out.println("Thumbnail format: KJpegRGB");
 					break;
 				case IRBThumbnail.DATA_TYPE_KRawRGB:
-					System.out.println("Thumbnail format: KRawRGB");
+					out.println("Thumbnail format: KRawRGB");
 					break;
 			}
-			System.out.println("Thumbnail width: " + thumbnail.getWidth());
-			System.out.println("Thumbnail height: " + thumbnail.getHeight());
+			out.println("Thumbnail width: " + thumbnail.getWidth());
+			out.println("Thumbnail height: " + thumbnail.getHeight());
 			// Padded row bytes = (width * bits per pixel + 31) / 32 * 4.
-			System.out.println("Padded row bytes: " + thumbnail.getPaddedRowBytes());
+			out.println("Padded row bytes: " + thumbnail.getPaddedRowBytes());
 			// Total size = widthbytes * height * planes
-			System.out.println("Total size: "  + thumbnail.getTotalSize());
+			out.println("Total size: "  + thumbnail.getTotalSize());
 			// Size after compression. Used for consistency check.
-			System.out.println("Size after compression: " + thumbnail.getCompressedSize());
+			out.println("Size after compression: " + thumbnail.getCompressedSize());
 			// Bits per pixel. = 24
-			System.out.println("Bits per pixel: " + thumbnail.getBitsPerPixel());
+			out.println("Bits per pixel: " + thumbnail.getBitsPerPixel());
 			// Number of planes. = 1
-			System.out.println("Number of planes: "  + thumbnail.getNumOfPlanes());
+			out.println("Number of planes: "  + thumbnail.getNumOfPlanes());
 		}
 		
-		System.out.println("<<Adobe IRB information ends>>");
+		out.println("<<Adobe IRB information ends>>");
 	}
 }
\ No newline at end of file
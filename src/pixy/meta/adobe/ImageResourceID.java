@@ -13,14 +13,12 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Replaced HashMap lookup with a dense table in fromShort()
  * WY    13Mar2015  initial creation
  */
 
 package pixy.meta.adobe;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import pixy.meta.adobe.ImageResourceID;
 import cafe.string.StringUtils;
 
@@ -150,18 +148,29 @@ public enum ImageResourceID {
 	}
 	
     public static ImageResourceID fromShort(short value) {
-       	ImageResourceID id = idMap.get(value);
-    	if (id == null)
+    	int index = (value&0xffff) - idBase;
+    	if (index < 0 || index >= idTable.length || idTable[index] == null)
     		return UNKNOWN;
-   		return id;
+    	return idTable[index];
     }
     
-    private static final Map<Short, ImageResourceID> idMap = new HashMap<Short, ImageResourceID>();
+    // Dense table indexed by value - idBase, spanning the known IDs
+    private static final ImageResourceID[] idTable;
+    private static final int idBase;
        
     static
     {
+      int min = 0xffff, max = 0;
+      for(ImageResourceID id : values()) {
+    	  if(id == UNKNOWN) continue;
+    	  min = Math.min(min, id.getValue()&0xffff);
+    	  max = Math.max(max, id.getValue()&0xffff);
+      }
+      idBase = min;
+      idTable = new ImageResourceID[max - min + 1];
       for(ImageResourceID id : values()) {
-           idMap.put(id.getValue(), id);
+    	  if(id != UNKNOWN)
+    		  idTable[(id.getValue()&0xffff) - min] = id;
       }
     }
     
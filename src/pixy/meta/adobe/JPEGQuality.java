@@ -2,6 +2,7 @@ package pixy.meta.adobe;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 
 import pixy.meta.adobe.ImageResourceID;
 import pixy.meta.adobe._8BIM;
@@ -152,14 +153,14 @@ public class JPEGQuality extends _8BIM {
 		trailer = data[6];// Always seems to be 0x01
 	}
 	
-	public void print() {
-		super.print();
-		System.out.print(getQualityAsString());
-		System.out.print(" : ");
-		System.out.print(getFormatAsString());
-		System.out.print(" : ");
-		System.out.print(getProgressiveScansAsString());
-		System.out.println(" - Plus 1 byte unknown trailer value = " + trailer); // Always seems to be 0x01
+	public void print(PrintStream out) {
+		super.print(out);
+		out.print(getQualityAsString());
+		out.print(" : ");
+		out.print(getFormatAsString());
+		out.print(" : ");
+		out.print(getProgressiveScansAsString());
+		out.println(" - Plus 1 byte unknown trailer value = " + trailer); // Always seems to be 0x01
 	}
 
 	public void setFormat(int format) {
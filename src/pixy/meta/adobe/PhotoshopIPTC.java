@@ -3,6 +3,7 @@ package pixy.meta.adobe;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.List;
 import java.util.Map;
 
@@ -61,12 +62,12 @@ public class PhotoshopIPTC extends _8BIM {
 		}
 	}
 	
-	public void print() {
-		super.print();
+	public void print(PrintStream out) {
+		super.print(out);
 		// Print multiple entry IPTCDataSet
 		for(List<IPTCDataSet> datasets : iptc.getDataSet().values())
 			for(IPTCDataSet dataset : datasets)
-				dataset.print();			
+				dataset.print(out);			
 	}
 	
 	public void write(OutputStream os) throws IOException {
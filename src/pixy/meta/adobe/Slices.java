@@ -2,6 +2,7 @@ package pixy.meta.adobe;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.List;
 
 import pixy.meta.adobe.ImageResourceID;
@@ -28,8 +29,8 @@ public class Slices extends _8BIM {
 		return slices;
 	}
 	
-	public void print() {
-		super.print();
+	public void print(PrintStream out) {
+		super.print(out);
 	
 	}
 
@@ -3,6 +3,7 @@ package pixy.meta.adobe;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 
 import pixy.meta.adobe.ImageResourceID;
 import pixy.meta.adobe._8BIM;
@@ -67,13 +68,13 @@ public class VersionInfo extends _8BIM {
 	    fileVersion = ArrayUtils.subArray(data, i, 4);  
 	}
 	
-	public void print() {
-		super.print();
-		System.out.println("Version: " + getVersion());
-		System.out.println("Has Real Merged Data: " + hasRealMergedData);
-        System.out.println("Writer name: " + writerName);
-		System.out.println("Reader name: " + readerName);
-		System.out.println("File Version: " + getFileVersion()); 
+	public void print(PrintStream out) {
+		super.print(out);
+		out.println("Version: " + getVersion());
+		out.println("Has Real Merged Data: " + hasRealMergedData);
+        out.println("Writer name: " + writerName);
+		out.println("Reader name: " + readerName);
+		out.println("File Version: " + getFileVersion()); 
 	}
 
 	public void setHasRealMergedData(boolean hasRealMergedData) {
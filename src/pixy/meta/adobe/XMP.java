@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Added constructor for data backed by part of an array
  * WY    13Mar2015  Initial creation
  */
 
@@ -42,6 +43,11 @@ public class XMP extends Metadata {
 		reader = new XMPReader(data);
 	}
 	
+	public XMP(byte[] data, int offset, int length) {
+		super(MetadataType.XMP, data, offset, length);
+		reader = new XMPReader(data, offset, length);
+	}
+	
 	public XMP(String xmp) {
 		super(MetadataType.XMP, null);
 		reader = new XMPReader(xmp);
@@ -13,12 +13,14 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Added constructor for data backed by part of an array
  * WY    13Mar2015  Initial creation
  */
 
 package pixy.meta.adobe;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.w3c.dom.Document;
 
@@ -27,13 +29,21 @@ import cafe.string.XMLUtils;
 
 public class XMPReader implements MetadataReader {
 	private byte[] data;
+	private int offset;
+	private int length;
 	private String xmp;
 	private boolean loaded;
 	//document contains the complete XML as a Tree.
 	private Document document = null;
 	
 	public XMPReader(byte[] data) {
+		this(data, 0, (data == null)? 0 : data.length);
+	}
+	
+	public XMPReader(byte[] data, int offset, int length) {
 		this.data = data;
+		this.offset = offset;
+		this.length = length;
 	}
 	
 	public XMPReader(String xmp) {
@@ -56,8 +66,8 @@ public class XMPReader implements MetadataReader {
 	public void read() throws IOException {
 		if(xmp != null)
 			document = XMLUtils.createXML(xmp);
-		else if(data != null)
-			document = XMLUtils.createXML(data);
+		else if(data != null) // XMLUtils needs the XMP alone, copy only when we do parse it
+			document = XMLUtils.createXML((offset == 0 && length == data.length)? data : Arrays.copyOfRange(data, offset, offset + length));
 		
 		loaded = true;
 	}
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================================
+ * WY    16Oct2026  Added print(PrintStream)
+ * WY    16Oct2026  Added constructor for data backed by part of an array
  * WY    13Mar2015  initial creation
  */
 
@@ -20,6 +22,8 @@ package pixy.meta.adobe;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
 
 import pixy.meta.adobe.ImageResourceID;
 import cafe.io.IOUtils;
@@ -30,6 +34,8 @@ public class _8BIM {
 	private String name;
 	protected int size;
 	protected byte[] data;
+	// Start of the resource data in a larger array, 0 if data is the resource data alone
+	private int offset;
 	
 	public _8BIM(short id, String name, byte[] data) {
 		this(id, name, (data == null)?0:data.length, data);
@@ -42,11 +48,23 @@ public class _8BIM {
 		this.data = data;
 	}
 	
+	/**
+	 * Creates an 8BIM backed by the resource data at offset of a larger array
+	 */
+	public _8BIM(short id, String name, int size, byte[] data, int offset) {
+		this(id, name, size, data);
+		this.offset = offset;
+	}
+	
 	public _8BIM(ImageResourceID eId, String name, byte[] data) {
 		this(eId.getValue(), name, data);
 	}
 	
 	public byte[] getData() {
+		if(offset != 0) { // Trim the backing array on first access
+			data = Arrays.copyOfRange(data, offset, offset + size);
+			offset = 0;
+		}
 		return data;
 	}
 	
@@ -63,24 +81,28 @@ public class _8BIM {
 	}
 	
 	public void print() {
+		print(System.out);
+	}
+	
+	public void print(PrintStream out) {
 		ImageResourceID eId  = ImageResourceID.fromShort(id);
 		
 		if((id >= ImageResourceID.PATH_INFO0.getValue()) && (id <= ImageResourceID.PATH_INFO998.getValue())) {
-			System.out.println("PATH_INFO" + " [Value: " + StringUtils.shortToHexStringMM(id) +"]" + " - Path Information (saved paths).");
+			out.println("PATH_INFO" + " [Value: " + StringUtils.shortToHexStringMM(id) +"]" + " - Path Information (saved paths).");
 		}
 		else if((id >= ImageResourceID.PLUGIN_RESOURCE0.getValue()) && (id <= ImageResourceID.PLUGIN_RESOURCE999.getValue())) {
-			System.out.println("PLUGIN_RESOURCE" + " [Value: " + StringUtils.shortToHexStringMM(id) +"]" + " - Plug-In resource.");
+			out.println("PLUGIN_RESOURCE" + " [Value: " + StringUtils.shortToHexStringMM(id) +"]" + " - Plug-In resource.");
 		}
 		else if (eId == ImageResourceID.UNKNOWN) {
-			System.out.println(eId + " [Value: " + StringUtils.shortToHexStringMM(id) +"]");
+			out.println(eId + " [Value: " + StringUtils.shortToHexStringMM(id) +"]");
 		}
 		else {
-			System.out.println(eId);
+			out.println(eId);
 		}
 		
-		System.out.println("Type: 8BIM");
-		System.out.println("Name: " + name);
-		System.out.println("Size: " + size);	
+		out.println("Type: 8BIM");
+		out.println("Name: " + name);
+		out.println("Size: " + size);	
 	}
 	
 	public void write(OutputStream os) throws IOException {
@@ -96,8 +118,8 @@ public class _8BIM {
 			os.write(0);
 		// Now write data size
 		IOUtils.writeIntMM(os, size);
-		os.write(data); // Write the data itself
-		if(data.length%2 != 0)
+		os.write(data, offset, size); // Write the data itself
+		if(size%2 != 0)
 			os.write(0); // Padding the data to even size if needed
 	}
 }
\ No newline at end of file
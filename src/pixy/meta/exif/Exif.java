@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * WY    16Oct2026  Moved TIFF structure writer here from JpegExif
+ * WY    16Oct2026  Added constructor for EXIF backed by part of an array
  * WY    13Mar2015  Initial creation
  */
 
@@ -22,6 +24,9 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 
 import pixy.image.tiff.TIFFMeta;
 import pixy.meta.Metadata;
@@ -30,11 +35,15 @@ import pixy.meta.exif.ExifReader;
 import pixy.meta.exif.ExifTag;
 import pixy.meta.exif.ExifThumbnail;
 import pixy.meta.exif.GPSTag;
+import cafe.image.tiff.ASCIIField;
 import cafe.image.tiff.FieldType;
 import cafe.image.tiff.IFD;
+import cafe.image.tiff.LongField;
 import cafe.image.tiff.TiffField;
 import cafe.image.tiff.TiffTag;
 import cafe.io.IOUtils;
+import cafe.io.RandomAccessOutputStream;
+import cafe.io.WriteStrategyMM;
 
 /**
  * EXIF wrapper
@@ -63,6 +72,11 @@ public abstract class Exif extends Metadata {
 		this.reader = new ExifReader(data);
 	}
 	
+	public Exif(byte[] data, int offset, int length) {
+		super(MetadataType.EXIF, data, offset, length);
+		this.reader = new ExifReader(data, offset, length);
+	}
+	
 	public Exif(InputStream is) throws IOException {
 		this(IOUtils.inputStreamToByteArray(is));
 	}
@@ -110,6 +124,23 @@ public abstract class Exif extends Metadata {
 		this.isThumbnailRequired = true;
 	}
 	
+	/**
+	 * Creates the image IFD (IFD0) for EXIF built from scratch
+	 * 
+	 * @param creator name of the program creating the EXIF, e.g. "JPEGMeta"
+	 */
+	protected void createImageIFD(String creator) {
+		imageIFD = new IFD();
+		TiffField<?> tiffField = new ASCIIField(TiffTag.IMAGE_DESCRIPTION.getValue(), "Exif created by " + creator);
+		imageIFD.addField(tiffField);
+		String softWare = creator + " 1.0";
+		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
+		imageIFD.addField(tiffField);
+		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss");
+		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()));
+		imageIFD.addField(tiffField);		
+	}
+	
 	public boolean containsImage() {
 		return thumbnail != null && thumbnail.containsImage();
 	}
@@ -234,4 +265,42 @@ public abstract class Exif extends Metadata {
 	}
 	
 	public abstract void write(OutputStream os) throws IOException;
+	
+	/**
+	 * Writes the bare TIFF structure of the EXIF - header, image IFD with the
+	 * EXIF and GPS sub-IFDs and the thumbnail - starting at offset 0 of the
+	 * stream. The image IFD must have been set or created before.
+	 * 
+	 * @param randOS RandomAccessOutputStream to write to
+	 * @return length of the TIFF structure
+	 * @throws IOException
+	 */
+	protected int writeTIFF(RandomAccessOutputStream randOS) throws IOException {
+		// TIFF structure starts here
+		short endian = IOUtils.BIG_ENDIAN;
+		short tiffID = 0x2a; //'*'
+		randOS.setWriteStrategy(WriteStrategyMM.getInstance());
+		randOS.writeShort(endian);
+		randOS.writeShort(tiffID);
+		// First IFD offset relative to TIFF structure
+		randOS.seek(0x04);
+		randOS.writeInt(firstIFDOffset);
+		// Writes IFDs
+		randOS.seek(firstIFDOffset);
+		// Attach EXIIF and/or GPS SubIFD to main image IFD
+		if(exifSubIFD != null) {
+			imageIFD.addField(new LongField(TiffTag.EXIF_SUB_IFD.getValue(), new int[]{0})); // Place holder
+			imageIFD.addChild(TiffTag.EXIF_SUB_IFD, exifSubIFD);			
+		}
+		if(gpsSubIFD != null) {
+			imageIFD.addField(new LongField(TiffTag.GPS_SUB_IFD.getValue(), new int[]{0})); // Place holder
+			imageIFD.addChild(TiffTag.GPS_SUB_IFD, gpsSubIFD);
+		}
+		int offset = imageIFD.write(randOS, firstIFDOffset);
+		if(thumbnail != null && thumbnail.containsImage()) {
+			imageIFD.setNextIFDOffset(randOS, offset);
+			thumbnail.write(randOS, offset);
+		}
+		return (int)randOS.getLength();
+	}
 }
\ No newline at end of file
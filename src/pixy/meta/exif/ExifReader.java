@@ -13,12 +13,13 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================================
+ * WY    16Oct2026  Read EXIF data in place with ByteBufferRandomAccessInputStream
+ * WY    16Oct2026  Added constructor for data backed by part of an array
  * WY    13Mar2015  Initial creation
  */
 
 package pixy.meta.exif;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -26,6 +27,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import pixy.image.tiff.TIFFMeta;
+import pixy.io.ByteBufferRandomAccessInputStream;
 import pixy.meta.MetadataReader;
 import pixy.meta.Thumbnail;
 import pixy.meta.exif.ExifThumbnail;
@@ -33,7 +35,6 @@ import cafe.image.tiff.IFD;
 import cafe.image.tiff.TIFFTweaker;
 import cafe.image.tiff.TiffField;
 import cafe.image.tiff.TiffTag;
-import cafe.io.FileCacheRandomAccessInputStream;
 import cafe.io.FileCacheRandomAccessOutputStream;
 import cafe.io.IOUtils;
 import cafe.io.RandomAccessInputStream;
@@ -42,12 +43,20 @@ import cafe.io.RandomAccessOutputStream;
 public class ExifReader implements MetadataReader {
 	private boolean loaded;
 	private byte[] data;
+	private int offset;
+	private int length;
 	private ExifThumbnail thumbnail;
 	private boolean containsThumbnail;
 	private List<IFD> ifds = new ArrayList<IFD>(3);
 	
 	public ExifReader(byte[] exif) {
+		this(exif, 0, (exif == null)? 0 : exif.length);
+	}
+	
+	public ExifReader(byte[] exif, int offset, int length) {
 		this.data = exif;
+		this.offset = offset;
+		this.length = length;
 	}
 	
 	public ExifReader(InputStream is) throws IOException {
@@ -89,7 +98,7 @@ public class ExifReader implements MetadataReader {
 	@Override
 	public void read() throws IOException {
 		if(data != null) {
-			RandomAccessInputStream exifIn = new FileCacheRandomAccessInputStream(new ByteArrayInputStream(data));
+			RandomAccessInputStream exifIn = new ByteBufferRandomAccessInputStream(data, offset, length);
 	    	TIFFMeta.readIFDs(ifds, exifIn);		
 		    // We have thumbnail IFD
 		    if(ifds.size() >= 2) {
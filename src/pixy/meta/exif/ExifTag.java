@@ -11,13 +11,12 @@
 package pixy.meta.exif;
 
 import java.text.DecimalFormat;
-import java.util.HashMap;
-import java.util.Map;
 
+import pixy.image.tiff.DenseTagResolver;
+import pixy.image.tiff.TagResolver;
 import pixy.meta.exif.ExifTag;
 import cafe.image.tiff.FieldType;
 import cafe.image.tiff.Tag;
-import cafe.image.tiff.TiffTag;
 import cafe.string.StringUtils;
 
 /**
@@ -192,20 +191,14 @@ public enum ExifTag implements Tag {
 	}
 	
     public static Tag fromShort(short value) {
-       	ExifTag exifTag = tagMap.get(value);
-    	if (exifTag == null)
-    	   return TiffTag.UNKNOWN;
-   		return exifTag;
+    	return tagResolver.resolve(value);
     }
     
-    private static final Map<Short, ExifTag> tagMap = new HashMap<Short, ExifTag>();
-       
-    static
-    {
-      for(ExifTag exifTag : values()) {
-           tagMap.put(exifTag.getValue(), exifTag);
-      }
-    } 
+    public static TagResolver getTagResolver() {
+    	return tagResolver;
+    }
+    
+    private static final TagResolver tagResolver = new DenseTagResolver(values());
 	
 	/**
      * Intended to be overridden by certain tags to provide meaningful string
@@ -13,18 +13,19 @@
  *
  * Who   Date          Description
  * ====  ==========    =================================================
+ * WY    16Oct2026     Read TIFF thumbnail in place with ByteBufferRandomAccessInputStream
  * WY    13Mar2015     initial creation
  */
 
 package pixy.meta.exif;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import pixy.image.tiff.TIFFMeta;
+import pixy.io.ByteBufferRandomAccessInputStream;
 import pixy.meta.Thumbnail;
 import cafe.image.ImageIO;
 import cafe.image.ImageParam;
@@ -38,7 +39,6 @@ import cafe.image.tiff.TiffField;
 import cafe.image.tiff.TiffFieldEnum;
 import cafe.image.tiff.TiffTag;
 import cafe.image.writer.ImageWriter;
-import cafe.io.FileCacheRandomAccessInputStream;
 import cafe.io.RandomAccessInputStream;
 import cafe.io.RandomAccessOutputStream;
 
@@ -82,7 +82,7 @@ public class ExifThumbnail extends Thumbnail {
 		} else if(getDataType() == Thumbnail.DATA_TYPE_TIFF) { // Uncompressed TIFF format
 			// Read the IFDs into a list first
 			List<IFD> list = new ArrayList<IFD>();			   
-			RandomAccessInputStream tiffIn = new FileCacheRandomAccessInputStream(new ByteArrayInputStream(getCompressedImage()));
+			RandomAccessInputStream tiffIn = new ByteBufferRandomAccessInputStream(getCompressedImage());
 			TIFFMeta.readIFDs(list, tiffIn);
 			TiffField<?> stripOffset = list.get(0).getField(TiffTag.STRIP_OFFSETS);
     		if(stripOffset == null) 
@@ -11,13 +11,12 @@
 package pixy.meta.exif;
 
 import java.text.DecimalFormat;
-import java.util.HashMap;
-import java.util.Map;
 
+import pixy.image.tiff.DenseTagResolver;
+import pixy.image.tiff.TagResolver;
 import pixy.meta.exif.GPSTag;
 import cafe.image.tiff.FieldType;
 import cafe.image.tiff.Tag;
-import cafe.image.tiff.TiffTag;
 import cafe.string.StringUtils;
 
 /**
@@ -172,21 +171,15 @@ public enum GPSTag implements Tag {
 	}
 	
     public static Tag fromShort(short value) {
-       	GPSTag tag = tagMap.get(value);
-    	if (tag == null)
-    	   return TiffTag.UNKNOWN;
-   		return tag;
+    	return tagResolver.resolve(value);
     }
     
-    private static final Map<Short, GPSTag> tagMap = new HashMap<Short, GPSTag>();
-       
-    static
-    {
-      for(GPSTag tag : values()) {
-           tagMap.put(tag.getValue(), tag);
-      }
+    public static TagResolver getTagResolver() {
+    	return tagResolver;
     }
     
+    private static final TagResolver tagResolver = new DenseTagResolver(values());
+    
     /**
      * Intended to be overridden by certain tags to provide meaningful string
      * representation of the field value such as compression, photo metric interpretation etc.
@@ -10,13 +10,11 @@
 
 package pixy.meta.exif;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import pixy.image.tiff.DenseTagResolver;
+import pixy.image.tiff.TagResolver;
 import pixy.meta.exif.InteropTag;
 import cafe.image.tiff.FieldType;
 import cafe.image.tiff.Tag;
-import cafe.image.tiff.TiffTag;
 import cafe.string.StringUtils;
 
 /**
@@ -78,21 +76,15 @@ public enum InteropTag implements Tag {
 	}
 	
     public static Tag fromShort(short value) {
-       	InteropTag tag = tagMap.get(value);
-    	if (tag == null)
-    	   return TiffTag.UNKNOWN;
-   		return tag;
+    	return tagResolver.resolve(value);
     }
     
-    private static final Map<Short, InteropTag> tagMap = new HashMap<Short, InteropTag>();
-       
-    static
-    {
-      for(InteropTag tag : values()) {
-           tagMap.put(tag.getValue(), tag);
-      }
+    public static TagResolver getTagResolver() {
+    	return tagResolver;
     }
     
+    private static final TagResolver tagResolver = new DenseTagResolver(values());
+    
     /**
      * Intended to be overridden by certain tags to provide meaningful string
      * representation of the field value such as compression, photo metric interpretation etc.
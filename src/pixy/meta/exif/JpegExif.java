@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * WY    16Oct2026  Write the TIFF structure with Exif.writeTIFF()
+ * WY    16Oct2026  Added constructor for data backed by part of an array
  * WY    13Mar2015  Initial creation
  */
 
@@ -20,21 +22,12 @@ package pixy.meta.exif;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 import pixy.meta.exif.Exif;
 import cafe.image.jpeg.Marker;
-import cafe.image.tiff.ASCIIField;
-import cafe.image.tiff.IFD;
-import cafe.image.tiff.LongField;
-import cafe.image.tiff.TiffField;
-import cafe.image.tiff.TiffTag;
 import cafe.io.IOUtils;
 import cafe.io.MemoryCacheRandomAccessOutputStream;
 import cafe.io.RandomAccessOutputStream;
-import cafe.io.WriteStrategyMM;
 
 public class JpegExif extends Exif {
 
@@ -46,17 +39,8 @@ public class JpegExif extends Exif {
 		super(data);
 	}
 	
-	private void createImageIFD() {
-		// Create Image IFD (IFD0)
-		imageIFD = new IFD();
-		TiffField<?> tiffField = new ASCIIField(TiffTag.IMAGE_DESCRIPTION.getValue(), "Exif created by JPEGMeta");
-		imageIFD.addField(tiffField);
-		String softWare = "JPEGMeta 1.0";
-		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
-		imageIFD.addField(tiffField);
-		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss");
-		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()));
-		imageIFD.addField(tiffField);		
+	public JpegExif(byte[] data, int offset, int length) {
+		super(data, offset, length);
 	}
 	
 	/** 
@@ -72,34 +56,8 @@ public class JpegExif extends Exif {
 		// Write JPEG the EXIF data
 		// Writes APP1 marker
 		IOUtils.writeShortMM(os, Marker.APP1.getValue());		
-		// TIFF structure starts here
-		short endian = IOUtils.BIG_ENDIAN;
-		short tiffID = 0x2a; //'*'
-		randOS.setWriteStrategy(WriteStrategyMM.getInstance());
-		randOS.writeShort(endian);
-		randOS.writeShort(tiffID);
-		// First IFD offset relative to TIFF structure
-		randOS.seek(0x04);
-		randOS.writeInt(firstIFDOffset);
-		// Writes IFDs
-		randOS.seek(firstIFDOffset);
-		if(imageIFD == null) createImageIFD();
-		// Attach EXIIF and/or GPS SubIFD to main image IFD
-		if(exifSubIFD != null) {
-			imageIFD.addField(new LongField(TiffTag.EXIF_SUB_IFD.getValue(), new int[]{0})); // Place holder
-			imageIFD.addChild(TiffTag.EXIF_SUB_IFD, exifSubIFD);			
-		}
-		if(gpsSubIFD != null) {
-			imageIFD.addField(new LongField(TiffTag.GPS_SUB_IFD.getValue(), new int[]{0})); // Place holder
-			imageIFD.addChild(TiffTag.GPS_SUB_IFD, gpsSubIFD);
-		}
-		int offset = imageIFD.write(randOS, firstIFDOffset);
-		if(thumbnail != null && thumbnail.containsImage()) {
-			imageIFD.setNextIFDOffset(randOS, offset);
-			thumbnail.write(randOS, offset);
-		}
-		// Now it's time to update the segment length
-		int length = (int)randOS.getLength();
+		if(imageIFD == null) createImageIFD("JPEGMeta");
+		int length = writeTIFF(randOS);
 		// Update segment length
 		IOUtils.writeShortMM(os, length + 8);
 		// Add EXIF identifier with trailing bytes [0x00,0x00].
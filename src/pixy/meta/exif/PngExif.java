@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * PngExif.java
+ *
+ * Who   Date       Description
+ * ====  =======    =================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.meta.exif;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import pixy.meta.exif.Exif;
+import cafe.io.MemoryCacheRandomAccessOutputStream;
+import cafe.io.RandomAccessOutputStream;
+
+/**
+ * EXIF of a PNG image. The data of the PNG eXIf chunk is the bare TIFF
+ * structure, without the APP1 header and EXIF identifier of JPEG.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class PngExif extends Exif {
+
+	public PngExif() {
+
+	}
+
+	public PngExif(byte[] data) {
+		super(data);
+	}
+
+	public PngExif(byte[] data, int offset, int length) {
+		super(data, offset, length);
+	}
+
+	/**
+	 * Takes over the IFDs and thumbnail of another EXIF, such as a JpegExif
+	 * passed in to be inserted into a PNG image.
+	 *
+	 * @param exif the EXIF to take over
+	 */
+	public PngExif(Exif exif) {
+		this.imageIFD = exif.imageIFD;
+		this.exifSubIFD = exif.exifSubIFD;
+		this.gpsSubIFD = exif.gpsSubIFD;
+		this.thumbnail = exif.thumbnail;
+	}
+
+	/**
+	 * Write the EXIF data to the OutputStream as the data of an eXIf chunk
+	 *
+	 * @param os OutputStream
+	 * @throws IOException
+	 */
+	@Override
+	public void write(OutputStream os) throws IOException {
+		// Wraps output stream with a RandomAccessOutputStream
+		RandomAccessOutputStream randOS = new MemoryCacheRandomAccessOutputStream(os);
+		if(imageIFD == null) createImageIFD("PNGMeta");
+		int length = writeTIFF(randOS);
+		// Dump randOS to normal output stream and we are done!
+		randOS.seek(0);
+		randOS.writeToStream(length);
+		randOS.close();
+	}
+}
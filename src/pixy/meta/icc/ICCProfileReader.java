@@ -2,6 +2,7 @@ package pixy.meta.icc;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 
 import pixy.meta.MetadataReader;
 import pixy.meta.icc.ProfileTagTable;
@@ -228,30 +229,34 @@ public class ICCProfileReader implements MetadataReader {
 		tagTable.read(data);
 	}
 	
-	private void showHeader() {
-		System.out.println("*** Start of ICC_Profile Header ***");
-		System.out.println("Profile Size: " + getProfileSize());
-		System.out.println("CMM Type: " + getPreferredCMMType());
-		System.out.println("Version: " + getProfileVersionNumber());
-		System.out.println("Profile/Device Class: " + getProfileClassDescription());
-		System.out.println("Color Space: " + getColorSpace());
-		System.out.println("PCS: " + getPCS());
-		System.out.println("Date Created: " + getDateTimeCreated());
-		System.out.println("Profile File Signature: " + getProfileFileSignature());
-		System.out.println("Primary Platform Signature: " + getPrimaryPlatformSignature());
-		System.out.println("Flags: " + getProfileFlags());
-		System.out.println("Device Manufacturer: " + getDeviceManufacturer());
-		System.out.println("Device Model: " + getDeviceModel());
-		System.out.println("Device Attributes: " + getDeviceAttributes());
-		System.out.println("Rendering Intent: " + getRenderingIntentDescription());		
-		System.out.println("PCS Illuminant: X = " + getPCSXYZ()[0] + ", Y = " + getPCSXYZ()[1] + ", Z = " + getPCSXYZ()[2]);
-		System.out.println("Profile Creator: " + getProfileCreator());
-		System.out.println("Profile ID: " + getProfileID());
-		System.out.println("*** End of ICC_Profile Header ***");
+	private void showHeader(PrintStream out) {
+		out.println("*** Start of ICC_Profile Header ***");
+		out.println("Profile Size: " + getProfileSize());
+		out.println("CMM Type: " + getPreferredCMMType());
+		out.println("Version: " + getProfileVersionNumber());
+		out.println("Profile/Device Class: " + getProfileClassDescription());
+		out.println("Color Space: " + getColorSpace());
+		out.println("PCS: " + getPCS());
+		out.println("Date Created: " + getDateTimeCreated());
+		out.println("Profile File Signature: " + getProfileFileSignature());
+		out.println("Primary Platform Signature: " + getPrimaryPlatformSignature());
+		out.println("Flags: " + getProfileFlags());
+		out.println("Device Manufacturer: " + getDeviceManufacturer());
+		out.println("Device Model: " + getDeviceModel());
+		out.println("Device Attributes: " + getDeviceAttributes());
+		out.println("Rendering Intent: " + getRenderingIntentDescription());		
+		out.println("PCS Illuminant: X = " + getPCSXYZ()[0] + ", Y = " + getPCSXYZ()[1] + ", Z = " + getPCSXYZ()[2]);
+		out.println("Profile Creator: " + getProfileCreator());
+		out.println("Profile ID: " + getProfileID());
+		out.println("*** End of ICC_Profile Header ***");
 	}
 		
 	@Override
 	public void showMetadata() {
+		showMetadata(System.out);
+	}
+	
+	public void showMetadata(PrintStream out) {
 		if(!loaded) {
 			try {
 				read();
@@ -259,14 +264,10 @@ public class ICCProfileReader implements MetadataReader {
 				e.printStackTrace();
 			}	
 		}
-		showHeader();
-		showTagTable();
+		showHeader(out);
+		tagTable.showTable(out);
 	}
 
-	private void showTagTable() {
-		tagTable.showTable();
-	}	
-
 	// Profile header - 128 bytes in length and contains 18 fields
 	private static class ICCProfileHeader {
 		private long profileSize;
@@ -13,6 +13,8 @@ package pixy.meta.icc;
 import java.util.HashMap;
 import java.util.Map;
 
+import pixy.util.Diagnostics;
+
 import pixy.meta.icc.ProfileTag;
 
 /**
@@ -111,7 +113,8 @@ public enum ProfileTag {
     public static ProfileTag fromInt(int value) {
        	ProfileTag tag = typeMap.get(value);
     	if (tag == null) {
-    	 System.out.println("tag value 0x" + Integer.toHexString(value) + " unknown");
+    	 if(Diagnostics.isEnabled())
+    		 Diagnostics.print("tag value 0x" + Integer.toHexString(value) + " unknown");
     		return UNKNOWN;
     	}
    		return tag;
@@ -10,6 +10,8 @@
 
 package pixy.meta.icc;
 
+import java.io.PrintStream;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -105,17 +107,21 @@ public class ProfileTagTable {
 	}
 	
 	public void showTable() {
-		System.out.println("*** Start of ICC_Profile Tag Table ***");
-		System.out.println("Tag Count: " + tagCount);
+		showTable(System.out);
+	}
+	
+	public void showTable(PrintStream out) {
+		out.println("*** Start of ICC_Profile Tag Table ***");
+		out.println("Tag Count: " + tagCount);
 		List<TagEntry> list = getTagEntries();
 		Collections.sort(list);
 		int count = 0;
 		for(TagEntry tagEntry:list) {
-			System.out.print("Tag# " + count++);
-			System.out.print(", Tag Name: " + ProfileTag.fromInt(tagEntry.getProfileTag()));
-			System.out.print(", Data Offset: " + tagEntry.getDataOffset());
-			System.out.println(", Data Length: " + tagEntry.getDataLength());
+			out.print("Tag# " + count++);
+			out.print(", Tag Name: " + ProfileTag.fromInt(tagEntry.getProfileTag()));
+			out.print(", Data Offset: " + tagEntry.getDataOffset());
+			out.println(", Data Length: " + tagEntry.getDataLength());
 		}
-		System.out.println("*** End of ICC_Profile Tag Table ***");
+		out.println("*** End of ICC_Profile Tag Table ***");
 	}
 }
\ No newline at end of file
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * WY    16Oct2026  Added print(PrintStream)
+ * WY    16Oct2026  Compare and hash data set values in place
  * WY    13Mar2015  Initial creation
  */
 
@@ -20,7 +22,7 @@ package pixy.meta.iptc;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Arrays;
+import java.io.PrintStream;
 
 import pixy.meta.iptc.IPTCApplicationTag;
 import pixy.meta.iptc.IPTCDataSet;
@@ -92,10 +94,12 @@ public class IPTCDataSet {
 		if (getClass() != obj.getClass())
 			return false;
 		IPTCDataSet other = (IPTCDataSet) obj;
-		byte[] thisData = ArrayUtils.subArray(data, offset, size);
-		byte[] thatData = ArrayUtils.subArray(other.data, other.offset, other.size);
-		if (!Arrays.equals(thisData, thatData))
+		if (size != other.size)
 			return false;
+		for (int i = 0; i < size; i++) { // Compare in place
+			if (data[offset + i] != other.data[other.offset + i])
+				return false;
+		}
 		if (recordNumber != other.recordNumber)
 			return false;
 		if (tag != other.tag)
@@ -138,6 +142,8 @@ public class IPTCDataSet {
 	}
 	
 	public byte[] getData() {
+		if(offset == 0 && size == data.length)
+			return data;
 		return ArrayUtils.subArray(data, offset, size);
 	}
 	
@@ -169,46 +175,53 @@ public class IPTCDataSet {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + Arrays.hashCode(ArrayUtils.subArray(data, offset, size));
+		int dataHash = 1; // Same as Arrays.hashCode() of the data set value
+		for (int i = offset; i < offset + size; i++)
+			dataHash = prime * dataHash + data[i];
+		result = prime * result + dataHash;
 		result = prime * result + recordNumber;
 		result = prime * result + tag;
 		return result;
 	}
 	
 	public void print() {
+		print(System.out);
+	}
+	
+	public void print(PrintStream out) {
 		
 		switch (recordNumber) {
 			case 1: //Envelope Record
-				System.out.println("Record number " + recordNumber + ": Envelope Record");
+				out.println("Record number " + recordNumber + ": Envelope Record");
 				break;
 			case 2: //Application Record
-				System.out.println("Record number " + recordNumber + ": Application Record");
+				out.println("Record number " + recordNumber + ": Application Record");
 				break;
 			case 3: //NewsPhoto Record
-				System.out.println("Record number " + recordNumber + ": NewsPhoto Record");
+				out.println("Record number " + recordNumber + ": NewsPhoto Record");
 				break;
 			case 7: //PreObjectData Record
-				System.out.println("Record number " + recordNumber + ": PreObjectData Record");
+				out.println("Record number " + recordNumber + ": PreObjectData Record");
 				break;
 			case 8: //ObjectData Record
-				System.out.println("Record number " + recordNumber + ": ObjectData Record");
+				out.println("Record number " + recordNumber + ": ObjectData Record");
 				break;				
 			case 9: //PostObjectData Record
-				System.out.println("Record number " + recordNumber + ": PostObjectData Record");
+				out.println("Record number " + recordNumber + ": PostObjectData Record");
 				break;	
 			case 240: //FotoStation Record
-				System.out.println("Record number " + recordNumber + ": FotoStation Record");
+				out.println("Record number " + recordNumber + ": FotoStation Record");
 				break;	
 			default:
-				System.out.println("Record number " + recordNumber + ": Unknown Record");
+				out.println("Record number " + recordNumber + ": Unknown Record");
 				break;
 		}		
 		
-		System.out.println("Dataset name: " + name);
-		System.out.println("Dataset tag: " + tag + "[" + StringUtils.shortToHexStringMM((short)tag) + "]");
-		System.out.println("Dataset size: " + size);
+		out.println("Dataset name: " + name);
+		out.println("Dataset tag: " + tag + "[" + StringUtils.shortToHexStringMM((short)tag) + "]");
+		out.println("Dataset size: " + size);
 		
-		System.out.println("Dataset value: " + getDataAsString());
+		out.println("Dataset value: " + getDataAsString());
 	}
 	
 	/**
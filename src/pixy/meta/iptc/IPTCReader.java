@@ -13,12 +13,14 @@
  *
  * Who   Date       Description
  * ====  =======    ============================================================
+ * WY    16Oct2026  Added showMetadata(PrintStream)
  * WY    13Mar2015  Initial creation to read IPTC information
  */
 
 package pixy.meta.iptc;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -88,6 +90,10 @@ public class IPTCReader implements MetadataReader {
 	}
 	
 	public void showMetadata() {
+		showMetadata(System.out);
+	}
+	
+	public void showMetadata(PrintStream out) {
 		if(!loaded) {
 			try {
 				read();
@@ -98,7 +104,7 @@ public class IPTCReader implements MetadataReader {
 		// Print multiple entry IPTCDataSet
 		for(List<IPTCDataSet> iptcs : datasetMap.values()) {
 			for(IPTCDataSet iptc : iptcs)
-				iptc.print();
+				iptc.print(out);
 		}
 	}
 }
\ No newline at end of file
@@ -28,6 +28,7 @@ import pixy.meta.exif.TiffExif;
 import pixy.meta.iptc.IPTCApplicationTag;
 import pixy.meta.iptc.IPTCDataSet;
 import pixy.meta.iptc.IPTCRecord;
+import pixy.util.Diagnostics;
 import cafe.image.tiff.FieldType;
 import cafe.image.tiff.TiffTag;
 import cafe.image.util.IMGUtils;
@@ -36,6 +37,7 @@ import cafe.string.XMLUtils;
 public class TestPixyMeta {
 
 	public static void main(String[] args) throws IOException {
+		Diagnostics.setListener(Diagnostics.CONSOLE);
 		Map<MetadataType, Metadata> metadataMap = Metadata.readMetadata(args[0]);
 		System.out.println("Start of metadata information:");
 		System.out.println("Total number of metadata entries: " + metadataMap.size());
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * Diagnostics.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==============================================================
+ * WY    16Oct2026  Added getPrintStream() for metadata dumps
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/** 
+ * Routes the diagnostic messages of the metadata parsers to a listener.
+ * <p>
+ * There is no listener by default and the messages are dropped. Callers
+ * check isEnabled() before building a message, so parsing does no string
+ * building or I/O unless someone is listening. Use CONSOLE to get the
+ * messages printed to System.out.
+ * 
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class Diagnostics {
+	/** Prints the messages to System.out */
+	public static final DiagnosticsListener CONSOLE = new DiagnosticsListener() {
+		public void message(String message) {
+			System.out.println(message);
+		}
+	};
+	
+	private static volatile DiagnosticsListener listener;
+	
+	public static DiagnosticsListener getListener() {
+		return listener;
+	}
+	
+	/**
+	 * Creates a PrintStream for dumps written to a PrintStream, such as
+	 * IRBReader.showMetadata(PrintStream). Each line printed to it is sent
+	 * to the listener as a message.
+	 * 
+	 * @return PrintStream sending its lines to the listener
+	 */
+	public static PrintStream getPrintStream() {
+		return new PrintStream(new LineOutputStream());
+	}
+	
+	/**
+	 * @return true if there is a listener for the diagnostic messages
+	 */
+	public static boolean isEnabled() {
+		return listener != null;
+	}
+	
+	/**
+	 * Sends the message to the listener if there is one
+	 * 
+	 * @param message diagnostic message
+	 */
+	public static void print(String message) {
+		DiagnosticsListener current = listener;
+		if(current != null)
+			current.message(message);
+	}
+	
+	/**
+	 * @param listener DiagnosticsListener for the messages, null to drop them
+	 */
+	public static void setListener(DiagnosticsListener listener) {
+		Diagnostics.listener = listener;
+	}
+	
+	// Collects bytes up to the end of a line and prints them as one message
+	private static class LineOutputStream extends OutputStream {
+		private ByteArrayOutputStream line = new ByteArrayOutputStream();
+		
+		public void write(int b) {
+			if(b == '\n') {
+				int len = line.size();
+				byte[] bytes = line.toByteArray();
+				if(len > 0 && bytes[len - 1] == '\r') len--;
+				print(new String(bytes, 0, len));
+				line.reset();
+			} else
+				line.write(b);
+		}
+	}
+	
+	private Diagnostics() {}
+}
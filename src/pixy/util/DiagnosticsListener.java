@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * DiagnosticsListener.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==============================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.util;
+
+/** 
+ * Receives diagnostic messages from the metadata parsers
+ * 
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ * @see Diagnostics
+ */
+public interface DiagnosticsListener {
+	/**
+	 * @param message a single line of diagnostic message
+	 */
+	public void message(String message);
+}
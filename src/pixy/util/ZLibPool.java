@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2015 by Wen Yu.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * ZLibPool.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==============================================================
+ * WY    16Oct2026  Initial creation
+ */
+
+package pixy.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pooled zlib Inflater and Deflater instances for compressed metadata.
+ * <p>
+ * Each Inflater and Deflater holds native memory which is only released by
+ * end() or finalization. Instead of creating one per call, instances are
+ * reset and put back into a pool of at most POOL_SIZE of each kind, extra
+ * instances are ended right away. Decompression is bounded by a maximum
+ * size so a small corrupt or malicious stream can't blow up the heap.
+ *
+ * @author Wen Yu, yuwen_66@yahoo.com
+ * @version 1.0 10/16/2026
+ */
+public class ZLibPool {
+	/** Maximum number of idle instances of each kind kept in the pool */
+	public static final int POOL_SIZE = Math.max(2, 2*Runtime.getRuntime().availableProcessors());
+
+	private static final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+	private static final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+	// Queue.size() walks the whole queue, keep count separately
+	private static final AtomicInteger idleInflaters = new AtomicInteger();
+	private static final AtomicInteger idleDeflaters = new AtomicInteger();
+
+	/**
+	 * Compresses the data into a zlib stream
+	 *
+	 * @param data array holding the data
+	 * @param offset start of the data
+	 * @param length length of the data
+	 * @return the compressed data in an array of its exact size
+	 */
+	public static byte[] deflate(byte[] data, int offset, int length) {
+		Deflater deflater = deflaters.poll();
+		if(deflater == null)
+			deflater = new Deflater();
+		else
+			idleDeflaters.decrementAndGet();
+		try {
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			// zlib deflateBound() for the default settings, enough for incompressible data
+			byte[] buf = new byte[length + (length >> 12) + (length >> 14) + (length >> 25) + 13];
+			int size = 0;
+			while(!deflater.finished()) {
+				if(size == buf.length)
+					buf = Arrays.copyOf(buf, buf.length + 1024);
+				size += deflater.deflate(buf, size, buf.length - size);
+			}
+			return (size == buf.length) ? buf : Arrays.copyOf(buf, size);
+		} finally {
+			release(deflater);
+		}
+	}
+
+	/**
+	 * Decompresses a zlib stream
+	 *
+	 * @param data array holding the compressed data
+	 * @param offset start of the compressed data
+	 * @param length length of the compressed data
+	 * @param expectedSize size of the decompressed data if known, otherwise
+	 * a guess to start with which is doubled as needed
+	 * @param maxSize maximum size of the decompressed data
+	 * @return the decompressed data in an array of its exact size
+	 * @throws IOException if the data is corrupt, truncated or inflates to
+	 * more than maxSize bytes
+	 */
+	public static byte[] inflate(byte[] data, int offset, int length, int expectedSize, int maxSize) throws IOException {
+		Inflater inflater = inflaters.poll();
+		if(inflater == null)
+			inflater = new Inflater();
+		else
+			idleInflaters.decrementAndGet();
+		try {
+			inflater.setInput(data, offset, length);
+			byte[] buf = new byte[Math.max(1, Math.min(expectedSize, maxSize))];
+			byte[] probe = new byte[1];
+			int size = 0;
+			while(!inflater.finished()) {
+				int n;
+				if(size == buf.length) {
+					// Full, see if there is more output before growing the buffer
+					n = inflater.inflate(probe);
+					if(n > 0) {
+						if(size >= maxSize)
+							throw new IOException("Decompressed data exceeds " + maxSize + " bytes");
+						buf = Arrays.copyOf(buf, (int)Math.min(2L*size, maxSize));
+						buf[size] = probe[0];
+					}
+				} else
+					n = inflater.inflate(buf, size, buf.length - size);
+				if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new IOException("Truncated or invalid compressed data");
+				size += n;
+			}
+			return (size == buf.length) ? buf : Arrays.copyOf(buf, size);
+		} catch(DataFormatException e) {
+			throw new IOException("Invalid compressed data", e);
+		} finally {
+			release(inflater);
+		}
+	}
+
+	private static void release(Deflater deflater) {
+		deflater.reset();
+		if(idleDeflaters.incrementAndGet() <= POOL_SIZE)
+			deflaters.offer(deflater);
+		else {
+			idleDeflaters.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	private static void release(Inflater inflater) {
+		inflater.reset();
+		if(idleInflaters.incrementAndGet() <= POOL_SIZE)
+			inflaters.offer(inflater);
+		else {
+			idleInflaters.decrementAndGet();
+			inflater.end();
+		}
+	}
+
+	private ZLibPool() {}
+}